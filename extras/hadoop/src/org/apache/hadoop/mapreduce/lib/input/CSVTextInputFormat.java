@@ -1,7 +1,6 @@
 package org.apache.hadoop.mapreduce.lib.input;
 
 import java.io.IOException;
-import java.util.Random;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
@@ -14,6 +13,7 @@ import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.mapreduce.lib.input.LineRecordReader;
+import org.apache.mahout.math.stats.sampler.HashSampler;
 
 /*
  * Configurable CSV line reader.
@@ -34,7 +34,9 @@ import org.apache.hadoop.mapreduce.lib.input.LineRecordReader;
  *  
  *  pattern2/replace2 are not required
  *  
- *  Includes option for sampling, allowing disjoint sampled sets from different passes
+ *  Includes option for sampling, allowing disjoint sampled sets from different passes.
+ *  A line is kept when the hash of its text, with the seed, lands in [min, max),
+ *  so the sample does not depend on split size or the number of mappers.
  * 
  *  See main() for examples
  *  
@@ -89,9 +91,11 @@ public class CSVTextInputFormat extends FileInputFormat<LongWritable, Text> {
     if (null == pattern1 || null == replace1 || null == order) {
       throw new IOException("CSVTextFormat: missing parameter pattern1/replace1/order");
     }
-    Sampler sampler = null;
+    HashSampler sampler = null;
     if (null != sampleMax) {
-      sampler = new Sampler(sampleSeed, sampleMin, sampleMax);
+      long seed = (null != sampleSeed) ? Long.parseLong(sampleSeed) : 0L;
+      double min = (null != sampleMin) ? Double.parseDouble(sampleMin) : 0.0;
+      sampler = new HashSampler(seed, min, Double.parseDouble(sampleMax));
     }
     return new FlexibleRecordReader(pattern1, pattern2, replace1, replace2, order, payload, sampler);
   }
@@ -110,11 +114,11 @@ class FlexibleRecordReader extends LineRecordReader {
   final int[] order;
   final int[] reverse;
   final String payload;
-  final Sampler sampler;
+  final HashSampler sampler;
 
 
   public FlexibleRecordReader(String pattern1, String pattern2,
-      String replace1, String replace2, String order, String payload, Sampler sampler) {
+      String replace1, String replace2, String order, String payload, HashSampler sampler) {
     super();
     this.pattern1 = pattern1;
     this.pattern2 = pattern2;
@@ -140,20 +144,16 @@ class FlexibleRecordReader extends LineRecordReader {
     this.hashCode();
   }
 
-  // weird advance thing makes this more complex
   @Override
   public boolean nextKeyValue() throws IOException {
-    if (null == sampler)
-      return super.nextKeyValue();
-    boolean skip = !sampler.sample();
-    while (skip) {
-      boolean last = super.nextKeyValue();
-      if (!last)
-        return false;
-      // we have now officially skipped a line
-      skip = !sampler.sample();
+    while (super.nextKeyValue()) {
+      if (null == sampler)
+        return true;
+      Text line = super.getCurrentValue();
+      if (sampler.isSampled(line.getBytes(), 0, line.getLength()))
+        return true;
     }
-    return super.nextKeyValue();
+    return false;
   }
 
   @Override
@@ -223,28 +223,3 @@ class FlexibleRecordReader extends LineRecordReader {
   }
 
 }
-
-final class Sampler {
-  final Random rnd;
-  final double sampleMin;
-  final double sampleMax;
-
-  Sampler( String sampleSeed, String sampleMin, String sampleMax) {
-    this.sampleMax = Double.parseDouble(sampleMax);
-    if (null != sampleMin) {
-      this.sampleMin = Double.parseDouble(sampleMin);
-    } else {
-      this.sampleMin = 0.0;
-    }
-    if (null != sampleSeed) {
-      this.rnd = new Random(Long.parseLong(sampleSeed));
-    } else {
-      this.rnd = new Random();
-    }	
-  }
-
-  boolean sample() {
-    double sample = rnd.nextDouble();
-    return (sample >= sampleMin && sample < sampleMax);
-  }
-}
\ No newline at end of file
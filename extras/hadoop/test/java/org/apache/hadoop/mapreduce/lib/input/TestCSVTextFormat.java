@@ -1,10 +1,15 @@
 package org.apache.hadoop.mapreduce.lib.input;
 
+import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.mapreduce.TaskAttemptID;
 import org.junit.Test;
@@ -81,7 +86,60 @@ public class TestCSVTextFormat extends TestCase {
     assertEquals("a,b,c", frr.unpackValue("a::b::c"));
   }
 
-  // TODO: payload and sampler tests
+  /*
+   * The sample must not change with the split size.
+   */
+  @Test
+  public void testSampleSplits() throws IOException {
+    File file = File.createTempFile("csvsample", ".txt");
+    file.deleteOnExit();
+    FileWriter writer = new FileWriter(file);
+    for(int i = 0; i < 1000; i++) {
+      writer.write(i + "::" + (i * 7 % 113) + "::" + (i % 5) + "\n");
+    }
+    writer.close();
+
+    Configuration conf = new Configuration();
+    conf.set(simpleConf[0][0], simpleConf[0][1]);
+    conf.set(simpleConf[1][0], simpleConf[1][1]);
+    conf.set(simpleConf[2][0], simpleConf[2][1]);
+    conf.set("mapreduce.csvinput.sample.seed", "17");
+    conf.set("mapreduce.csvinput.sample.max", "0.3");
+    List<String> whole = sample(conf, file, file.length());
+    assertTrue(whole.size() > 250 && whole.size() < 350);
+    assertEquals(whole, sample(conf, file, 1000));
+    assertEquals(whole, sample(conf, file, 4096));
+    assertEquals(whole, sample(conf, file, 777));
+
+    // the rest of the lines, and nothing else
+    conf.set("mapreduce.csvinput.sample.min", "0.3");
+    conf.set("mapreduce.csvinput.sample.max", "1.0");
+    List<String> rest = sample(conf, file, 333);
+    assertEquals(1000, whole.size() + rest.size());
+    for(String line: rest) {
+      assertFalse(whole.contains(line));
+    }
+  }
+
+  private List<String> sample(Configuration conf, File file, long splitSize) throws IOException {
+    CSVTextInputFormat csvtif = new CSVTextInputFormat();
+    TaskAttemptContext tac = new TaskAttemptContext(conf, new TaskAttemptID());
+    Path path = new Path(file.getAbsolutePath());
+    List<String> lines = new ArrayList<String>();
+    for(long start = 0; start < file.length(); start += splitSize) {
+      long length = Math.min(splitSize, file.length() - start);
+      FileSplit split = new FileSplit(path, start, length, new String[0]);
+      FlexibleRecordReader frr = (FlexibleRecordReader) csvtif.createRecordReader(split, tac);
+      frr.initialize(split, tac);
+      while (frr.nextKeyValue()) {
+        lines.add(frr.getCurrentValue().toString());
+      }
+      frr.close();
+    }
+    return lines;
+  }
+
+  // TODO: payload tests
   
   String[][] simpleConf = {
       {"mapreduce.csvinput.pattern1", "::"},
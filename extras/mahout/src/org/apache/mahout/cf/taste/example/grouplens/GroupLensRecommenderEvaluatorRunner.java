@@ -19,6 +19,7 @@ package org.apache.mahout.cf.taste.example.grouplens;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Map;
 
 import org.apache.commons.cli2.OptionException;
 import org.apache.mahout.cf.taste.common.TasteException;
@@ -26,7 +27,10 @@ import org.apache.mahout.cf.taste.eval.RecommenderEvaluator;
 import org.apache.mahout.cf.taste.example.TasteOptionParser;
 import org.apache.mahout.cf.taste.example.grouplens.GroupLensDataModel;
 import org.apache.mahout.cf.taste.impl.common.FullRunningAverageAndStdDev;
+import org.apache.mahout.cf.taste.impl.common.RunningAverage;
 import org.apache.mahout.cf.taste.impl.eval.PreferenceBasedRecommenderEvaluator;
+import org.apache.mahout.cf.taste.impl.eval.RankingRecommenderEvaluator;
+import org.apache.mahout.cf.taste.impl.eval.RankingRecommenderEvaluator.Metric;
 import org.apache.mahout.cf.taste.impl.model.SamplingDataModel;
 import org.apache.mahout.cf.taste.impl.model.SamplingDataModel.Distribution;
 import org.apache.mahout.cf.taste.model.DataModel;
@@ -62,6 +66,16 @@ public final class GroupLensRecommenderEvaluatorRunner {
     double stdev = tracker.getStandardDeviation();
     log.info("Mean: " + String.valueOf(average));
     log.info("Standard Deviation: " + String.valueOf(stdev));
+
+    // top-N lists against held-out preferences: same seed, disjoint windows
+    long seed = ((SamplingDataModel) trainingModel).getSeed();
+    DataModel heldIn = new SamplingDataModel(model, 0.0, 0.9, Distribution.HOLOGRAPHIC, seed);
+    DataModel heldOut = new SamplingDataModel(model, 0.9, 1.0, Distribution.HOLOGRAPHIC, seed);
+    RankingRecommenderEvaluator ranking = new RankingRecommenderEvaluator(10, 4.0f);
+    Map<Metric,RunningAverage> scores = ranking.evaluate(recommenderBuilder, heldIn, heldOut);
+    for (Metric metric : Metric.values()) {
+      log.info(metric + "@" + ranking.getAt() + ": " + String.valueOf(scores.get(metric).getAverage()));
+    }
   }
   
 }
@@ -150,23 +150,31 @@ public class SemanticVectorFactory {
   // User and Item projection vectors are deterministic, with a disjoint seed space
   // TODO: Very very hokey. This needs MurmurHash version of the RandomVector concept.
   public Vector getRandomUserVector(long userID) {
-    Vector v = new DenseVector(dimensions);
-    Random rnd = new Random();
-    for(int dim = 0; dim < dimensions; dim++) {
+    double[] values = new double[dimensions];
+    fillRandomUser(userID, new Random(), values);
+    return new DenseVector(values, true);
+  }
+  
+  public Vector getRandomItemVector(long itemID) {
+    double[] values = new double[dimensions];
+    fillRandomItem(itemID, new Random(), values);
+    return new DenseVector(values, true);
+  }
+  
+  // Same values as the vectors above, into a reusable array.
+  // Map/reduce jobs use these to match this factory without a DataModel.
+  public static void fillRandomUser(long userID, Random rnd, double[] values) {
+    for(int dim = 0; dim < values.length; dim++) {
       rnd.setSeed(userID + 500000 + dim * 10);
-      v.setQuick(dim, rnd.nextDouble());
+      values[dim] = rnd.nextDouble();
     }
-    return v;
   }
   
-  public Vector getRandomItemVector(long itemID) {
-    Vector v = new DenseVector(dimensions);
-    Random rnd = new Random();
-    for(int dim = 0; dim < dimensions; dim++) {
+  public static void fillRandomItem(long itemID, Random rnd, double[] values) {
+    for(int dim = 0; dim < values.length; dim++) {
       rnd.setSeed(itemID + 300000 + dim*10);
-      v.setQuick(dim, rnd.nextDouble());
+      values[dim] = rnd.nextDouble();
     }
-    return v;
   }
   
   public int getDimensions(){
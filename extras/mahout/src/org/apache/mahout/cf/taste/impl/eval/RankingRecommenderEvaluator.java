@@ -0,0 +1,210 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.cf.taste.impl.eval;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.mahout.cf.taste.common.NoSuchUserException;
+import org.apache.mahout.cf.taste.common.TasteException;
+import org.apache.mahout.cf.taste.eval.RecommenderBuilder;
+import org.apache.mahout.cf.taste.impl.common.FastIDSet;
+import org.apache.mahout.cf.taste.impl.common.FullRunningAverage;
+import org.apache.mahout.cf.taste.impl.common.LongPrimitiveIterator;
+import org.apache.mahout.cf.taste.impl.common.RunningAverage;
+import org.apache.mahout.cf.taste.model.DataModel;
+import org.apache.mahout.cf.taste.model.PreferenceArray;
+import org.apache.mahout.cf.taste.recommender.RecommendedItem;
+import org.apache.mahout.cf.taste.recommender.Recommender;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Evaluate a recommender's top-N lists against held-out preferences.
+ *
+ * The recommender is built on a training model; the test model holds
+ * the preferences it did not see, for example two SamplingDataModels
+ * with the same seed and windows [0, 0.9) and [0.9, 1.0).
+ * For each test user, the relevant items are the held-out items with a
+ * value of at least the threshold, and the recommender's top 'at' items are
+ * scored with binary relevance:
+ *   PRECISION  hits / at
+ *   RECALL     hits / relevant
+ *   NDCG       DCG of the list over DCG of an ideal list, gain 1/log2(rank + 1)
+ *   MAP        mean over hits of precision at that hit's rank,
+ *              divided by min(at, relevant)
+ * Users with no relevant items, or unknown to the recommender, are skipped.
+ */
+public final class RankingRecommenderEvaluator {
+
+  private static final Logger log = LoggerFactory.getLogger(RankingRecommenderEvaluator.class);
+
+  public enum Metric {PRECISION, RECALL, NDCG, MAP};
+
+  private final int at;
+  private final float relevanceThreshold;
+
+  /** every held-out preference is relevant */
+  public RankingRecommenderEvaluator(int at) {
+    this(at, Float.NEGATIVE_INFINITY);
+  }
+
+  public RankingRecommenderEvaluator(int at, float relevanceThreshold) {
+    if (at < 1) {
+      throw new IllegalArgumentException("at must be positive: " + at);
+    }
+    this.at = at;
+    this.relevanceThreshold = relevanceThreshold;
+  }
+
+  public int getAt() {
+    return at;
+  }
+
+  public Map<Metric,RunningAverage> evaluate(RecommenderBuilder recommenderBuilder,
+                                             DataModel trainingModel,
+                                             DataModel testModel) throws TasteException {
+    return evaluate(recommenderBuilder.buildRecommender(trainingModel), testModel);
+  }
+
+  public Map<Metric,RunningAverage> evaluate(Recommender recommender, DataModel testModel) throws TasteException {
+    List<Callable<double[]>> callables = new ArrayList<Callable<double[]>>();
+    LongPrimitiveIterator users = testModel.getUserIDs();
+    while (users.hasNext()) {
+      long userID = users.nextLong();
+      FastIDSet relevant = getRelevant(testModel.getPreferencesFromUser(userID));
+      if (!relevant.isEmpty()) {
+        callables.add(new UserCallable(recommender, userID, relevant));
+      }
+    }
+    log.info("Beginning ranking evaluation of {} users at {}", callables.size(), at);
+
+    Map<Metric,RunningAverage> trackers = new EnumMap<Metric,RunningAverage>(Metric.class);
+    for (Metric metric : Metric.values()) {
+      trackers.put(metric, new FullRunningAverage());
+    }
+    int skipped = 0;
+    int numProcessors = Runtime.getRuntime().availableProcessors();
+    ExecutorService executor = Executors.newFixedThreadPool(numProcessors);
+    try {
+      // results are added in user order, so the averages do not depend on thread timing
+      for (Future<double[]> future : executor.invokeAll(callables)) {
+        double[] scores = future.get();
+        if (scores == null) {
+          skipped++;
+          continue;
+        }
+        for (Metric metric : Metric.values()) {
+          trackers.get(metric).addDatum(scores[metric.ordinal()]);
+        }
+      }
+    } catch (InterruptedException ie) {
+      throw new TasteException(ie);
+    } catch (ExecutionException ee) {
+      throw new TasteException(ee.getCause());
+    } finally {
+      executor.shutdown();
+    }
+    log.info("Skipped {} users unknown to the recommender", skipped);
+    for (Metric metric : Metric.values()) {
+      log.info("{}@{}: {}", new Object[] {metric, at, trackers.get(metric).getAverage()});
+    }
+    return trackers;
+  }
+
+  FastIDSet getRelevant(PreferenceArray prefs) {
+    FastIDSet relevant = new FastIDSet(prefs.length());
+    for (int i = 0; i < prefs.length(); i++) {
+      if (prefs.getValue(i) >= relevanceThreshold) {
+        relevant.add(prefs.getItemID(i));
+      }
+    }
+    return relevant;
+  }
+
+  /** all four metrics for one list, indexed by Metric.ordinal() */
+  static double[] score(long[] recommended, FastIDSet relevant, int at) {
+    int hits = 0;
+    double dcg = 0.0;
+    double precisionSum = 0.0;
+    int length = Math.min(recommended.length, at);
+    for (int rank = 0; rank < length; rank++) {
+      if (relevant.contains(recommended[rank])) {
+        hits++;
+        dcg += 1.0 / log2(rank + 2);
+        precisionSum += (double) hits / (rank + 1);
+      }
+    }
+    int ideal = Math.min(at, relevant.size());
+    double idcg = 0.0;
+    for (int rank = 0; rank < ideal; rank++) {
+      idcg += 1.0 / log2(rank + 2);
+    }
+    double[] scores = new double[Metric.values().length];
+    scores[Metric.PRECISION.ordinal()] = (double) hits / at;
+    scores[Metric.RECALL.ordinal()] = (double) hits / relevant.size();
+    scores[Metric.NDCG.ordinal()] = dcg / idcg;
+    scores[Metric.MAP.ordinal()] = precisionSum / ideal;
+    return scores;
+  }
+
+  private static double log2(double x) {
+    return Math.log(x) / Math.log(2.0);
+  }
+
+  @Override
+  public String toString() {
+    return "RankingRecommenderEvaluator[at:" + at + ", threshold:" + relevanceThreshold + ']';
+  }
+
+  private final class UserCallable implements Callable<double[]> {
+
+    private final Recommender recommender;
+    private final long userID;
+    private final FastIDSet relevant;
+
+    private UserCallable(Recommender recommender, long userID, FastIDSet relevant) {
+      this.recommender = recommender;
+      this.userID = userID;
+      this.relevant = relevant;
+    }
+
+    @Override
+    public double[] call() throws TasteException {
+      List<RecommendedItem> items;
+      try {
+        items = recommender.recommend(userID, at);
+      } catch (NoSuchUserException nsue) {
+        return null;
+      }
+      long[] recommended = new long[items.size()];
+      for (int i = 0; i < recommended.length; i++) {
+        recommended[i] = items.get(i).getItemID();
+      }
+      return score(recommended, relevant, at);
+    }
+  }
+
+}
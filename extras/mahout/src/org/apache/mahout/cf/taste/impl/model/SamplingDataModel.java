@@ -1,12 +1,17 @@
 /**
- * 
+ *
  */
 package org.apache.mahout.cf.taste.impl.model;
 
 import java.util.ArrayList;
-import java.util.BitSet;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Random;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.mahout.cf.taste.common.NoSuchItemException;
 import org.apache.mahout.cf.taste.common.NoSuchUserException;
@@ -14,6 +19,7 @@ import org.apache.mahout.cf.taste.common.Refreshable;
 import org.apache.mahout.cf.taste.common.TasteException;
 import org.apache.mahout.cf.taste.impl.common.FastByIDMap;
 import org.apache.mahout.cf.taste.impl.common.FastIDSet;
+import org.apache.mahout.cf.taste.impl.common.LongPrimitiveArrayIterator;
 import org.apache.mahout.cf.taste.impl.common.LongPrimitiveIterator;
 import org.apache.mahout.cf.taste.model.DataModel;
 import org.apache.mahout.cf.taste.model.Preference;
@@ -22,31 +28,46 @@ import org.apache.mahout.common.RandomUtils;
 
 /**
  * Subsample entries in data model.
- * Two sampling modes: 
+ * Two sampling modes:
  *  holographic decimates by preference,
  *  linear decimates users and then a user's preferences
  *  user decimates users but includes all preferences
- *  
+ *
  *  Can give upper and lower bounds, allowing subsets for training/testing.
  *  Memory-based. Requires:
- *      Sparse map of user IDs.
- *      Dense bitmap per userID of item ID.
+ *      Sorted array of user IDs and item IDs.
+ *      One shared bitmap slab: each user owns the words that cover
+ *      its sampled item indexes.
  *      Optional mean/stdev per user ID.
- *  
+ *
+ *  Samples are a hash of (seed, user ID, item ID), not a shared Random stream.
+ *  The bit cache is built in parallel across users, and the same seed always
+ *  gives the same sample. Two models with the same seed and disjoint
+ *  [lower, higher) windows are disjoint.
+ *
  *  TODO: boolean prefs? how to add?
  */
 
 public class SamplingDataModel implements DataModel {
-  static BitSet NOBITSET = new BitSet();
   static PreferenceArray NOUSERPREFS = new GenericUserPreferenceArray(0);
+  // users per task when building the bit cache
+  static final int CHUNK = 1024;
 
   final DataModel delegate;
   final double lower;
   final double higher;
   final Distribution samplingMode;
+  final long seed;
   Float defaultPref = 0.0f;
-  final FastByIDMap<BitSet> userIDMap = new FastByIDMap<BitSet>();
-  final FastByIDMap<Integer> itemIDMap = new FastByIDMap<Integer>();
+  // sorted IDs: an item's index is its position in itemIDs
+  long[] userIDs;
+  long[] itemIDs;
+  // per user: word in 'bits' for item index 0, first and number of words owned
+  // numWords is -1 for users dropped in USER mode
+  int[] userBase;
+  int[] userFirstWord;
+  int[] userNumWords;
+  long[] bits;
   final FastByIDMap<Double> meanMap = new FastByIDMap<Double>();
 
   long timeItems = 0;
@@ -66,10 +87,15 @@ public class SamplingDataModel implements DataModel {
   }
 
   public SamplingDataModel(DataModel delegate, double lower, double higher, Distribution samplingMode) throws TasteException {
+    this(delegate, lower, higher, samplingMode, RandomUtils.getRandom().nextLong());
+  }
+
+  public SamplingDataModel(DataModel delegate, double lower, double higher, Distribution samplingMode, long seed) throws TasteException {
     this.delegate = delegate;
     this.lower = lower;
     this.higher = higher;
     this.samplingMode = samplingMode;
+    this.seed = seed;
     fillBitCache();
   }
 
@@ -77,6 +103,10 @@ public class SamplingDataModel implements DataModel {
     defaultPref = value;
   }
 
+  public long getSeed() {
+    return seed;
+  }
+
   @Override
   public LongPrimitiveIterator getItemIDs() throws TasteException {
     return delegate.getItemIDs();
@@ -108,7 +138,7 @@ public class SamplingDataModel implements DataModel {
   public int getNumUsers() throws TasteException {
     return delegate.getNumUsers();
   }
-  
+
   public int getNumUsersWithPreferenceFor(long itemID) throws TasteException {
     long[] itemIDs = {itemID};
     return getNumUsersWithPreferenceFor(itemIDs);
@@ -119,19 +149,21 @@ public class SamplingDataModel implements DataModel {
     long[] itemIDs = {itemID1, itemID2};
     return getNumUsersWithPreferenceFor(itemIDs);
   }
-    
+
   private int getNumUsersWithPreferenceFor(long[] itemIDs)
   throws TasteException {
+    int[] indexes = new int[itemIDs.length];
+    for(int i = 0; i < itemIDs.length; i++) {
+      indexes[i] = itemIndex(itemIDs[i]);
+      if (indexes[i] < 0)
+        throw new NoSuchItemException();
+    }
     int count = 0;
-    LongPrimitiveIterator users = userIDMap.keySetIterator(); // delegate.getUserIDs();
-    while (users.hasNext()) {
-      long userID = users.nextLong();
-      if (userIDMap.get(userID) == NOBITSET)
+    for(int user = 0; user < userIDs.length; user++) {
+      if (userNumWords[user] <= 0)
         continue;
-      for(int i = 0; i < itemIDs.length; i++) {
-        // TODO: user BitSet scan-forward method
-        boolean exists = prefExists(userID, itemIDs[i]);
-        if (exists) {
+      for(int i = 0; i < indexes.length; i++) {
+        if (getBit(user, indexes[i])) {
           count++;
           break;
         }
@@ -167,16 +199,16 @@ public class SamplingDataModel implements DataModel {
   public PreferenceArray getPreferencesForItem(long itemID)
   throws TasteException {
     long startTime = System.currentTimeMillis();
-    if (! itemIDMap.containsKey(itemID))
+    int itemIndex = itemIndex(itemID);
+    if (itemIndex < 0)
       throw new NoSuchItemException();
-    int itemIndex = itemIDMap.get(itemID);
     PreferenceArray prefs = delegate.getPreferencesForItem(itemID);
     ArrayList<Preference> prefList = new ArrayList<Preference>();
     int size = prefs.length();
     for(int i = 0; i < size; i++) {
         long userID = prefs.getUserID(i);
-        BitSet itemSet = userIDMap.get(userID);
-        if (! itemSet.get(itemIndex))
+        int user = userIndex(userID);
+        if (user < 0 || ! getBit(user, itemIndex))
           continue;
         Preference pref = new GenericPreference(userID, prefs.getItemID(i), prefs.getValue(i));
         prefList.add(pref);
@@ -192,18 +224,18 @@ public class SamplingDataModel implements DataModel {
   public PreferenceArray getPreferencesFromUser(long userID)
   throws TasteException {
     long startTime = System.currentTimeMillis();
-    if (! userIDMap.containsKey(userID))
+    int user = userIndex(userID);
+    if (user < 0)
       throw new NoSuchUserException();
-    if (samplingMode == Distribution.USER && !isSampledUserID(userID))
+    if (samplingMode == Distribution.USER && userNumWords[user] < 0)
       return NOUSERPREFS;
-    BitSet itemSet = userIDMap.get(userID);
     PreferenceArray prefs = delegate.getPreferencesFromUser(userID);
     ArrayList<Preference> prefList = new ArrayList<Preference>();
     int size = prefs.length();
     for(int i = 0; i < size; i++) {
       long itemID = prefs.getItemID(i);
-      Integer itemIndex = itemIDMap.get(itemID);
-      if (itemSet.get( itemIndex)) {
+      int itemIndex = itemIndex(itemID);
+      if (itemIndex >= 0 && getBit(user, itemIndex)) {
         Preference pref = new GenericPreference(userID, itemID, prefs.getValue(i));
         prefList.add(pref);
       }
@@ -217,7 +249,7 @@ public class SamplingDataModel implements DataModel {
   @Override
   public LongPrimitiveIterator getUserIDs() throws TasteException {
     // ahah!
-    return userIDMap.keySetIterator();
+    return new LongPrimitiveArrayIterator(userIDs);
   }
 
   @Override
@@ -243,68 +275,166 @@ public class SamplingDataModel implements DataModel {
 
   /*
    * Cache implementation of whether a preference exists
-   * 
-   * userIDMap: user ID -> bitset of whether a preference exists for an item ID
-   * itemIDMap: item ID -> index into above bitset
+   *
+   * userIDs: sorted user IDs, a user's index is its position
+   * itemIDs: sorted item IDs, an item's index is its bit number
+   * bits: one slab for all users. A user owns words
+   *   [userFirstWord, userFirstWord + userNumWords) of its item bitmap,
+   *   stored at bits[userBase + word].
+   *
+   * Two passes over the users, each split into chunks run in parallel:
+   *   size each user's window, then (after a prefix sum) set the bits.
+   * Users write disjoint words, so the second pass needs no locking.
    */
   private void fillBitCache() throws TasteException {
-    final Random rnd = RandomUtils.getRandom();
-    LongPrimitiveIterator it = delegate.getUserIDs();
-    int numItems = delegate.getNumItems();
-    while(it.hasNext()) {
-      long userID = it.next();
-      if (samplingMode == Distribution.HOLOGRAPHIC || isSampled(rnd)) {
-        userIDMap.put(userID, new BitSet(numItems));
-      } else {
-        userIDMap.put(userID, NOBITSET);
-        continue;
+    userIDs = sortedIDs(delegate.getUserIDs(), delegate.getNumUsers());
+    itemIDs = sortedIDs(delegate.getItemIDs(), delegate.getNumItems());
+    int numUsers = userIDs.length;
+    userBase = new int[numUsers];
+    userFirstWord = new int[numUsers];
+    userNumWords = new int[numUsers];
+
+    runChunks(false);
+    long total = 0;
+    for(int user = 0; user < numUsers; user++) {
+      userBase[user] = (int) total - userFirstWord[user];
+      if (userNumWords[user] > 0)
+        total += userNumWords[user];
+      if (total > Integer.MAX_VALUE)
+        throw new TasteException("Sample bit cache too large: " + total + " words");
+    }
+    bits = new long[(int) total];
+    runChunks(true);
+  }
+
+  private void runChunks(final boolean setBits) throws TasteException {
+    List<Callable<Void>> chunks = new ArrayList<Callable<Void>>();
+    for(int start = 0; start < userIDs.length; start += CHUNK) {
+      final int from = start;
+      final int to = Math.min(userIDs.length, start + CHUNK);
+      chunks.add(new Callable<Void>() {
+        @Override
+        public Void call() throws TasteException {
+          for(int user = from; user < to; user++) {
+            fillUser(user, setBits);
+          }
+          return null;
+        }
+      });
+    }
+    int numProcessors = Runtime.getRuntime().availableProcessors();
+    ExecutorService executor = Executors.newFixedThreadPool(numProcessors);
+    try {
+      List<Future<Void>> futures = executor.invokeAll(chunks);
+      for (Future<Void> future : futures) {
+        future.get();
       }
+    } catch (InterruptedException ie) {
+      throw new TasteException(ie);
+    } catch (ExecutionException ee) {
+      throw new TasteException(ee.getCause());
+    } finally {
+      executor.shutdown();
     }
-    int count = 0;
-    it = delegate.getItemIDs();
-    while(it.hasNext()) {
-      itemIDMap.put(it.next(), count++);
+  }
+
+  // first pass: find the user's word window. second pass: set its bits.
+  private void fillUser(int user, boolean setBits) throws TasteException {
+    long userID = userIDs[user];
+    long userHash = userHash(userID);
+    if (samplingMode == Distribution.USER && ! isSampled(toUnit(userHash))) {
+      userNumWords[user] = -1;
+      return;
     }
-    it = userIDMap.keySetIterator();
-    while(it.hasNext()) {
-      long userID = it.next();
-      BitSet itemBits = userIDMap.get(userID);
-      if (itemBits == NOBITSET)
+    PreferenceArray prefs = delegate.getPreferencesFromUser(userID);
+    int min = Integer.MAX_VALUE;
+    int max = -1;
+    int size = prefs.length();
+    for(int i = 0; i < size; i++) {
+      long itemID = prefs.getItemID(i);
+      if (! isSampled(prefSample(userHash, itemID)))
         continue;
-      PreferenceArray items = delegate.getPreferencesFromUser(userID);
-      for(Preference pref: items) {
-        if (isSampled(rnd)) {
-          Integer itemIndex = itemIDMap.get(pref.getItemID());
-          itemBits.set(itemIndex);
-        }
+      int itemIndex = itemIndex(itemID);
+      if (itemIndex < 0)
+        continue;
+      if (setBits) {
+        bits[userBase[user] + (itemIndex >>> 6)] |= 1L << itemIndex;
+      } else {
+        min = Math.min(min, itemIndex);
+        max = Math.max(max, itemIndex);
       }
     }
+    if (! setBits && max >= 0) {
+      userFirstWord[user] = min >>> 6;
+      userNumWords[user] = (max >>> 6) - (min >>> 6) + 1;
+    }
   }
 
-  private boolean isSampled(Random rnd) {
-    double sample = rnd.nextDouble();
+  private static long[] sortedIDs(LongPrimitiveIterator it, int size) {
+    long[] ids = new long[size];
+    int count = 0;
+    while(it.hasNext()) {
+      if (count == ids.length)
+        ids = Arrays.copyOf(ids, Math.max(16, count * 2));
+      ids[count++] = it.nextLong();
+    }
+    if (count < ids.length)
+      ids = Arrays.copyOf(ids, count);
+    Arrays.sort(ids);
+    return ids;
+  }
+
+  private boolean isSampled(double sample) {
     return sample >= lower && sample < higher;
   }
 
-  private boolean isSampledUserID(long userID) {
-    BitSet userBits = userIDMap.get(userID);
-    return userBits != NOBITSET;
+  // user sample, and the base for the user's preference samples
+  private long userHash(long userID) {
+    return mix(seed ^ mix(userID));
+  }
+
+  private static double prefSample(long userHash, long itemID) {
+    return toUnit(mix(userHash + (itemID + 1) * 0x9E3779B97F4A7C15L));
+  }
+
+  // SplitMix64 finalizer
+  private static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  // top 53 bits as a double in [0,1)
+  private static double toUnit(long hash) {
+    return (hash >>> 11) * 0x1.0p-53;
+  }
+
+  private int userIndex(long userID) {
+    return Arrays.binarySearch(userIDs, userID);
+  }
+
+  private int itemIndex(long itemID) {
+    return Arrays.binarySearch(itemIDs, itemID);
+  }
+
+  private boolean getBit(int user, int itemIndex) {
+    int word = itemIndex >>> 6;
+    int first = userFirstWord[user];
+    if (word < first || word >= first + userNumWords[user])
+      return false;
+    return (bits[userBase[user] + word] & (1L << itemIndex)) != 0;
   }
 
   boolean prefExists(long userID, long itemID) throws TasteException {
-    if (! userIDMap.containsKey(userID))
+    int user = userIndex(userID);
+    if (user < 0)
       throw new NoSuchUserException();
-
-    BitSet itemBits = userIDMap.get(userID);
-    Integer itemIndex = itemIDMap.get(itemID);
-    if (samplingMode == Distribution.USER && NOBITSET == itemBits)
+    if (samplingMode == Distribution.USER && userNumWords[user] < 0)
       return false;
-    if (null == itemIndex)
+    int itemIndex = itemIndex(itemID);
+    if (itemIndex < 0)
       throw new NoSuchItemException();
-    boolean value = itemBits.get(itemIndex);
-    return value;
+    return getBit(user, itemIndex);
   }
 
-
-
 }
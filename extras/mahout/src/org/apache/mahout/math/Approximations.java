@@ -0,0 +1,89 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.math;
+
+/**
+ * Fast approximations of Math functions.
+ * 
+ * pow(x, p) is exp2(p * log2(x)), each from a 256-entry table and a short series.
+ * log2 takes the top 8 mantissa bits as a table index and a 4-term ln(1 + r)
+ * series on the remainder, |r| < 1/256. exp2 takes the top 8 fraction bits
+ * as a table index and a degree 4 series on the remainder.
+ * 
+ * Error bound: for finite x > 0 and finite p, when the result is a normal
+ * double, the relative error of pow(x, p) is below POW_ERROR * (1 + |p|).
+ * The error in log2(x) is multiplied by p, hence the |p| term.
+ * Zeros, subnormals, infinities and NaN go to Math.pow.
+ */
+public final class Approximations {
+
+  /** relative error per unit of exponent, see class comment */
+  public static final double POW_ERROR = 1.0e-12;
+
+  private static final double LN2 = Math.log(2);
+  private static final double INV_LN2 = 1 / LN2;
+  // log2(1 + k/256), 256/(256 + k), 2^(k/256)
+  private static final double[] LOG2 = new double[256];
+  private static final double[] INVERSE = new double[256];
+  private static final double[] EXP2 = new double[256];
+
+  static {
+    for (int k = 0; k < 256; k++) {
+      LOG2[k] = Math.log(1 + k / 256.0) * INV_LN2;
+      INVERSE[k] = 256.0 / (256 + k);
+      EXP2[k] = Math.pow(2, k / 256.0);
+    }
+  }
+
+  private Approximations() {
+  }
+
+  public static double pow(double x, double p) {
+    if (!(x >= Double.MIN_NORMAL && x < Double.POSITIVE_INFINITY) || Double.isInfinite(p) || Double.isNaN(p)) {
+      return Math.pow(x, p);
+    }
+    return exp2(p * log2(x));
+  }
+
+  /** log2 for normal, finite x > 0 */
+  public static double log2(double x) {
+    long bits = Double.doubleToRawLongBits(x);
+    int exponent = (int) (bits >>> 52) - 1023;
+    int k = (int) (bits >>> 44) & 0xff;
+    double m = Double.longBitsToDouble((bits & 0x000fffffffffffffL) | 0x3ff0000000000000L);
+    // 0 <= r < 1/256
+    double r = m * INVERSE[k] - 1;
+    double ln = r * (1 - r * (0.5 - r * (1.0 / 3 - r * 0.25)));
+    return exponent + LOG2[k] + ln * INV_LN2;
+  }
+
+  public static double exp2(double y) {
+    if (y >= 1024) {
+      return Double.POSITIVE_INFINITY;
+    }
+    if (y < -1022) {
+      return Math.pow(2, y);
+    }
+    long n = (long) Math.floor(y * 256);
+    double g = (y - n / 256.0) * LN2;
+    double e = 1 + g * (1 + g * (0.5 + g * (1.0 / 6 + g * (1.0 / 24))));
+    long whole = n >> 8;
+    return e * EXP2[(int) (n & 0xff)] * Double.longBitsToDouble((whole + 1023) << 52);
+  }
+
+}
@@ -1,6 +1,5 @@
 package org.apache.mahout.math;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.commons.math.geometry.Rotation;
@@ -29,28 +28,25 @@ public class KabschRotation {
   private final int numVectors;
   private final int dimensions;
   private final Matrix rotation;
+  // null unless translated
+  private final Vector firstCentroid;
+  private final Vector secondCentroid;
   
   // two sets of points. May require translation to centroid
   public KabschRotation(List<Vector> first, List<Vector> second, boolean translate) {
-    if (first.size() != second.size() || first.size() < 2)
-      throw new UnsupportedOperationException("KabshRotation: lists of points must be the same length");
-    numVectors = first.size();
-    dimensions = first.get(0).size();
-    checkDimensions(first);
-    checkDimensions(second);
-    List<Vector> aFinal = first;
-    List<Vector> bFinal = second;
-    if (translate) {
-      List<Vector> aTmp = new ArrayList<Vector>(numVectors);
-      List<Vector> bTmp = new ArrayList<Vector>(numVectors);
-      centerVectors(aFinal, aTmp);
-      centerVectors(bFinal, bTmp);
-      aFinal = aTmp;
-      bFinal = bTmp;
-    }
-    Matrix left = getBaseMatrix(aFinal).transpose();
-    Matrix right = getBaseMatrix(bFinal);
-    Matrix covariance = left.times(right);
+    this(accumulate(first, second), translate);
+  }
+  
+  /*
+   * From a streamed cross-covariance: pairs can be read one at a time
+   * instead of held in two lists.
+   */
+  public KabschRotation(Accumulator pairs, boolean translate) {
+    if (pairs.count < 2)
+      throw new UnsupportedOperationException("KabshRotation: need at least 2 pairs of points");
+    numVectors = pairs.count;
+    dimensions = pairs.dimensions;
+    Matrix covariance = pairs.getCovariance(translate);
     double covarDet = covariance.determinant();
     SingularValueDecomposition svd = new SingularValueDecomposition(covariance);
     double sign = Math.signum(covarDet);
@@ -59,6 +55,17 @@ public class KabschRotation {
       mSign.set(d,  d, 1.0);
     mSign.set(dimensions -1, dimensions -1, sign);
     this.rotation = svd.getV().times(mSign).times(svd.getU().transpose());
+    firstCentroid = translate ? new DenseVector(pairs.firstMean.clone()) : null;
+    secondCentroid = translate ? new DenseVector(pairs.secondMean.clone()) : null;
+  }
+  
+  private static Accumulator accumulate(List<Vector> first, List<Vector> second) {
+    if (first.size() != second.size() || first.size() < 2)
+      throw new UnsupportedOperationException("KabshRotation: lists of points must be the same length");
+    Accumulator pairs = new Accumulator(first.get(0).size());
+    for(int i = 0; i < first.size(); i++)
+      pairs.add(first.get(i), second.get(i));
+    return pairs;
   }
   
   public Matrix getRotation() {
@@ -73,13 +80,6 @@ public class KabschRotation {
     }
   }
   
-  private void checkDimensions(List<Vector> vecs) {
-    for(Vector v: vecs) {
-      if (v.size() != dimensions) 
-        throw new CardinalityException(dimensions, v.size());
-    }
-  }
-  
   public static Vector getCentroid(List<Vector> from) {
     Vector sum = new DenseVector(from.get(0).size());
     for(Vector v: from) {
@@ -89,16 +89,80 @@ public class KabschRotation {
     return centroid;
   }
   
-  // and back comes our old friend the VectorList matrix
-  Matrix getBaseMatrix(List<Vector> vecs) {
-    Matrix m = new DenseMatrix(numVectors, dimensions);
-    for(int r = 0; r < numVectors; r++) {
-      Vector v = vecs.get(r);
-      for(int c = 0; c < dimensions; c++) {
-        m.set(r, c, v.get(c));
+  /*
+   * Move a point from the first set's space into the second's:
+   * rotate about the first centroid, then shift to the second.
+   */
+  public Vector apply(Vector v) {
+    if (v.size() != dimensions)
+      throw new CardinalityException(dimensions, v.size());
+    if (null == firstCentroid)
+      return rotation.times(v);
+    return rotation.times(v.minus(firstCentroid)).plus(secondCentroid);
+  }
+  
+  public int getNumVectors() {
+    return numVectors;
+  }
+  
+  /*
+   * Streaming cross-covariance of matched pairs, d*d doubles however
+   * many pairs are added. Keeps running means and the centered
+   * co-moment (Welford), so centering costs no precision.
+   */
+  public static class Accumulator {
+    final int dimensions;
+    final double[] firstMean;
+    final double[] secondMean;
+    // sum of (a - mean a)(b - mean b)^T
+    final double[][] comoment;
+    final double[] delta;
+    int count = 0;
+    
+    public Accumulator(int dimensions) {
+      this.dimensions = dimensions;
+      firstMean = new double[dimensions];
+      secondMean = new double[dimensions];
+      comoment = new double[dimensions][dimensions];
+      delta = new double[dimensions];
+    }
+    
+    public void add(Vector first, Vector second) {
+      if (first.size() != dimensions)
+        throw new CardinalityException(dimensions, first.size());
+      if (second.size() != dimensions)
+        throw new CardinalityException(dimensions, second.size());
+      count++;
+      for(int i = 0; i < dimensions; i++) {
+        delta[i] = first.getQuick(i) - firstMean[i];
+        firstMean[i] += delta[i] / count;
+      }
+      for(int j = 0; j < dimensions; j++)
+        secondMean[j] += (second.getQuick(j) - secondMean[j]) / count;
+      for(int j = 0; j < dimensions; j++) {
+        double b = second.getQuick(j) - secondMean[j];
+        for(int i = 0; i < dimensions; i++)
+          comoment[i][j] += delta[i] * b;
+      }
+    }
+    
+    public int size() {
+      return count;
+    }
+    
+    // A^T B over the pairs, about the centroids or about the origin
+    public Matrix getCovariance(boolean translate) {
+      Matrix covariance = new DenseMatrix(dimensions, dimensions);
+      for(int i = 0; i < dimensions; i++) {
+        for(int j = 0; j < dimensions; j++) {
+          double c = comoment[i][j];
+          if (! translate)
+            c += count * firstMean[i] * secondMean[j];
+          covariance.setQuick(i, j, c);
+        }
       }
+      return covariance;
     }
-    return m;
   }
   
 }
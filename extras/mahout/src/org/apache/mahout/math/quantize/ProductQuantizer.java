@@ -0,0 +1,236 @@
+package org.apache.mahout.math.quantize;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+import org.apache.mahout.math.DenseVector;
+import org.apache.mahout.math.Vector;
+
+/*
+ * Product quantization.
+ *
+ * Vectors are split into m subspaces of consecutive dimensions. Each subspace
+ * has its own small codebook of at most 256 centroids, trained by k-means.
+ * A vector is stored as m bytes: the nearest centroid in each subspace.
+ *
+ * Squared Euclidean distance from a full query to a coded vector is the sum
+ * of the per-subspace distances from the query to the chosen centroids.
+ * distanceTable() computes those m*k distances once per query;
+ * after that each coded vector costs m table lookups (asymmetric distance).
+ *
+ * Codes can be kept in one byte[] slab, m bytes per vector.
+ */
+
+public class ProductQuantizer extends Quantizer<Vector> {
+  final int dimensions;
+  final int subspaces;
+  final int centroids;
+  // subspace s covers dimensions [start[s], start[s+1])
+  final int[] start;
+  // codebook[s]: centroids for subspace s, row-major, width of the subspace
+  final double[][] codebooks;
+
+  public ProductQuantizer(int dimensions, int subspaces, int centroids) {
+    if (subspaces < 1 || subspaces > dimensions)
+      throw new IllegalArgumentException("Subspaces must be between 1 and " + dimensions);
+    if (centroids < 1 || centroids > 256)
+      throw new IllegalArgumentException("Centroids must be between 1 and 256");
+    this.dimensions = dimensions;
+    this.subspaces = subspaces;
+    this.centroids = centroids;
+    start = new int[subspaces + 1];
+    for(int s = 0; s <= subspaces; s++) {
+      start[s] = (int) ((long) s * dimensions / subspaces);
+    }
+    codebooks = new double[subspaces][];
+  }
+
+  /*
+   * Train the codebooks with k-means in each subspace.
+   * Needs at least as many samples as centroids.
+   */
+  public void train(Collection<Vector> samples, int iterations, long seed) {
+    if (samples.size() < centroids)
+      throw new IllegalArgumentException("Need at least " + centroids + " samples, got " + samples.size());
+    double[][] points = new double[samples.size()][];
+    int n = 0;
+    for(Vector v: samples) {
+      points[n++] = toArray(v);
+    }
+    Random rnd = new Random(seed);
+    for(int s = 0; s < subspaces; s++) {
+      codebooks[s] = kmeans(points, start[s], start[s + 1] - start[s], iterations, rnd);
+    }
+  }
+
+  private double[] kmeans(double[][] points, int from, int width, int iterations, Random rnd) {
+    int n = points.length;
+    double[] book = new double[centroids * width];
+    // start from distinct random samples
+    int[] order = new int[n];
+    for(int i = 0; i < n; i++)
+      order[i] = i;
+    for(int c = 0; c < centroids; c++) {
+      int pick = c + rnd.nextInt(n - c);
+      int tmp = order[c];
+      order[c] = order[pick];
+      order[pick] = tmp;
+      System.arraycopy(points[order[c]], from, book, c * width, width);
+    }
+    int[] assigned = new int[n];
+    double[] sums = new double[centroids * width];
+    int[] counts = new int[centroids];
+    for(int iter = 0; iter < iterations; iter++) {
+      boolean changed = false;
+      for(int i = 0; i < n; i++) {
+        int nearest = nearest(book, width, points[i], from);
+        if (nearest != assigned[i] || iter == 0)
+          changed = true;
+        assigned[i] = nearest;
+      }
+      if (! changed)
+        break;
+      Arrays.fill(sums, 0);
+      Arrays.fill(counts, 0);
+      for(int i = 0; i < n; i++) {
+        int c = assigned[i];
+        counts[c]++;
+        for(int d = 0; d < width; d++)
+          sums[c * width + d] += points[i][from + d];
+      }
+      for(int c = 0; c < centroids; c++) {
+        if (counts[c] == 0) {
+          // empty cluster: restart it on a random sample
+          System.arraycopy(points[rnd.nextInt(n)], from, book, c * width, width);
+          continue;
+        }
+        for(int d = 0; d < width; d++)
+          book[c * width + d] = sums[c * width + d] / counts[c];
+      }
+    }
+    return book;
+  }
+
+  // index of the nearest centroid to values[from .. from+width)
+  private int nearest(double[] book, int width, double[] values, int from) {
+    int best = 0;
+    double min = Double.MAX_VALUE;
+    for(int c = 0; c < centroids; c++) {
+      double sum = 0;
+      int row = c * width;
+      for(int d = 0; d < width; d++) {
+        double diff = values[from + d] - book[row + d];
+        sum += diff * diff;
+      }
+      if (sum < min) {
+        min = sum;
+        best = c;
+      }
+    }
+    return best;
+  }
+
+  public int getSubspaces() {
+    return subspaces;
+  }
+
+  public int getCentroids() {
+    return centroids;
+  }
+
+  public byte[] encode(Vector v) {
+    byte[] codes = new byte[subspaces];
+    encode(v, codes, 0);
+    return codes;
+  }
+
+  // write m codes at codes[offset]
+  public void encode(Vector v, byte[] codes, int offset) {
+    checkTrained();
+    double[] values = toArray(v);
+    for(int s = 0; s < subspaces; s++) {
+      codes[offset + s] = (byte) nearest(codebooks[s], start[s + 1] - start[s], values, start[s]);
+    }
+  }
+
+  public Vector decode(byte[] codes, int offset) {
+    checkTrained();
+    double[] values = new double[dimensions];
+    for(int s = 0; s < subspaces; s++) {
+      int width = start[s + 1] - start[s];
+      int c = codes[offset + s] & 0xff;
+      System.arraycopy(codebooks[s], c * width, values, start[s], width);
+    }
+    return new DenseVector(values);
+  }
+
+  @Override
+  public Vector quantize(Vector value) {
+    return decode(encode(value), 0);
+  }
+
+  @Override
+  public void quantize(Vector value, Vector target) {
+    target.assign(quantize(value));
+  }
+
+  /*
+   * Per-query table: entry s*k + c is the squared distance from the query's
+   * subspace s to centroid c.
+   */
+  public double[] distanceTable(Vector query) {
+    checkTrained();
+    double[] values = toArray(query);
+    double[] table = new double[subspaces * centroids];
+    for(int s = 0; s < subspaces; s++) {
+      int width = start[s + 1] - start[s];
+      double[] book = codebooks[s];
+      for(int c = 0; c < centroids; c++) {
+        double sum = 0;
+        int row = c * width;
+        for(int d = 0; d < width; d++) {
+          double diff = values[start[s] + d] - book[row + d];
+          sum += diff * diff;
+        }
+        table[s * centroids + c] = sum;
+      }
+    }
+    return table;
+  }
+
+  // squared Euclidean distance from the table's query to one coded vector
+  public double distance(double[] table, byte[] codes, int offset) {
+    double sum = 0;
+    int row = 0;
+    for(int s = 0; s < subspaces; s++) {
+      sum += table[row + (codes[offset + s] & 0xff)];
+      row += centroids;
+    }
+    return sum;
+  }
+
+  // distances to 'count' coded vectors packed back to back in 'codes'
+  public void distances(double[] table, byte[] codes, int count, double[] out) {
+    int offset = 0;
+    for(int i = 0; i < count; i++) {
+      out[i] = distance(table, codes, offset);
+      offset += subspaces;
+    }
+  }
+
+  private double[] toArray(Vector v) {
+    if (v.size() != dimensions)
+      throw new IllegalArgumentException("Vector size " + v.size() + " != " + dimensions);
+    double[] values = new double[dimensions];
+    for(int i = 0; i < dimensions; i++)
+      values[i] = v.getQuick(i);
+    return values;
+  }
+
+  private void checkTrained() {
+    if (null == codebooks[0])
+      throw new IllegalStateException("ProductQuantizer is not trained");
+  }
+
+}
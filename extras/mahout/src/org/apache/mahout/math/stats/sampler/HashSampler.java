@@ -0,0 +1,76 @@
+package org.apache.mahout.math.stats.sampler;
+
+/*
+ * Stateless sampling: a record is in the sample when the hash of its key,
+ * mixed with a seed, falls into the window [min, max) of [0, 1).
+ *
+ * The other samplers tick over per record, so what they pick depends on
+ * record order - in Hadoop, on split boundaries and the number of mappers.
+ * This one picks the same records however the input is cut up.
+ * Disjoint windows with the same seed give disjoint samples, for example
+ * [0, 0.9) and [0.9, 1.0) for a training/test split.
+ *
+ * Equal keys are always sampled together.
+ */
+
+public class HashSampler {
+  final long seed;
+  final double min;
+  final double max;
+
+  /*
+   * Bernoulli-style: keep about 'rate' of the records
+   */
+  public HashSampler(long seed, double rate) {
+    this(seed, 0.0, rate);
+  }
+
+  public HashSampler(long seed, double min, double max) {
+    if (min < 0.0 || max > 1.0 || min > max)
+      throw new IllegalArgumentException("Sample window must be inside [0, 1): " + min + ", " + max);
+    this.seed = seed;
+    this.min = min;
+    this.max = max;
+  }
+
+  public boolean isSampled(long key) {
+    return inWindow(position(seed, key));
+  }
+
+  public boolean isSampled(byte[] key, int offset, int length) {
+    return inWindow(position(seed, key, offset, length));
+  }
+
+  public boolean isSampled(byte[] key) {
+    return isSampled(key, 0, key.length);
+  }
+
+  private boolean inWindow(double position) {
+    return position >= min && position < max;
+  }
+
+  /*
+   * Where the key lands in [0, 1), uniform over keys.
+   */
+  public static double position(long seed, long key) {
+    return (mix(seed ^ mix(key)) >>> 11) * 0x1.0p-53;
+  }
+
+  public static double position(long seed, byte[] key, int offset, int length) {
+    // FNV-1a over the bytes
+    long h = 0xCBF29CE484222325L;
+    for(int i = offset; i < offset + length; i++) {
+      h ^= key[i] & 0xff;
+      h *= 0x100000001B3L;
+    }
+    return position(seed, h);
+  }
+
+  // finalizer from SplitMix64
+  static long mix(long h) {
+    h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+    h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+    return h ^ (h >>> 31);
+  }
+
+}
@@ -23,17 +23,17 @@ public class ReservoirSampler<T> {
     this.length = length;
     stored = new ArrayList<T>(length);
     this.rnd = rnd;
-    stage();
-    for(int i = 0; i < length; i++)
-      stored.add(null);
   }
   
+  // the first 'length' samples fill the reservoir, 
+  // sample #n then replaces a random slot with probability length/n
   public void addSample(T sample) {
     if (counter <= length) {
       stored.add(sample);
-    } else if (check(sample)){
-      stored.set((int) nextIndex, sample);
+    } else {
       stage();
+      if (check(sample))
+        stored.set((int) nextIndex, sample);
     }
     counter++;
   }
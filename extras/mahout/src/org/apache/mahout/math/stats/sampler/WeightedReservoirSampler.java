@@ -0,0 +1,115 @@
+package org.apache.mahout.math.stats.sampler;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/*
+ * Weighted reservoir sampler with random keys (Efraimidis & Spirakis, A-Res).
+ * Each sample gets the key u^(1/weight), u uniform in (0,1]; the reservoir
+ * keeps the 'length' largest keys. With equal weights this is a uniform
+ * sample, like ReservoirSampler.
+ *
+ * The keys are the whole state, so reservoirs filled from separate streams
+ * merge into the reservoir of the combined stream: offer every keyed sample
+ * of one to the other. In Hadoop, each mapper fills a reservoir and the
+ * combiner and reducer merge them.
+ *
+ * Keys are stored as log(u)/weight, which orders the same way and does not
+ * underflow for large weights.
+ */
+
+public class WeightedReservoirSampler<T> {
+  final private int length;
+  final private Random rnd;
+  // smallest key on top, the one to replace
+  private PriorityQueue<Keyed<T>> stored;
+
+  public WeightedReservoirSampler(int length, Random rnd) {
+    if (length < 1)
+      throw new IllegalArgumentException("Reservoir length must be positive: " + length);
+    this.length = length;
+    this.rnd = rnd;
+    stored = new PriorityQueue<Keyed<T>>(length);
+  }
+
+  /*
+   * Merge-only reservoir: takes keyed samples from other reservoirs.
+   */
+  public WeightedReservoirSampler(int length) {
+    this(length, null);
+  }
+
+  public void addSample(T sample) {
+    addSample(sample, 1.0);
+  }
+
+  public void addSample(T sample, double weight) {
+    if (!(weight > 0))
+      throw new IllegalArgumentException("Sample weight must be positive: " + weight);
+    offer(sample, key(rnd, weight));
+  }
+
+  /*
+   * Add a sample that already has its key. Returns true if it was kept.
+   */
+  public boolean offer(T sample, double key) {
+    if (stored.size() < length) {
+      stored.add(new Keyed<T>(sample, key));
+      return true;
+    }
+    if (key <= stored.peek().key)
+      return false;
+    stored.poll();
+    stored.add(new Keyed<T>(sample, key));
+    return true;
+  }
+
+  public void merge(WeightedReservoirSampler<T> other) {
+    for(Keyed<T> keyed: other.stored)
+      offer(keyed.sample, keyed.key);
+  }
+
+  public static double key(Random rnd, double weight) {
+    return Math.log(1.0 - rnd.nextDouble()) / weight;
+  }
+
+  public int size() {
+    return stored.size();
+  }
+
+  public Iterator<T> getSamples(boolean flush) {
+    List<T> samples = new ArrayList<T>(stored.size());
+    for(Keyed<T> keyed: stored)
+      samples.add(keyed.sample);
+    if (flush)
+      stored = new PriorityQueue<Keyed<T>>(length);
+    return samples.iterator();
+  }
+
+  // samples with their keys, for passing on to another reservoir
+  public Iterator<Keyed<T>> getKeyedSamples(boolean flush) {
+    List<Keyed<T>> samples = new ArrayList<Keyed<T>>(stored);
+    if (flush)
+      stored = new PriorityQueue<Keyed<T>>(length);
+    return samples.iterator();
+  }
+
+  public static final class Keyed<T> implements Comparable<Keyed<T>> {
+    public final T sample;
+    public final double key;
+
+    Keyed(T sample, double key) {
+      this.sample = sample;
+      this.key = key;
+    }
+
+    @Override
+    public int compareTo(Keyed<T> o) {
+      return Double.compare(key, o.key);
+    }
+  }
+
+}
@@ -0,0 +1,87 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.cf.taste.impl.eval;
+
+import java.util.Map;
+
+import org.apache.mahout.cf.taste.impl.TasteTestCase;
+import org.apache.mahout.cf.taste.impl.common.FastIDSet;
+import org.apache.mahout.cf.taste.impl.common.RunningAverage;
+import org.apache.mahout.cf.taste.impl.eval.RankingRecommenderEvaluator.Metric;
+import org.apache.mahout.cf.taste.impl.model.SamplingDataModel;
+import org.apache.mahout.cf.taste.impl.model.SamplingDataModel.Distribution;
+import org.apache.mahout.cf.taste.impl.recommender.ItemAverageRecommender;
+import org.apache.mahout.cf.taste.model.DataModel;
+import org.apache.mahout.cf.taste.recommender.Recommender;
+import org.junit.Test;
+
+public final class RankingRecommenderEvaluatorTest extends TasteTestCase {
+
+  @Test
+  public void testScore() {
+    FastIDSet relevant = new FastIDSet();
+    relevant.add(2);
+    relevant.add(4);
+    relevant.add(9);
+    double[] scores = RankingRecommenderEvaluator.score(new long[] {1, 2, 3, 4}, relevant, 4);
+    double log3 = Math.log(3) / Math.log(2);
+    assertEquals(0.5, scores[Metric.PRECISION.ordinal()], EPSILON);
+    assertEquals(2.0 / 3, scores[Metric.RECALL.ordinal()], EPSILON);
+    assertEquals((1 / log3 + 1 / Math.log(5) * Math.log(2)) / (1 + 1 / log3 + 0.5),
+        scores[Metric.NDCG.ordinal()], EPSILON);
+    assertEquals((1.0 / 2 + 2.0 / 4) / 3, scores[Metric.MAP.ordinal()], EPSILON);
+
+    // all hits at the top: ideal
+    scores = RankingRecommenderEvaluator.score(new long[] {9, 4, 2}, relevant, 3);
+    for (Metric metric : Metric.values()) {
+      assertEquals(1.0, scores[metric.ordinal()], EPSILON);
+    }
+    // short list still divides precision by 'at'
+    scores = RankingRecommenderEvaluator.score(new long[] {9}, relevant, 10);
+    assertEquals(0.1, scores[Metric.PRECISION.ordinal()], EPSILON);
+    assertEquals(1.0 / 3, scores[Metric.MAP.ordinal()], EPSILON);
+    scores = RankingRecommenderEvaluator.score(new long[0], relevant, 10);
+    for (Metric metric : Metric.values()) {
+      assertEquals(0.0, scores[metric.ordinal()], EPSILON);
+    }
+  }
+
+  @Test
+  public void testEvaluate() throws Exception {
+    DataModel model = getDataModel();
+    DataModel training = new SamplingDataModel(model, 0.0, 0.5, Distribution.HOLOGRAPHIC, 1);
+    DataModel test = new SamplingDataModel(model, 0.5, 1.0, Distribution.HOLOGRAPHIC, 1);
+    Recommender recommender = new ItemAverageRecommender(training);
+    RankingRecommenderEvaluator evaluator = new RankingRecommenderEvaluator(2);
+    Map<Metric,RunningAverage> result = evaluator.evaluate(recommender, test);
+    for (Metric metric : Metric.values()) {
+      RunningAverage average = result.get(metric);
+      // a tiny model may leave no user with held-out preferences
+      if (average.getCount() > 0) {
+        double value = average.getAverage();
+        assertTrue(metric + ": " + value, value >= 0.0 && value <= 1.0);
+      }
+    }
+    // recommendations never include training items, so the training prefs score zero
+    result = evaluator.evaluate(recommender, training);
+    for (Metric metric : Metric.values()) {
+      assertEquals(0.0, result.get(metric).getAverage(), EPSILON);
+    }
+  }
+
+}
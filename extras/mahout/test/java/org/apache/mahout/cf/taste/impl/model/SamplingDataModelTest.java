@@ -17,6 +17,7 @@
 
 package org.apache.mahout.cf.taste.impl.model;
 
+import java.util.Arrays;
 import java.util.Random;
 
 import org.apache.mahout.cf.taste.common.TasteException;
@@ -115,6 +116,49 @@ public final class SamplingDataModelTest extends TasteTestCase {
       comparePrefs(baseModel, sampledModel);
     }
     
+    @Test
+    public void testSameSeed() throws Exception {
+      // parallel build gives the same sample for the same seed
+      SamplingDataModel first = new SamplingDataModel(largeSparse, 0.0, 0.8, Distribution.USER, 42L);
+      SamplingDataModel second = new SamplingDataModel(largeSparse, 0.0, 0.8, Distribution.USER, 42L);
+      SamplingDataModel other = new SamplingDataModel(largeSparse, 0.0, 0.8, Distribution.USER, 43L);
+      assertTrue(Arrays.equals(first.bits, second.bits));
+      boolean differs = false;
+      LongPrimitiveIterator users = largeSparse.getUserIDs();
+      while(users.hasNext()) {
+        long userID = users.nextLong();
+        PreferenceArray a = first.getPreferencesFromUser(userID);
+        PreferenceArray b = second.getPreferencesFromUser(userID);
+        assertEquals(a.length(), b.length());
+        for(int i = 0; i < a.length(); i++) {
+          assertEquals(a.getItemID(i), b.getItemID(i));
+        }
+        if (a.length() != other.getPreferencesFromUser(userID).length())
+          differs = true;
+      }
+      assertTrue(differs);
+    }
+    
+    @Test
+    public void testDisjointWindows() throws Exception {
+      // same seed, windows [0,0.5) and [0.5,1) split every preference exactly once
+      DataModel low = new SamplingDataModel(largeSparse, 0.0, 0.5, Distribution.HOLOGRAPHIC, 7L);
+      DataModel high = new SamplingDataModel(largeSparse, 0.5, 1.0, Distribution.HOLOGRAPHIC, 7L);
+      LongPrimitiveIterator users = largeSparse.getUserIDs();
+      while(users.hasNext()) {
+        long userID = users.nextLong();
+        PreferenceArray prefs = largeSparse.getPreferencesFromUser(userID);
+        assertEquals(prefs.length(),
+            low.getPreferencesFromUser(userID).length() + high.getPreferencesFromUser(userID).length());
+        for(int i = 0; i < prefs.length(); i++) {
+          long itemID = prefs.getItemID(i);
+          boolean inLow = null != low.getPreferenceValue(userID, itemID);
+          boolean inHigh = null != high.getPreferenceValue(userID, itemID);
+          assertTrue(inLow != inHigh);
+        }
+      }
+    }
+    
     private void comparePrefs(DataModel baseModel, DataModel sampledModel) throws TasteException {
       LongPrimitiveIterator itemIter = baseModel.getItemIDs();
       int counter = 0;
@@ -0,0 +1,108 @@
+package org.apache.mahout.common.distance;
+
+import java.util.Random;
+
+import org.apache.mahout.common.RandomUtils;
+import org.apache.mahout.math.DenseVector;
+import org.apache.mahout.math.RandomAccessSparseVector;
+import org.apache.mahout.math.SequentialAccessSparseVector;
+import org.apache.mahout.math.Vector;
+
+/*
+ * Benchmark MinkowskiDistanceMeasure against the old minus() + Math.pow version.
+ */
+
+public class MinkowskiBenchmark {
+  static int DENSE = 1000;
+  static int LARGE = 100000;
+  static int SPARSE = 100;
+  static int PAIRS = 100;
+  static int REPEAT = 200;
+
+  public static void main(String[] args) {
+    MinkowskiBenchmark benchmark = new MinkowskiBenchmark();
+    benchmark.benchmarkAll();
+  }
+
+  public void benchmarkAll() {
+    Random datagen = RandomUtils.getRandom(0);
+    Vector[] dense = new Vector[PAIRS * 2];
+    Vector[] random = new Vector[PAIRS * 2];
+    Vector[] sequential = new Vector[PAIRS * 2];
+    for(int i = 0; i < dense.length; i++) {
+      dense[i] = dense(datagen);
+      random[i] = sparse(datagen);
+      sequential[i] = new SequentialAccessSparseVector(random[i]);
+    }
+    runAll(dense, "dense: ");
+    runAll(random, "random access sparse: ");
+    runAll(sequential, "sequential sparse: ");
+    System.out.println("\t all times in ms");
+  }
+
+  private void runAll(Vector[] vectors, String kind) {
+    // warm up
+    for(int i = 0; i < 3; i++) {
+      runOld(vectors, 1.5);
+      run(new MinkowskiDistanceMeasure(1.5, true), vectors);
+    }
+    System.out.println(kind + "old p=1.5: " + runOld(vectors, 1.5));
+    System.out.println(kind + "exact p=1.5: " + run(new MinkowskiDistanceMeasure(1.5, true), vectors));
+    System.out.println(kind + "approx p=1.5: " + run(new MinkowskiDistanceMeasure(1.5, false), vectors));
+    System.out.println(kind + "old p=1: " + runOld(vectors, 1));
+    System.out.println(kind + "p=1: " + run(new MinkowskiDistanceMeasure(1, true), vectors));
+    System.out.println(kind + "old p=2: " + runOld(vectors, 2));
+    System.out.println(kind + "p=2: " + run(new MinkowskiDistanceMeasure(2, true), vectors));
+    System.out.println(kind + "old p=0.5: " + runOld(vectors, 0.5));
+    System.out.println(kind + "p=0.5: " + run(new MinkowskiDistanceMeasure(0.5, true), vectors));
+  }
+
+  long run(DistanceMeasure measure, Vector[] vectors) {
+    double sum = 0;
+    long start = System.currentTimeMillis();
+    for(int r = 0; r < REPEAT; r++) {
+      for(int i = 0; i < vectors.length; i += 2)
+        sum += measure.distance(vectors[i], vectors[i + 1]);
+    }
+    long time = System.currentTimeMillis() - start;
+    if (sum == 0)
+      System.out.println();
+    return time;
+  }
+
+  // the version before the rewrite
+  long runOld(Vector[] vectors, double exponent) {
+    double sum = 0;
+    long start = System.currentTimeMillis();
+    for(int r = 0; r < REPEAT; r++) {
+      for(int i = 0; i < vectors.length; i += 2) {
+        Vector diff = vectors[i].minus(vectors[i + 1]);
+        double total = 0;
+        for(int j = 0; j < diff.size(); j++)
+          total += Math.pow(Math.abs(diff.getQuick(j)), exponent);
+        sum += Math.pow(total, 1 / exponent);
+      }
+    }
+    long time = System.currentTimeMillis() - start;
+    if (sum == 0)
+      System.out.println();
+    return time;
+  }
+
+  Vector dense(Random rnd) {
+    double[] values = new double[DENSE];
+    for(int i = 0; i < DENSE; i++) {
+      values[i] = rnd.nextGaussian();
+    }
+    return new DenseVector(values);
+  }
+
+  Vector sparse(Random rnd) {
+    Vector v = new RandomAccessSparseVector(LARGE);
+    for(int i = 0; i < SPARSE; i++) {
+      v.setQuick(rnd.nextInt(LARGE), rnd.nextGaussian());
+    }
+    return v;
+  }
+
+}
@@ -20,7 +20,10 @@ package org.apache.mahout.common.distance;
 import java.util.Random;
 
 import org.apache.mahout.common.MahoutTestCase;
+import org.apache.mahout.math.CardinalityException;
 import org.apache.mahout.math.DenseVector;
+import org.apache.mahout.math.RandomAccessSparseVector;
+import org.apache.mahout.math.SequentialAccessSparseVector;
 import org.apache.mahout.math.Vector;
 import org.junit.Test;
 
@@ -113,4 +116,74 @@ public final class TestMinkowskiMeasure extends MahoutTestCase {
       return;
     assertTrue(greater / lesser < 1.0 + EPSILON);
   }
+
+  @Test
+  public void testFastPaths() {
+    Random rnd = new Random(0);
+    Vector[] dense = {randomDense(rnd, 50), randomDense(rnd, 50)};
+    check(dense[0], dense[1], 1.0, new ManhattanDistanceMeasure().distance(dense[0], dense[1]));
+    check(dense[0], dense[1], 2.0, new EuclideanDistanceMeasure().distance(dense[0], dense[1]));
+    check(dense[0], dense[1], 0.5, reference(dense[0], dense[1], 0.5));
+    check(dense[0], dense[1], 3.0, reference(dense[0], dense[1], 3.0));
+  }
+
+  @Test
+  public void testSparse() {
+    Random rnd = new Random(1);
+    double[] exponents = {0.5, 1.0, 1.5, 2.0, 3.0};
+    for (int trial = 0; trial < 20; trial++) {
+      Vector a = randomSparse(rnd, 1000, 30, true);
+      Vector b = randomSparse(rnd, 1000, 30, false);
+      Vector[] as = {a, new SequentialAccessSparseVector(a), new DenseVector(1000).assign(a)};
+      Vector[] bs = {b, new SequentialAccessSparseVector(b), new DenseVector(1000).assign(b)};
+      for (double exponent : exponents) {
+        double expected = reference(a, b, exponent);
+        for (Vector v1 : as) {
+          for (Vector v2 : bs) {
+            check(v1, v2, exponent, expected);
+            check(v2, v1, exponent, expected);
+          }
+        }
+      }
+    }
+  }
+
+  @Test(expected = CardinalityException.class)
+  public void testCardinality() {
+    new MinkowskiDistanceMeasure(1.5, true).distance(new DenseVector(3), new DenseVector(4));
+  }
+
+  private static void check(Vector v1, Vector v2, double exponent, double expected) {
+    double exact = new MinkowskiDistanceMeasure(exponent, true).distance(v1, v2);
+    double approx = new MinkowskiDistanceMeasure(exponent, false).distance(v1, v2);
+    assertEquals(expected, exact, 1.0e-9 * expected);
+    assertEquals(expected, approx, 1.0e-9 * expected);
+  }
+
+  // the textbook formula, one coordinate at a time
+  private static double reference(Vector v1, Vector v2, double exponent) {
+    double sum = 0;
+    for (int i = 0; i < v1.size(); i++) {
+      sum += Math.pow(Math.abs(v1.getQuick(i) - v2.getQuick(i)), exponent);
+    }
+    return Math.pow(sum, 1 / exponent);
+  }
+
+  private static Vector randomDense(Random rnd, int size) {
+    Vector v = new DenseVector(size);
+    for (int i = 0; i < size; i++) {
+      v.setQuick(i, rnd.nextGaussian());
+    }
+    return v;
+  }
+
+  // half the nonzeros on shared indexes, so both merge branches run
+  private static Vector randomSparse(Random rnd, int size, int nonzeros, boolean even) {
+    Vector v = new RandomAccessSparseVector(size);
+    for (int i = 0; i < nonzeros; i++) {
+      int index = rnd.nextBoolean() ? 2 * rnd.nextInt(size / 2) + (even ? 0 : 1) : rnd.nextInt(size / 10);
+      v.setQuick(index, rnd.nextGaussian());
+    }
+    return v;
+  }
 }
@@ -0,0 +1,72 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.mahout.math;
+
+import java.util.Random;
+
+import org.apache.mahout.common.MahoutTestCase;
+import org.junit.Test;
+
+/*
+ * Check the documented error bound of Approximations.pow.
+ */
+public class TestApproximations extends MahoutTestCase {
+
+  @Test
+  public void testPowBound() {
+    Random rnd = new Random(0);
+    for (int i = 0; i < 1000000; i++) {
+      // x over 60 orders of magnitude, p in (-10, 10)
+      double x = Math.exp((rnd.nextDouble() - 0.5) * 140);
+      double p = (rnd.nextDouble() - 0.5) * 20;
+      checkPow(x, p);
+    }
+    // the exponents MinkowskiDistanceMeasure gets used with
+    double[] exponents = {0.02, 0.3, 1.5, 3, 50};
+    for (double p : exponents) {
+      for (int i = 0; i < 10000; i++) {
+        checkPow(rnd.nextDouble() * 10, p);
+      }
+    }
+  }
+
+  @Test
+  public void testEdges() {
+    assertEquals(0.0, Approximations.pow(0.0, 2.5), 0.0);
+    assertEquals(Double.POSITIVE_INFINITY, Approximations.pow(0.0, -1), 0.0);
+    assertTrue(Double.isNaN(Approximations.pow(Double.NaN, 2)));
+    assertEquals(Math.pow(Double.MIN_VALUE, 0.5), Approximations.pow(Double.MIN_VALUE, 0.5), 0.0);
+    assertEquals(1.0, Approximations.pow(1.0, 7.3), 1.0e-15);
+    assertEquals(1024.0, Approximations.pow(2.0, 10), 1.0e-9);
+    assertEquals(Double.POSITIVE_INFINITY, Approximations.pow(1.0e300, 2), 0.0);
+    for (int k = -1022; k < 1024; k++) {
+      assertEquals(k, Approximations.log2(Math.pow(2, k)), 1.0e-12);
+    }
+  }
+
+  private static void checkPow(double x, double p) {
+    double expected = Math.pow(x, p);
+    if (expected < Double.MIN_NORMAL || Double.isInfinite(expected)) {
+      return;
+    }
+    double error = Math.abs(Approximations.pow(x, p) / expected - 1);
+    assertTrue("pow(" + x + ", " + p + ") error " + error,
+        error <= Approximations.POW_ERROR * (1 + Math.abs(p)));
+  }
+
+}
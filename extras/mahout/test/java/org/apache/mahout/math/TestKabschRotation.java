@@ -2,9 +2,11 @@ package org.apache.mahout.math;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import org.apache.commons.math.geometry.Rotation;
 import org.apache.commons.math.geometry.Vector3D;
+import org.apache.mahout.common.RandomUtils;
 import org.apache.mahout.math.CardinalityException;
 import org.apache.mahout.math.DenseMatrix;
 import org.apache.mahout.math.DenseVector;
@@ -75,6 +77,51 @@ public class TestKabschRotation extends MahoutTestCase {
     }
   }
 
+  @Test
+  public void testStreaming() {
+    Vector3D axis = new Vector3D(0.2, -0.5, 0.9);
+    Rotation mangler = new Rotation(axis, 1.3);
+    Random rnd = RandomUtils.getRandom(0);
+    List<Vector> aVecs = new ArrayList<Vector>();
+    List<Vector> bVecs = new ArrayList<Vector>();
+    KabschRotation.Accumulator pairs = new KabschRotation.Accumulator(3);
+    for(int i = 0; i < 1000; i++) {
+      double[] left = {rnd.nextGaussian() + 100, rnd.nextGaussian() * 3, rnd.nextGaussian() - 50};
+      double[] right = rotate(mangler, left);
+      // shift the second set as well
+      right[0] += 7;
+      Vector a = new DenseVector(left);
+      Vector b = new DenseVector(right);
+      aVecs.add(a);
+      bVecs.add(b);
+      pairs.add(a, b);
+    }
+    KabschRotation streamed = new KabschRotation(pairs, true);
+    assertEquals(1000, streamed.getNumVectors());
+    double[][] expectedRotation = mangler.getMatrix();
+    for(int r = 0; r < 3; r++) {
+      for(int c = 0; c < 3; c++)
+        assertEquals(expectedRotation[r][c], streamed.getRotation().get(r, c), 1.0e-10);
+    }
+    for(int i = 0; i < aVecs.size(); i++) {
+      assertEquals(0.0, streamed.apply(aVecs.get(i)).minus(bVecs.get(i)).norm(1), 1.0e-9);
+    }
+
+    // no shift: rotate about the origin
+    pairs = new KabschRotation.Accumulator(3);
+    for(Vector a: aVecs)
+      pairs.add(a, new DenseVector(rotate(mangler, new double[]{a.get(0), a.get(1), a.get(2)})));
+    KabschRotation origin = new KabschRotation(pairs, false);
+    Vector a = aVecs.get(0);
+    Vector expected = new DenseVector(rotate(mangler, new double[]{a.get(0), a.get(1), a.get(2)}));
+    assertEquals(0.0, origin.apply(a).minus(expected).norm(1), 1.0e-9);
+  }
+
+  @Test(expected = CardinalityException.class)
+  public void testCardinality() {
+    new KabschRotation.Accumulator(3).add(new DenseVector(3), new DenseVector(2));
+  }
+
   static double[] rotate(Rotation mangler, double[] left1) {
     Vector3D out = mangler.applyTo(new Vector3D(left1[0], left1[1], left1[2]));
     return new double[]{out.getX(), out.getY(), out.getZ()};
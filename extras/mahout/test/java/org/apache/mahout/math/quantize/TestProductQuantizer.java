@@ -0,0 +1,132 @@
+package org.apache.mahout.math.quantize;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.mahout.math.DenseVector;
+import org.apache.mahout.math.Vector;
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class TestProductQuantizer extends Assert {
+  static double EPSILON = 0.0000001;
+  static int DIMENSIONS = 30;
+  static int CLUSTERS = 20;
+  static int RANK = 50;
+
+  @Test
+  public void testAsymmetricDistance() {
+    // table distance is the exact squared distance to the decoded vector
+    List<Vector> data = clustered(new Random(0), 1000);
+    ProductQuantizer pq = new ProductQuantizer(DIMENSIONS, 7, 16);
+    pq.train(data, 20, 0);
+    Vector query = data.get(3);
+    double[] table = pq.distanceTable(query);
+    for(Vector v: data.subList(0, 100)) {
+      byte[] codes = pq.encode(v);
+      Vector decoded = pq.decode(codes, 0);
+      assertEquals(query.getDistanceSquared(decoded), pq.distance(table, codes, 0), EPSILON);
+    }
+  }
+
+  @Test
+  public void testSlab() {
+    List<Vector> data = clustered(new Random(1), 500);
+    ProductQuantizer pq = new ProductQuantizer(DIMENSIONS, 5, 32);
+    pq.train(data, 20, 1);
+    int m = pq.getSubspaces();
+    byte[] slab = new byte[data.size() * m];
+    for(int i = 0; i < data.size(); i++)
+      pq.encode(data.get(i), slab, i * m);
+    double[] table = pq.distanceTable(data.get(0));
+    double[] out = new double[data.size()];
+    pq.distances(table, slab, data.size(), out);
+    for(int i = 0; i < data.size(); i++)
+      assertEquals(pq.distance(table, pq.encode(data.get(i)), 0), out[i], EPSILON);
+  }
+
+  @Test
+  public void testQuantizationError() {
+    // more subspaces or centroids: less error
+    Random rnd = new Random(2);
+    List<Vector> data = clustered(rnd, 2000);
+    double coarse = error(data, 1, 4);
+    double fine = error(data, 10, 64);
+    assertTrue(fine < coarse);
+    // centroids of a trained codebook encode to themselves
+    ProductQuantizer pq = new ProductQuantizer(DIMENSIONS, 3, 8);
+    pq.train(data, 10, 0);
+    Vector q = pq.quantize(data.get(0));
+    assertEquals(0.0, q.getDistanceSquared(pq.quantize(q)), EPSILON);
+  }
+
+  @Test
+  public void testRanking() {
+    // nearest neighbors by asymmetric distance are mostly true neighbors
+    Random rnd = new Random(3);
+    List<Vector> data = clustered(rnd, 2000);
+    ProductQuantizer pq = new ProductQuantizer(DIMENSIONS, 10, 64);
+    pq.train(data, 20, 3);
+    int found = 0;
+    int queries = 20;
+    for(int q = 0; q < queries; q++) {
+      Vector query = data.get(rnd.nextInt(data.size()));
+      double[] table = pq.distanceTable(query);
+      int exact = -1;
+      double minExact = Double.MAX_VALUE;
+      List<Integer> top = new ArrayList<Integer>();
+      double[] approxDistance = new double[data.size()];
+      for(int i = 0; i < data.size(); i++) {
+        Vector v = data.get(i);
+        if (v == query)
+          continue;
+        double d = query.getDistanceSquared(v);
+        if (d < minExact) {
+          minExact = d;
+          exact = i;
+        }
+        approxDistance[i] = pq.distance(table, pq.encode(v), 0);
+      }
+      // exact nearest neighbor is within the approximate top RANK
+      for(int i = 0; i < data.size(); i++) {
+        if (data.get(i) != query && approxDistance[i] <= approxDistance[exact])
+          top.add(i);
+      }
+      if (top.size() <= RANK)
+        found++;
+    }
+    assertTrue(found >= queries * 9 / 10);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testUntrained() {
+    new ProductQuantizer(4, 2, 2).encode(new DenseVector(4));
+  }
+
+  private static double error(List<Vector> data, int m, int k) {
+    ProductQuantizer pq = new ProductQuantizer(DIMENSIONS, m, k);
+    pq.train(data, 20, 0);
+    double sum = 0;
+    for(Vector v: data)
+      sum += v.getDistanceSquared(pq.quantize(v));
+    return sum;
+  }
+
+  private static List<Vector> clustered(Random rnd, int count) {
+    double[][] centers = new double[CLUSTERS][DIMENSIONS];
+    for(int c = 0; c < CLUSTERS; c++)
+      for(int d = 0; d < DIMENSIONS; d++)
+        centers[c][d] = rnd.nextDouble() * 10;
+    List<Vector> data = new ArrayList<Vector>();
+    for(int i = 0; i < count; i++) {
+      double[] values = new double[DIMENSIONS];
+      double[] center = centers[rnd.nextInt(CLUSTERS)];
+      for(int d = 0; d < DIMENSIONS; d++)
+        values[d] = center[d] + rnd.nextGaussian() * 0.3;
+      data.add(new DenseVector(values));
+    }
+    return data;
+  }
+
+}
@@ -0,0 +1,68 @@
+package org.apache.mahout.math.stats.sampler;
+
+import org.apache.mahout.math.MahoutTestCase;
+import org.junit.Test;
+
+public class TestHashSampler extends MahoutTestCase {
+
+  @Test
+  public void testRate() {
+    HashSampler samp = new HashSampler(3, 0.2);
+    int count = 0;
+    for(long key = 0; key < 100000; key++) {
+      if (samp.isSampled(key))
+        count++;
+    }
+    assertEquals(20000, count, 600);
+  }
+
+  /*
+   * Same answer for a key, whatever came before it
+   */
+  @Test
+  public void testOrder() {
+    HashSampler samp = new HashSampler(3, 0.5);
+    boolean[] forward = new boolean[1000];
+    for(int key = 0; key < forward.length; key++) {
+      forward[key] = samp.isSampled(key);
+    }
+    HashSampler other = new HashSampler(3, 0.5);
+    for(int key = forward.length - 1; key >= 0; key--) {
+      assertEquals(forward[key], other.isSampled(key));
+    }
+  }
+
+  @Test
+  public void testWindows() {
+    HashSampler train = new HashSampler(11, 0.0, 0.9);
+    HashSampler test = new HashSampler(11, 0.9, 1.0);
+    for(long key = 0; key < 10000; key++) {
+      byte[] bytes = Long.toString(key).getBytes();
+      assertTrue(train.isSampled(bytes) != test.isSampled(bytes));
+    }
+  }
+
+  @Test
+  public void testSeed() {
+    HashSampler a = new HashSampler(1, 0.5);
+    HashSampler b = new HashSampler(2, 0.5);
+    int same = 0;
+    for(long key = 0; key < 10000; key++) {
+      if (a.isSampled(key) == b.isSampled(key))
+        same++;
+    }
+    assertEquals(5000, same, 300);
+  }
+
+  @Test
+  public void testBytes() {
+    byte[] line = "xx1::2::3yy".getBytes();
+    assertEquals(HashSampler.position(5, "1::2::3".getBytes(), 0, 7), HashSampler.position(5, line, 2, 7), 0.0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadWindow() {
+    new HashSampler(0, 0.5, 0.4);
+  }
+
+}
@@ -0,0 +1,64 @@
+package org.apache.mahout.math.stats.sampler;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.mahout.math.MahoutTestCase;
+import org.junit.Test;
+
+public class TestReservoirSampler extends MahoutTestCase {
+
+  @Test
+  public void testSize() {
+    ReservoirSampler<Integer> samp = fill(5, 10, new Random(0));
+    assertEquals(5, count(samp.getSamples(false)));
+    samp = fill(1000, 10, new Random(0));
+    Set<Integer> unique = new HashSet<Integer>();
+    Iterator<Integer> it = samp.getSamples(true);
+    while (it.hasNext()) {
+      Integer sample = it.next();
+      assertNotNull(sample);
+      unique.add(sample);
+    }
+    assertEquals(10, unique.size());
+    assertFalse(samp.getSamples(true).hasNext());
+  }
+
+  /*
+   * Every item of the stream is kept with probability SIZE/N.
+   */
+  @Test
+  public void testUniform() {
+    int N = 100;
+    int SIZE = 10;
+    int TRIALS = 20000;
+    int[] hits = new int[N];
+    Random rnd = new Random(1);
+    for(int t = 0; t < TRIALS; t++) {
+      Iterator<Integer> it = fill(N, SIZE, rnd).getSamples(true);
+      while (it.hasNext())
+        hits[it.next()]++;
+    }
+    double expected = (double) TRIALS * SIZE / N;
+    for(int i = 0; i < N; i++)
+      assertEquals("item " + i, expected, hits[i], expected * 0.1);
+  }
+
+  private static ReservoirSampler<Integer> fill(int n, int size, Random rnd) {
+    ReservoirSampler<Integer> samp = new ReservoirSampler<Integer>(size, rnd);
+    for(int i = 0; i < n; i++)
+      samp.addSample(i);
+    return samp;
+  }
+
+  private static int count(Iterator<Integer> it) {
+    int count = 0;
+    while (it.hasNext()) {
+      it.next();
+      count++;
+    }
+    return count;
+  }
+}
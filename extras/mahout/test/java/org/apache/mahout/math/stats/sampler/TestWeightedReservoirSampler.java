@@ -0,0 +1,102 @@
+package org.apache.mahout.math.stats.sampler;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.mahout.math.MahoutTestCase;
+import org.junit.Test;
+
+public class TestWeightedReservoirSampler extends MahoutTestCase {
+
+  @Test
+  public void testSize() {
+    WeightedReservoirSampler<Integer> samp = fill(0, 5, 10, new Random(0));
+    assertEquals(5, samp.size());
+    samp = fill(0, 1000, 10, new Random(0));
+    Set<Integer> unique = new HashSet<Integer>();
+    Iterator<Integer> it = samp.getSamples(true);
+    while (it.hasNext())
+      unique.add(it.next());
+    assertEquals(10, unique.size());
+    assertEquals(0, samp.size());
+  }
+
+  /*
+   * Four streams merged into one reservoir: every item of the
+   * combined stream is kept with probability SIZE/N.
+   */
+  @Test
+  public void testMergeUniform() {
+    int N = 100;
+    int SIZE = 10;
+    int TRIALS = 20000;
+    int[] hits = new int[N];
+    Random rnd = new Random(1);
+    for(int t = 0; t < TRIALS; t++) {
+      WeightedReservoirSampler<Integer> merged = new WeightedReservoirSampler<Integer>(SIZE);
+      // uneven streams, as from uneven splits
+      merged.merge(fill(0, 10, SIZE, rnd));
+      merged.merge(fill(10, 60, SIZE, rnd));
+      merged.merge(fill(60, 65, SIZE, rnd));
+      merged.merge(fill(65, 100, SIZE, rnd));
+      assertEquals(SIZE, merged.size());
+      Iterator<Integer> it = merged.getSamples(true);
+      while (it.hasNext())
+        hits[it.next()]++;
+    }
+    double expected = (double) TRIALS * SIZE / N;
+    for(int i = 0; i < N; i++)
+      assertEquals("item " + i, expected, hits[i], expected * 0.1);
+  }
+
+  /*
+   * With a reservoir of one, an item is picked in proportion to its weight.
+   */
+  @Test
+  public void testWeights() {
+    int TRIALS = 30000;
+    int[] hits = new int[3];
+    Random rnd = new Random(2);
+    for(int t = 0; t < TRIALS; t++) {
+      WeightedReservoirSampler<Integer> samp = new WeightedReservoirSampler<Integer>(1, rnd);
+      samp.addSample(0, 1.0);
+      samp.addSample(1, 2.0);
+      samp.addSample(2, 7.0);
+      hits[samp.getSamples(false).next()]++;
+    }
+    assertEquals(0.1, (double) hits[0] / TRIALS, 0.01);
+    assertEquals(0.2, (double) hits[1] / TRIALS, 0.01);
+    assertEquals(0.7, (double) hits[2] / TRIALS, 0.01);
+  }
+
+  @Test
+  public void testKeyed() {
+    WeightedReservoirSampler<String> samp = new WeightedReservoirSampler<String>(2);
+    assertTrue(samp.offer("a", -3.0));
+    assertTrue(samp.offer("b", -1.0));
+    assertTrue(samp.offer("c", -2.0));
+    assertFalse(samp.offer("d", -5.0));
+    Set<String> kept = new HashSet<String>();
+    Iterator<WeightedReservoirSampler.Keyed<String>> it = samp.getKeyedSamples(false);
+    while (it.hasNext())
+      kept.add(it.next().sample);
+    assertEquals(2, kept.size());
+    assertTrue(kept.contains("b"));
+    assertTrue(kept.contains("c"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadWeight() {
+    new WeightedReservoirSampler<Integer>(1, new Random(0)).addSample(0, 0.0);
+  }
+
+  private static WeightedReservoirSampler<Integer> fill(int from, int to, int size, Random rnd) {
+    WeightedReservoirSampler<Integer> samp = new WeightedReservoirSampler<Integer>(size, rnd);
+    for(int i = from; i < to; i++)
+      samp.addSample(i);
+    return samp;
+  }
+
+}
@@ -18,8 +18,10 @@
 package hack;
 
 import lsh.mahout.core.Hash;
+import lsh.mahout.core.Hasher;
 import lsh.mahout.core.SimplexSpace;
 import lsh.mahout.core.SparseHash;
+import lsh.mahout.core.VertexTransitiveHasher;
 
 import org.apache.commons.cli2.CommandLine;
 import org.apache.commons.cli2.Group;
@@ -46,6 +48,7 @@ import org.slf4j.LoggerFactory;
 public final class VectorScan {
   SimplexSpace<String>  space = null;
   static int DIMS = 45000;
+  static Hasher hasher = new VertexTransitiveHasher(DIMS, 0.001d);
   
   private static final Logger log = LoggerFactory.getLogger(VectorScan.class);
   
@@ -157,7 +160,8 @@ public final class VectorScan {
     }
 
   private static void addSpaces(SimplexSpace<String>[] spaces, int start, String key, Vector v) {
-   lsh.mahout.core.SparseHash sh = (SparseHash) spaces[start].getHashLOD(v);
+    // only walks the nonzero values, not all DIMS
+    SparseHash sh = new SparseHash(hasher, v, start);
     for(int lod = start; lod < spaces.length; lod++) {
       Hash spot = new SparseHash(sh, lod);
       if (null != spaces[lod]) {
@@ -168,8 +172,6 @@ public final class VectorScan {
   }
 
   private static SimplexSpace<String>[] makeSpaces(int start, int n, boolean doCount) {
-//    Hasher hasher = new OrthonormalHasher(DIMS, 0.001d);
-    lsh.mahout.core.Hasher hasher = new lsh.mahout.core.VertexTransitiveHasher(DIMS, 0.001d);
     DistanceMeasure measure = new EuclideanDistanceMeasure();
     SimplexSpace<String>[] spaces = new SimplexSpace[n];
     for(int i = start; i < n; i++) {
@@ -0,0 +1,265 @@
+package lsh.hadoop;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.apache.mahout.math.stats.OnlineSummarizer;
+
+/*
+ * Distribution of points per corner.
+ *
+ * Exact: number of corners, points, singletons, mean and standard deviation,
+ * a power-of-two histogram, percentiles (from the count -> corners table)
+ * and the K heaviest corners.
+ * Online: mean, standard deviation and quartiles from OnlineSummarizer,
+ * which wants its samples in no particular order. It sees counts passed
+ * to add(). Its state does not merge, so merged tables are fed to it with
+ * sampleCounts(), one corner at a time in random order.
+ *
+ * The count table is small (one entry per distinct count) and merges, so
+ * a mapper ships its table once rather than one record per corner.
+ */
+
+public class CornerStats {
+  static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+  final int topK;
+  final OnlineSummarizer summarizer = new OnlineSummarizer();
+  // points in a corner -> number of such corners
+  final TreeMap<Integer,Long> counts = new TreeMap<Integer,Long>();
+  // lightest of the current top K on top
+  final PriorityQueue<Heavy> top;
+  long corners = 0;
+  long points = 0;
+  double squares = 0;
+  long sampled = 0;
+
+  public CornerStats(int topK) {
+    this.topK = topK;
+    top = new PriorityQueue<Heavy>(Math.max(1, topK), LIGHTEST);
+  }
+
+  // number of points in one line of corner output: "corner<TAB>point|point|..."
+  public static int countPoints(String line) {
+    int tab = line.indexOf('\t');
+    if (tab < 0 || tab == line.length() - 1)
+      return 0;
+    int count = 1;
+    for(int i = tab + 1; i < line.length(); i++) {
+      if (line.charAt(i) == '|')
+        count++;
+    }
+    return count;
+  }
+
+  public void add(int count) {
+    summarizer.add(count);
+    sampled++;
+    addCount(count, 1);
+  }
+
+  // 'number' corners with 'count' points each
+  public void addCount(int count, long number) {
+    Long old = counts.get(count);
+    counts.put(count, null == old ? number : old + number);
+    corners += number;
+    points += count * number;
+    squares += (double) count * count * number;
+  }
+
+  // count table as "count:corners,count:corners,..."
+  public String getCounts() {
+    StringBuilder sb = new StringBuilder();
+    for(Map.Entry<Integer,Long> entry: counts.entrySet()) {
+      if (sb.length() > 0)
+        sb.append(',');
+      sb.append(entry.getKey()).append(':').append(entry.getValue());
+    }
+    return sb.toString();
+  }
+
+  // merge a table from getCounts()
+  public void addCounts(String table) {
+    if (table.length() == 0)
+      return;
+    for(String entry: table.split(",")) {
+      int colon = entry.indexOf(':');
+      addCount(Integer.parseInt(entry.substring(0, colon)), Long.parseLong(entry.substring(colon + 1)));
+    }
+  }
+
+  /*
+   * Feed every corner in the count table to the summarizer, in random order.
+   * For stats built with addCount() and addCounts() only: corners passed
+   * to add() are already in it. One draw per corner, a Fenwick tree over
+   * the remaining corners per count picks each one.
+   */
+  public void sampleCounts(Random random) {
+    int size = counts.size();
+    int[] keys = new int[size];
+    long[] tree = new long[size + 1];
+    int k = 0;
+    for(Map.Entry<Integer,Long> entry: counts.entrySet()) {
+      keys[k] = entry.getKey();
+      for(int i = k + 1; i <= size; i += i & -i)
+        tree[i] += entry.getValue();
+      k++;
+    }
+    int high = Integer.highestOneBit(Math.max(1, size));
+    for(long remaining = corners; remaining > 0; remaining--) {
+      long rank = Math.min(remaining - 1, (long) (random.nextDouble() * remaining));
+      // largest prefix with at most 'rank' corners; the next key is the draw
+      int pos = 0;
+      for(int step = high; step > 0; step >>= 1) {
+        if (pos + step <= size && tree[pos + step] <= rank) {
+          pos += step;
+          rank -= tree[pos];
+        }
+      }
+      for(int i = pos + 1; i <= size; i += i & -i)
+        tree[i]--;
+      summarizer.add(keys[pos]);
+      sampled++;
+    }
+  }
+
+  public void offerTop(int count, String corner) {
+    if (topK <= 0)
+      return;
+    Heavy heavy = new Heavy(count, corner);
+    if (top.size() < topK) {
+      top.add(heavy);
+    } else if (LIGHTEST.compare(heavy, top.peek()) > 0) {
+      top.poll();
+      top.add(heavy);
+    }
+  }
+
+  public long getCorners() {
+    return corners;
+  }
+
+  public long getPoints() {
+    return points;
+  }
+
+  public double getMean() {
+    return corners == 0 ? 0 : (double) points / corners;
+  }
+
+  // population SD, as OnlineSummarizer
+  public double getSD() {
+    if (corners == 0)
+      return 0;
+    double mean = getMean();
+    return Math.sqrt(Math.max(0, squares / corners - mean * mean));
+  }
+
+  public long getSingletons() {
+    Long singles = counts.get(1);
+    return null == singles ? 0 : singles;
+  }
+
+  // smallest count with at least 'percent' of the corners at or below it
+  public int getPercentile(double percent) {
+    long rank = (long) Math.ceil(corners * percent / 100);
+    long seen = 0;
+    for(Map.Entry<Integer,Long> entry: counts.entrySet()) {
+      seen += entry.getValue();
+      if (seen >= rank)
+        return entry.getKey();
+    }
+    return counts.isEmpty() ? 0 : counts.lastKey();
+  }
+
+  // histogram[b] = corners with 2^b to 2^(b+1)-1 points
+  public long[] getHistogram() {
+    if (counts.isEmpty())
+      return new long[0];
+    int buckets = 32 - Integer.numberOfLeadingZeros(Math.max(1, counts.lastKey()));
+    long[] histogram = new long[buckets];
+    for(Map.Entry<Integer,Long> entry: counts.entrySet()) {
+      if (entry.getKey() > 0)
+        histogram[31 - Integer.numberOfLeadingZeros(entry.getKey())] += entry.getValue();
+    }
+    return histogram;
+  }
+
+  // heaviest first
+  public List<String> getTop() {
+    List<Heavy> heavy = new ArrayList<Heavy>(top);
+    Collections.sort(heavy, Collections.reverseOrder(LIGHTEST));
+    List<String> lines = new ArrayList<String>();
+    for(Heavy h: heavy)
+      lines.add(h.count + "\t" + h.corner);
+    return lines;
+  }
+
+  /*
+   * Summary as name, value pairs in print order.
+   */
+  public List<String[]> getSummary() {
+    List<String[]> summary = new ArrayList<String[]>();
+    summary.add(pair("corners", corners));
+    summary.add(pair("points", points));
+    summary.add(pair("singletons", getSingletons()));
+    if (corners == 0)
+      return summary;
+    summary.add(pair("mean", getMean()));
+    summary.add(pair("sd", getSD()));
+    if (sampled > 0) {
+      summary.add(pair("online.mean", summarizer.getMean()));
+      summary.add(pair("online.sd", summarizer.getSD()));
+    }
+    if (sampled >= 2) {
+      summary.add(pair("online.q1", summarizer.getQuartile(1)));
+      summary.add(pair("online.median", summarizer.getMedian()));
+      summary.add(pair("online.q3", summarizer.getQuartile(3)));
+    }
+    summary.add(pair("min", counts.firstKey()));
+    for(double percent: PERCENTILES)
+      summary.add(pair("p" + percent, getPercentile(percent)));
+    summary.add(pair("max", counts.lastKey()));
+    long[] histogram = getHistogram();
+    for(int b = 0; b < histogram.length; b++) {
+      int low = 1 << b;
+      int high = (1 << (b + 1)) - 1;
+      summary.add(pair("histogram." + (low == high ? "" + low : low + "-" + high), histogram[b]));
+    }
+    int rank = 1;
+    for(String line: getTop())
+      summary.add(new String[]{"top." + rank++, line});
+    return summary;
+  }
+
+  private static String[] pair(String name, Object value) {
+    return new String[]{name, value.toString()};
+  }
+
+  static final Comparator<Heavy> LIGHTEST = new Comparator<Heavy>() {
+    @Override
+    public int compare(Heavy a, Heavy b) {
+      if (a.count != b.count)
+        return a.count < b.count ? -1 : 1;
+      // ties: keep the smaller corner string, so results do not depend on order
+      return b.corner.compareTo(a.corner);
+    }
+  };
+
+  static final class Heavy {
+    final int count;
+    final String corner;
+
+    Heavy(int count, String corner) {
+      this.count = count;
+      this.corner = corner;
+    }
+  }
+
+}
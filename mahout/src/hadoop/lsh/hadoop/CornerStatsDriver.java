@@ -0,0 +1,58 @@
+package lsh.hadoop;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.util.GenericOptionsParser;
+
+/*
+ * Statistics of points per corner, from CornerDriver output.
+ * Writes <out>/summary.txt: counts, histogram, percentiles, top K corners,
+ * and OnlineSummarizer mean, SD and quartiles.
+ * Replaces the CountCorners stdin tool.
+ */
+
+public class CornerStatsDriver {
+  public static final String TOPK = "lsh.hadoop.CornerStats.topK";
+  public static final int DEFAULT_TOPK = 20;
+  // order in which corners are fed to the OnlineSummarizer
+  public static final String SEED = "lsh.hadoop.CornerStats.seed";
+  public static final String SUMMARY = "summary.txt";
+
+  public static void main(String[] args) throws Exception {
+    Configuration conf = new Configuration();
+    String[] otherArgs = new GenericOptionsParser(conf, args).getRemainingArgs();
+    if (otherArgs.length != 2) {
+      System.err.println("Usage: CornerStatsDriver [-D " + TOPK + "=K] [-D " + SEED + "=S] <in> <out>");
+      System.exit(2);
+    }
+    run(conf, new Path(otherArgs[0]), new Path(otherArgs[1]));
+  }
+
+  public static Path run(Configuration conf, Path in, Path out) throws Exception {
+    FileSystem fs = out.getFileSystem(conf);
+    fs.delete(out, true);
+    Job job = new Job(conf, "Corner statistics");
+    job.setJarByClass(CornerStatsDriver.class);
+    job.setMapperClass(CornerStatsMapper.class);
+    job.setReducerClass(CornerStatsReducer.class);
+    job.setNumReduceTasks(1);
+    job.setMapOutputKeyClass(IntWritable.class);
+    job.setMapOutputValueClass(Text.class);
+    job.setOutputKeyClass(Text.class);
+    job.setOutputValueClass(Text.class);
+    FileInputFormat.addInputPath(job, in);
+    FileOutputFormat.setOutputPath(job, out);
+    if (! job.waitForCompletion(true))
+      throw new Exception("Corner statistics job failed");
+    Path summary = new Path(out, SUMMARY);
+    fs.rename(new Path(out, "part-r-00000"), summary);
+    return summary;
+  }
+
+}
@@ -0,0 +1,43 @@
+package lsh.hadoop;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+
+/*
+ * Read corner output ("corner<TAB>point|point|...").
+ * At the end emit this mapper's count table under COUNTS, one record,
+ * and its K heaviest corners under TOP as "count<TAB>corner".
+ */
+
+public class CornerStatsMapper extends Mapper<Object, Text, IntWritable, Text> {
+  public static final IntWritable COUNTS = new IntWritable(0);
+  public static final IntWritable TOP = new IntWritable(1);
+  CornerStats stats;
+
+  @Override
+  protected void setup(Context context) throws IOException, InterruptedException {
+    stats = new CornerStats(context.getConfiguration().getInt(CornerStatsDriver.TOPK, CornerStatsDriver.DEFAULT_TOPK));
+  }
+
+  @Override
+  public void map(Object key, Text value, Context context)
+  throws IOException, InterruptedException {
+    String line = value.toString();
+    int tab = line.indexOf('\t');
+    if (tab < 0)
+      return;
+    int count = CornerStats.countPoints(line);
+    stats.addCount(count, 1);
+    stats.offerTop(count, line.substring(0, tab));
+  }
+
+  @Override
+  protected void cleanup(Context context) throws IOException, InterruptedException {
+    context.write(COUNTS, new Text(stats.getCounts()));
+    for(String top: stats.getTop())
+      context.write(TOP, new Text(top));
+  }
+}
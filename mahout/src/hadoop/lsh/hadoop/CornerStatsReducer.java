@@ -0,0 +1,48 @@
+package lsh.hadoop;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+
+/*
+ * Merge per-mapper count tables and top K into one CornerStats.
+ * Runs as the only reducer; writes the summary as "name<TAB>value" lines.
+ * The merged table is replayed into the OnlineSummarizer at the end.
+ */
+
+public class CornerStatsReducer extends Reducer<IntWritable, Text, Text, Text> {
+  CornerStats stats;
+  long seed;
+
+  @Override
+  protected void setup(Context context) throws IOException, InterruptedException {
+    stats = new CornerStats(context.getConfiguration().getInt(CornerStatsDriver.TOPK, CornerStatsDriver.DEFAULT_TOPK));
+    seed = context.getConfiguration().getLong(CornerStatsDriver.SEED, 0);
+  }
+
+  @Override
+  public void reduce(IntWritable key, Iterable<Text> values, Context context)
+  throws IOException, InterruptedException {
+    if (key.get() == CornerStatsMapper.COUNTS.get()) {
+      for(Text value: values)
+        stats.addCounts(value.toString());
+    } else {
+      for(Text value: values) {
+        String line = value.toString();
+        int tab = line.indexOf('\t');
+        stats.offerTop(Integer.parseInt(line.substring(0, tab)), line.substring(tab + 1));
+      }
+    }
+  }
+
+  @Override
+  protected void cleanup(Context context) throws IOException, InterruptedException {
+    stats.sampleCounts(new Random(seed));
+    for(String[] pair: stats.getSummary())
+      context.write(new Text(pair[0]), new Text(pair[1]));
+  }
+
+}
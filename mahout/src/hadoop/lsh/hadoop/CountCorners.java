@@ -18,7 +18,7 @@ public class CountCorners {
     while ((line = lnr.readLine()) != null) {
       String parts[] = line.split("[\t ]");
       String corners = parts[0];
-      String points[] = parts[1].split("|");
+      String points[] = parts[1].split("\\|");
       int num = points.length;
       pw.println(corners + " " + num);
     }
@@ -0,0 +1,292 @@
+package lsh.hadoop;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import lsh.core.Corner;
+import lsh.core.Hasher;
+import lsh.core.Point;
+
+import org.apache.mahout.math.stats.sampler.ReservoirSampler;
+
+/*
+ * Pick a grid size from a sample of the input, without running the LSH job.
+ *
+ * Reads a points file (id,v0,v1,...) once into a reservoir sample,
+ * then hashes the sample at a series of grid sizes, halving by sqrt(2)
+ * from the widest range of the data. For each size it measures
+ *   bucket sizes: points per corner, as emitted by CornerMapper
+ *   recall: fraction of each query's k exact nearest neighbors
+ *     (Euclidean, within the sample) that land in the query's corner
+ * The chosen size is the one whose median bucket is nearest the target
+ * (on a log scale), or the smallest size that reaches the target recall.
+ *
+ * Prints every candidate, and writes the choice as an LSHDriver site file.
+ *
+ * Usage: GridSizeTuner <points> <out.xml> [-hasher class] [-sample N]
+ *          [-median T | -recall R] [-k K] [-queries Q] [-steps S] [-seed S]
+ */
+
+public class GridSizeTuner {
+  public static final int DEFAULT_SAMPLE = 10000;
+  public static final int DEFAULT_K = 10;
+  public static final int DEFAULT_QUERIES = 100;
+  public static final int DEFAULT_STEPS = 20;
+  public static final double DEFAULT_MEDIAN = 10;
+
+  final String hasherClass;
+  final List<Point> sample;
+  final int dimensions;
+  // exact neighbors of the first 'queries' sample points
+  final int[][] neighbors;
+
+  public GridSizeTuner(String hasherClass, List<Point> sample, int queries, int k) {
+    if (sample.isEmpty())
+      throw new IllegalArgumentException("GridSizeTuner: empty sample");
+    this.hasherClass = hasherClass;
+    this.sample = sample;
+    this.dimensions = sample.get(0).values.length;
+    this.neighbors = new int[Math.min(queries, sample.size())][];
+    for(int q = 0; q < neighbors.length; q++)
+      neighbors[q] = nearest(q, Math.min(k, sample.size() - 1));
+  }
+
+  public static List<Point> sample(BufferedReader reader, int size, Random rnd) throws IOException {
+    ReservoirSampler<Point> sampler = new ReservoirSampler<Point>(size, rnd);
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (line.length() == 0)
+        continue;
+      sampler.addSample(Point.newPoint(line));
+    }
+    List<Point> points = new ArrayList<Point>(size);
+    Iterator<Point> it = sampler.getSamples(false);
+    while (it.hasNext())
+      points.add(it.next());
+    return points;
+  }
+
+  // indexes of the k nearest sample points to sample point q, not counting q
+  int[] nearest(int q, int k) {
+    double[] target = sample.get(q).values;
+    final double[] dist = new double[sample.size()];
+    Integer[] order = new Integer[sample.size()];
+    for(int i = 0; i < dist.length; i++) {
+      double[] values = sample.get(i).values;
+      double sum = 0;
+      for(int d = 0; d < dimensions; d++) {
+        double diff = values[d] - target[d];
+        sum += diff * diff;
+      }
+      dist[i] = sum;
+      order[i] = i;
+    }
+    dist[q] = Double.MAX_VALUE;
+    Arrays.sort(order, new java.util.Comparator<Integer>() {
+      public int compare(Integer a, Integer b) {
+        return Double.compare(dist[a], dist[b]);
+      }
+    });
+    int[] nearest = new int[k];
+    for(int i = 0; i < k; i++)
+      nearest[i] = order[i];
+    return nearest;
+  }
+
+  // grid sizes from the widest data range down, by sqrt(2)
+  public double[] getSizes(int steps) {
+    double range = 0;
+    for(int d = 0; d < dimensions; d++) {
+      double min = Double.MAX_VALUE;
+      double max = -Double.MAX_VALUE;
+      for(Point p: sample) {
+        min = Math.min(min, p.values[d]);
+        max = Math.max(max, p.values[d]);
+      }
+      range = Math.max(range, max - min);
+    }
+    if (range == 0)
+      range = 1;
+    double[] sizes = new double[steps];
+    for(int i = 0; i < steps; i++)
+      sizes[i] = range * Math.pow(2, -i / 2.0);
+    return sizes;
+  }
+
+  public Candidate evaluate(double size) throws IOException {
+    Hasher hasher = newHasher(size);
+    String[] keys = new String[sample.size()];
+    Map<String,Integer> counts = new HashMap<String,Integer>();
+    for(int i = 0; i < keys.length; i++) {
+      keys[i] = new Corner(hasher.hash(sample.get(i).values)).toString();
+      Integer count = counts.get(keys[i]);
+      counts.put(keys[i], null == count ? 1 : count + 1);
+    }
+    int[] buckets = new int[counts.size()];
+    int b = 0;
+    for(Integer count: counts.values())
+      buckets[b++] = count;
+    Arrays.sort(buckets);
+    int found = 0;
+    int total = 0;
+    for(int q = 0; q < neighbors.length; q++) {
+      for(int n: neighbors[q]) {
+        if (keys[n].equals(keys[q]))
+          found++;
+        total++;
+      }
+    }
+    Candidate c = new Candidate();
+    c.size = size;
+    c.corners = buckets.length;
+    c.median = buckets[buckets.length / 2];
+    c.mean = (double) sample.size() / buckets.length;
+    c.max = buckets[buckets.length - 1];
+    c.recall = total == 0 ? 0 : (double) found / total;
+    return c;
+  }
+
+  Hasher newHasher(double size) throws IOException {
+    double[] stretch = new double[dimensions];
+    Arrays.fill(stretch, size);
+    try {
+      Hasher hasher = (Hasher) Class.forName(hasherClass).newInstance();
+      hasher.setStretch(stretch);
+      return hasher;
+    } catch (Exception e) {
+      throw new IOException("Cannot create hasher " + hasherClass + ": " + e.toString());
+    }
+  }
+
+  // nearest median bucket size on a log scale
+  public static Candidate chooseMedian(List<Candidate> candidates, double target) {
+    Candidate best = null;
+    double bestError = Double.MAX_VALUE;
+    for(Candidate c: candidates) {
+      double error = Math.abs(Math.log(c.median / target));
+      if (error < bestError) {
+        best = c;
+        bestError = error;
+      }
+    }
+    return best;
+  }
+
+  // smallest grid that reaches the recall, or the best recall seen
+  public static Candidate chooseRecall(List<Candidate> candidates, double target) {
+    Candidate best = null;
+    Candidate highest = null;
+    for(Candidate c: candidates) {
+      if (c.recall >= target && (null == best || c.size < best.size))
+        best = c;
+      if (null == highest || c.recall > highest.recall)
+        highest = c;
+    }
+    return null == best ? highest : best;
+  }
+
+  public void writeConfig(PrintWriter out, Candidate chosen) {
+    out.println("<?xml version=\"1.0\"?>");
+    out.println("<?xml-stylesheet type=\"text/xsl\" href=\"configuration.xsl\"?>");
+    out.println();
+    out.println("\t<!-- Chosen by GridSizeTuner from " + sample.size() + " sampled points: " + chosen + " -->");
+    out.println();
+    out.println("<configuration>");
+    out.println();
+    property(out, LSHDriver.HASHER, hasherClass, "Hasher class.");
+    property(out, LSHDriver.GRIDSIZE, Double.toString(chosen.size), "Hasher grid size array.");
+    property(out, LSHDriver.DIMENSION, Integer.toString(dimensions), "# of dimensions.");
+    out.println("</configuration>");
+  }
+
+  private static void property(PrintWriter out, String name, String value, String description) {
+    out.println("\t<property>");
+    out.println("\t\t<name>" + name + "</name>");
+    out.println("\t\t<value>" + value + "</value>");
+    out.println("\t\t<description>" + description + "</description>");
+    out.println("\t</property>");
+    out.println();
+  }
+
+  public static class Candidate {
+    public double size;
+    public int corners;
+    public int median;
+    public double mean;
+    public int max;
+    public double recall;
+
+    public String toString() {
+      return String.format("gridsize %.6g: %d corners, median %d, mean %.2f, max %d, recall %.3f",
+          size, corners, median, mean, max, recall);
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("Usage: GridSizeTuner <points> <out.xml> [-hasher class] [-sample N] " +
+          "[-median T | -recall R] [-k K] [-queries Q] [-steps S] [-seed S]");
+      System.exit(2);
+    }
+    String hasherClass = "lsh.core.OrthonormalHasher";
+    int size = DEFAULT_SAMPLE;
+    int k = DEFAULT_K;
+    int queries = DEFAULT_QUERIES;
+    int steps = DEFAULT_STEPS;
+    long seed = 0;
+    double median = DEFAULT_MEDIAN;
+    double recall = -1;
+    for(int i = 2; i < args.length - 1; i += 2) {
+      String arg = args[i];
+      String value = args[i + 1];
+      if (arg.equals("-hasher"))
+        hasherClass = value;
+      else if (arg.equals("-sample"))
+        size = Integer.parseInt(value);
+      else if (arg.equals("-median"))
+        median = Double.parseDouble(value);
+      else if (arg.equals("-recall"))
+        recall = Double.parseDouble(value);
+      else if (arg.equals("-k"))
+        k = Integer.parseInt(value);
+      else if (arg.equals("-queries"))
+        queries = Integer.parseInt(value);
+      else if (arg.equals("-steps"))
+        steps = Integer.parseInt(value);
+      else if (arg.equals("-seed"))
+        seed = Long.parseLong(value);
+      else
+        throw new IllegalArgumentException("GridSizeTuner: unknown option " + arg);
+    }
+
+    BufferedReader reader = new BufferedReader(new FileReader(args[0]));
+    List<Point> points = sample(reader, size, new Random(seed));
+    reader.close();
+    GridSizeTuner tuner = new GridSizeTuner(hasherClass, points, queries, k);
+    PrintStream ps = System.out;
+    ps.println("Sampled " + points.size() + " points, " + tuner.dimensions + " dimensions");
+    List<Candidate> candidates = new ArrayList<Candidate>();
+    for(double gridsize: tuner.getSizes(steps)) {
+      Candidate c = tuner.evaluate(gridsize);
+      candidates.add(c);
+      ps.println(c);
+    }
+    Candidate chosen = recall >= 0 ? chooseRecall(candidates, recall) : chooseMedian(candidates, median);
+    ps.println("Chosen " + chosen);
+    PrintWriter out = new PrintWriter(new FileWriter(args[1]));
+    tuner.writeConfig(out, chosen);
+    out.close();
+  }
+
+}
@@ -14,6 +14,7 @@ import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapreduce.InputFormat;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.OutputFormat;
 import org.apache.hadoop.mapreduce.Reducer;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
@@ -34,6 +35,9 @@ public class LSHDriver {
   public static final String INPUT_FORMAT = "lsh.hadoop.LSHDriver.inputFormat";
   public static final String OUTPUT_KEY = "lsh.hadoop.LSHDriver.outputKeyClass";
   public static final String OUTPUT_VALUE = "lsh.hadoop.LSHDriver.outputValueClass";
+  public static final String MAP_OUTPUT_KEY = "lsh.hadoop.LSHDriver.mapOutputKeyClass";
+  public static final String MAP_OUTPUT_VALUE = "lsh.hadoop.LSHDriver.mapOutputValueClass";
+  public static final String OUTPUT_FORMAT = "lsh.hadoop.LSHDriver.outputFormat";
   public static final String MAPPER = "lsh.hadoop.LSHDriver.mapper";
   public static final String COMBINER = "lsh.hadoop.LSHDriver.combiner";
   public static final String REDUCE = "lsh.hadoop.LSHDriver.reducer";
@@ -108,6 +112,13 @@ public class LSHDriver {
       job.setOutputValueClass((Class<? extends InputFormat>) Class.forName(conf.get(OUTPUT_VALUE)));
     else
       job.setOutputValueClass(Text.class);
+    // map output defaults to the job output classes
+    if (null != conf.get(MAP_OUTPUT_KEY))
+      job.setMapOutputKeyClass(Class.forName(conf.get(MAP_OUTPUT_KEY)));
+    if (null != conf.get(MAP_OUTPUT_VALUE))
+      job.setMapOutputValueClass(Class.forName(conf.get(MAP_OUTPUT_VALUE)));
+    if (null != conf.get(OUTPUT_FORMAT))
+      job.setOutputFormatClass((Class<? extends OutputFormat>) Class.forName(conf.get(OUTPUT_FORMAT)));
 
     //		job.setOutputKeyClass(Text.class);
     //		job.setOutputValueClass(Text.class);
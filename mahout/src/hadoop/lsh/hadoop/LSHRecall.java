@@ -0,0 +1,408 @@
+package lsh.hadoop;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import lsh.core.Corner;
+import lsh.core.CornerGen;
+import lsh.core.Hasher;
+import lsh.core.Point;
+import lsh.mahout.quantizer.DenseLSHQuantizer;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.mahout.math.DenseVector;
+import org.apache.mahout.math.simplex.Simplex;
+import org.apache.mahout.math.simplex.SimplexIterator;
+
+/*
+ * Measure how many true neighbors the LSH grid finds.
+ *
+ * Loads a points file (id,v0,v1,...) and an LSHDriver site file
+ * (hasher, gridsize, dimension). For a random sample of query points
+ * it finds the k exact nearest neighbors (Euclidean) by brute force,
+ * on all cores. Then for each cell scheme every point is filed under
+ * its D+1 cells, and a query's candidates are the other points in any
+ * of its own D+1 cells, as the LSH jobs pair them up. Reports
+ *   recall@k: fraction of the exact neighbors among the candidates
+ *   candidates: mean and max candidate set size, and the mean as a
+ *     fraction of all points (the work a query does)
+ *
+ * Schemes:
+ *   CornerGen: lsh.core, as in CornerMapper
+ *   SimplexSpace: org.apache.mahout.math.simplex hasher, SimplexIterator cells
+ *   DenseLSHQuantizer: lsh.mahout.core hasher, getNearestHashes() cells
+ * The site file names an lsh.core hasher; the other two use the class of
+ * the same name in their own package, if there is one.
+ *
+ * Usage: LSHRecall <points> <site.xml> [-k K] [-queries Q] [-seed S] [-threads T]
+ */
+
+public class LSHRecall {
+  public static final int DEFAULT_K = 10;
+  public static final int DEFAULT_QUERIES = 1000;
+
+  final List<Point> points;
+  final int dimensions;
+  // indexes of the query points
+  final int[] queries;
+  // exact neighbors of each query, nearest first
+  final int[][] truth;
+  final int k;
+
+  public LSHRecall(List<Point> points, int queries, int k, Random rnd, int threads) throws IOException {
+    if (points.size() < 2)
+      throw new IllegalArgumentException("LSHRecall: need at least 2 points");
+    this.points = points;
+    this.dimensions = points.get(0).values.length;
+    this.k = Math.min(k, points.size() - 1);
+    this.queries = choose(points.size(), Math.min(queries, points.size()), rnd);
+    this.truth = exact(threads);
+  }
+
+  // 'count' distinct indexes below n, in order
+  static int[] choose(int n, int count, Random rnd) {
+    int[] order = new int[n];
+    for(int i = 0; i < n; i++)
+      order[i] = i;
+    for(int i = 0; i < count; i++) {
+      int pick = i + rnd.nextInt(n - i);
+      int tmp = order[i];
+      order[i] = order[pick];
+      order[pick] = tmp;
+    }
+    int[] chosen = Arrays.copyOf(order, count);
+    Arrays.sort(chosen);
+    return chosen;
+  }
+
+  // brute force k nearest for every query, queries split across threads
+  int[][] exact(int threads) throws IOException {
+    final int[][] nearest = new int[queries.length][];
+    threads = Math.max(1, Math.min(threads, queries.length));
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<Future<?>>();
+      for(int t = 0; t < threads; t++) {
+        final int from = (int) ((long) t * queries.length / threads);
+        final int to = (int) ((long) (t + 1) * queries.length / threads);
+        futures.add(pool.submit(new Runnable() {
+          public void run() {
+            for(int q = from; q < to; q++)
+              nearest[q] = nearest(queries[q]);
+          }
+        }));
+      }
+      for(Future<?> f: futures)
+        f.get();
+    } catch (InterruptedException e) {
+      throw new IOException("LSHRecall: interrupted");
+    } catch (ExecutionException e) {
+      throw new IOException("LSHRecall: exact pass failed: " + e.getCause());
+    } finally {
+      pool.shutdown();
+    }
+    return nearest;
+  }
+
+  // k nearest to point q, not counting q, nearest first
+  int[] nearest(int q) {
+    double[] target = points.get(q).values;
+    // max-heap on distance, so the farthest of the k is on top
+    PriorityQueue<double[]> heap = new PriorityQueue<double[]>(k + 1, new java.util.Comparator<double[]>() {
+      public int compare(double[] a, double[] b) {
+        return Double.compare(b[0], a[0]);
+      }
+    });
+    for(int i = 0; i < points.size(); i++) {
+      if (i == q)
+        continue;
+      double[] values = points.get(i).values;
+      double sum = 0;
+      for(int d = 0; d < dimensions; d++) {
+        double diff = values[d] - target[d];
+        sum += diff * diff;
+      }
+      if (heap.size() < k) {
+        heap.add(new double[]{sum, i});
+      } else if (sum < heap.peek()[0]) {
+        heap.poll();
+        heap.add(new double[]{sum, i});
+      }
+    }
+    int[] found = new int[heap.size()];
+    for(int i = found.length - 1; i >= 0; i--)
+      found[i] = (int) heap.poll()[1];
+    return found;
+  }
+
+  public Result evaluate(Scheme scheme) {
+    Map<Cell,List<Integer>> cells = new HashMap<Cell,List<Integer>>();
+    Cell[][] keys = new Cell[points.size()][];
+    for(int i = 0; i < points.size(); i++) {
+      List<int[]> hashes = scheme.getCells(points.get(i).values);
+      keys[i] = new Cell[hashes.size()];
+      for(int c = 0; c < hashes.size(); c++) {
+        Cell cell = new Cell(hashes.get(c));
+        keys[i][c] = cell;
+        List<Integer> list = cells.get(cell);
+        if (null == list) {
+          list = new ArrayList<Integer>();
+          cells.put(cell, list);
+        }
+        // a point can land on the same cell twice
+        if (list.isEmpty() || list.get(list.size() - 1) != i)
+          list.add(i);
+      }
+    }
+    // stamp[i] == q+1: point i is already a candidate of query q
+    int[] stamp = new int[points.size()];
+    long found = 0;
+    long total = 0;
+    long candidates = 0;
+    int max = 0;
+    for(int q = 0; q < queries.length; q++) {
+      int query = queries[q];
+      stamp[query] = q + 1;
+      int count = 0;
+      for(Cell cell: keys[query]) {
+        for(int i: cells.get(cell)) {
+          if (stamp[i] != q + 1) {
+            stamp[i] = q + 1;
+            count++;
+          }
+        }
+      }
+      for(int n: truth[q]) {
+        if (stamp[n] == q + 1)
+          found++;
+        total++;
+      }
+      candidates += count;
+      max = Math.max(max, count);
+    }
+    Result r = new Result();
+    r.scheme = scheme.getName();
+    r.k = k;
+    r.cells = cells.size();
+    r.recall = total == 0 ? 0 : (double) found / total;
+    r.candidates = (double) candidates / queries.length;
+    r.maxCandidates = max;
+    r.scanned = r.candidates / (points.size() - 1);
+    return r;
+  }
+
+  /*
+   * The cells one point is filed under.
+   */
+  public interface Scheme {
+    String getName();
+    List<int[]> getCells(double[] values);
+  }
+
+  public static class CornerGenScheme implements Scheme {
+    final CornerGen cg;
+
+    public CornerGenScheme(Hasher hasher, double[] stretch) {
+      hasher.setStretch(stretch);
+      cg = new CornerGen(hasher, stretch);
+    }
+
+    public String getName() {
+      return "CornerGen";
+    }
+
+    public List<int[]> getCells(double[] values) {
+      List<int[]> cells = new ArrayList<int[]>();
+      for(Corner corner: cg.getHashSet(new Point(null, values, null)))
+        cells.add(corner.hashes);
+      return cells;
+    }
+  }
+
+  public static class SimplexScheme implements Scheme {
+    final org.apache.mahout.math.simplex.Hasher hasher;
+
+    public SimplexScheme(org.apache.mahout.math.simplex.Hasher hasher) {
+      this.hasher = hasher;
+    }
+
+    public String getName() {
+      return "SimplexSpace";
+    }
+
+    public List<int[]> getCells(double[] values) {
+      List<int[]> cells = new ArrayList<int[]>();
+      SimplexIterator<String> it = new SimplexIterator<String>(hasher, new DenseVector(values));
+      while (it.hasNext()) {
+        Simplex<String> simplex = it.next();
+        cells.add(simplex.base);
+      }
+      return cells;
+    }
+  }
+
+  public static class QuantizerScheme implements Scheme {
+    final DenseLSHQuantizer quantizer;
+
+    public QuantizerScheme(lsh.mahout.core.Hasher hasher) {
+      quantizer = new DenseLSHQuantizer(hasher);
+    }
+
+    public String getName() {
+      return "DenseLSHQuantizer";
+    }
+
+    public List<int[]> getCells(double[] values) {
+      return quantizer.getNearestHashes(new DenseVector(values));
+    }
+  }
+
+  /*
+   * All schemes for the hasher named in the site file.
+   * A scheme is left out when its package has no hasher of that name.
+   */
+  public static List<Scheme> getSchemes(String hasherClass, double[] stretch) throws IOException {
+    List<Scheme> schemes = new ArrayList<Scheme>();
+    try {
+      Hasher hasher = (Hasher) Class.forName(hasherClass).newInstance();
+      schemes.add(new CornerGenScheme(hasher, stretch));
+    } catch (Exception e) {
+      throw new IOException("Cannot create hasher " + hasherClass + ": " + e.toString());
+    }
+    String name = hasherClass.substring(hasherClass.lastIndexOf('.') + 1);
+    // simplex hashers have one grid size for all dimensions
+    double size = stretch[0];
+    if (name.equals("OrthonormalHasher")) {
+      schemes.add(new SimplexScheme(new org.apache.mahout.math.simplex.OrthonormalHasher(stretch.length, size)));
+      schemes.add(new QuantizerScheme(new lsh.mahout.core.OrthonormalHasher(stretch.clone())));
+    } else if (name.equals("VertexTransitiveHasher")) {
+      schemes.add(new SimplexScheme(new org.apache.mahout.math.simplex.VertexTransitiveHasher(stretch.length, size)));
+      schemes.add(new QuantizerScheme(new lsh.mahout.core.VertexTransitiveHasher(stretch.clone())));
+    }
+    return schemes;
+  }
+
+  // per-dimension grid sizes, from one gridsize and a dimension or a list of gridsizes
+  public static double[] getStretch(Configuration conf) throws IOException {
+    String gridsize = conf.get(LSHDriver.GRIDSIZE);
+    String dimSize = conf.get(LSHDriver.DIMENSION);
+    if (null != dimSize) {
+      double[] stretch = new double[Integer.parseInt(dimSize)];
+      Arrays.fill(stretch, null == gridsize ? 1.0 : Double.parseDouble(gridsize));
+      return stretch;
+    } else if (null != gridsize) {
+      String parts[] = gridsize.split("[ ,]");
+      double[] stretch = new double[parts.length];
+      for(int i = 0; i < parts.length; i++)
+        stretch[i] = Double.parseDouble(parts[i]);
+      return stretch;
+    }
+    throw new IOException("LSHRecall: Need dimension or gridsize parameters.");
+  }
+
+  public static List<Point> load(BufferedReader reader) throws IOException {
+    List<Point> points = new ArrayList<Point>();
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (line.length() == 0)
+        continue;
+      points.add(Point.newPoint(line));
+    }
+    return points;
+  }
+
+  static class Cell {
+    final int[] hashes;
+    final int hash;
+
+    Cell(int[] hashes) {
+      this.hashes = hashes;
+      this.hash = Arrays.hashCode(hashes);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof Cell && Arrays.equals(hashes, ((Cell) obj).hashes);
+    }
+  }
+
+  public static class Result {
+    public String scheme;
+    public int k;
+    public int cells;
+    public double recall;
+    public double candidates;
+    public int maxCandidates;
+    public double scanned;
+
+    public String toString() {
+      return String.format("%s: recall@%d %.3f, %d cells, candidates mean %.1f, max %d, scanned %.4f",
+          scheme, k, recall, cells, candidates, maxCandidates, scanned);
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("Usage: LSHRecall <points> <site.xml> [-k K] [-queries Q] [-seed S] [-threads T]");
+      System.exit(2);
+    }
+    int k = DEFAULT_K;
+    int queries = DEFAULT_QUERIES;
+    long seed = 0;
+    int threads = Runtime.getRuntime().availableProcessors();
+    for(int i = 2; i < args.length - 1; i += 2) {
+      String arg = args[i];
+      String value = args[i + 1];
+      if (arg.equals("-k"))
+        k = Integer.parseInt(value);
+      else if (arg.equals("-queries"))
+        queries = Integer.parseInt(value);
+      else if (arg.equals("-seed"))
+        seed = Long.parseLong(value);
+      else if (arg.equals("-threads"))
+        threads = Integer.parseInt(value);
+      else
+        throw new IllegalArgumentException("LSHRecall: unknown option " + arg);
+    }
+
+    Configuration conf = new Configuration(false);
+    conf.addResource(new Path(args[1]));
+    String hasherClass = conf.get(LSHDriver.HASHER);
+    if (null == hasherClass)
+      throw new IOException("LSHRecall: no hasher in " + args[1]);
+    double[] stretch = getStretch(conf);
+
+    BufferedReader reader = new BufferedReader(new FileReader(args[0]));
+    List<Point> points = load(reader);
+    reader.close();
+    if (points.isEmpty() || points.get(0).values.length != stretch.length)
+      throw new IOException("LSHRecall: points do not have " + stretch.length + " dimensions");
+    PrintStream ps = System.out;
+    long start = System.currentTimeMillis();
+    LSHRecall recall = new LSHRecall(points, queries, k, new Random(seed), threads);
+    ps.println("Exact " + recall.k + " nearest for " + recall.queries.length + " of " + points.size() +
+        " points on " + threads + " threads: " + (System.currentTimeMillis() - start) + " ms");
+    for(Scheme scheme: getSchemes(hasherClass, stretch))
+      ps.println(recall.evaluate(scheme));
+  }
+
+}
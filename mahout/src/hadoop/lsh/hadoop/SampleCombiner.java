@@ -0,0 +1,25 @@
+package lsh.hadoop;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.mahout.math.stats.sampler.WeightedReservoirSampler;
+
+/*
+ * Merge the reservoirs of this node's mappers, keeping the keys.
+ */
+
+public class SampleCombiner extends Reducer<IntWritable, Text, IntWritable, Text> {
+
+  @Override
+  public void reduce(IntWritable key, Iterable<Text> values, Context context)
+  throws IOException, InterruptedException {
+    WeightedReservoirSampler<String> reservoir = new WeightedReservoirSampler<String>(
+        context.getConfiguration().getInt(SampleDriver.SIZE, SampleDriver.DEFAULT_SIZE));
+    SampleMapper.merge(reservoir, values);
+    SampleMapper.write(reservoir, context);
+  }
+
+}
@@ -0,0 +1,59 @@
+package lsh.hadoop;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.util.GenericOptionsParser;
+
+/*
+ * Uniform sample of N points from a points file or CornerDriver output.
+ * Each mapper keeps a random-key reservoir (WeightedReservoirSampler);
+ * the combiner and the one reducer merge them. Input is read once.
+ * Writes <out>/sample.txt as a points file, for GridSizeTuner, GenSVG etc.
+ */
+
+public class SampleDriver {
+  public static final String SIZE = "lsh.hadoop.Sample.size";
+  public static final String SEED = "lsh.hadoop.Sample.seed";
+  public static final int DEFAULT_SIZE = 10000;
+  public static final String SAMPLE = "sample.txt";
+
+  public static void main(String[] args) throws Exception {
+    Configuration conf = new Configuration();
+    String[] otherArgs = new GenericOptionsParser(conf, args).getRemainingArgs();
+    if (otherArgs.length != 2) {
+      System.err.println("Usage: SampleDriver [-D " + SIZE + "=N] [-D " + SEED + "=S] <in> <out>");
+      System.exit(2);
+    }
+    run(conf, new Path(otherArgs[0]), new Path(otherArgs[1]));
+  }
+
+  public static Path run(Configuration conf, Path in, Path out) throws Exception {
+    FileSystem fs = out.getFileSystem(conf);
+    fs.delete(out, true);
+    Job job = new Job(conf, "Sample points");
+    job.setJarByClass(SampleDriver.class);
+    job.setMapperClass(SampleMapper.class);
+    job.setCombinerClass(SampleCombiner.class);
+    job.setReducerClass(SampleReducer.class);
+    job.setNumReduceTasks(1);
+    job.setMapOutputKeyClass(IntWritable.class);
+    job.setMapOutputValueClass(Text.class);
+    job.setOutputKeyClass(Text.class);
+    job.setOutputValueClass(NullWritable.class);
+    FileInputFormat.addInputPath(job, in);
+    FileOutputFormat.setOutputPath(job, out);
+    if (! job.waitForCompletion(true))
+      throw new Exception("Sample job failed");
+    Path sample = new Path(out, SAMPLE);
+    fs.rename(new Path(out, "part-r-00000"), sample);
+    return sample;
+  }
+
+}
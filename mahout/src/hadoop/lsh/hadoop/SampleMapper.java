@@ -0,0 +1,77 @@
+package lsh.hadoop;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Random;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+import org.apache.mahout.math.stats.sampler.WeightedReservoirSampler;
+
+/*
+ * Fill a reservoir from this split, emit it at the end as "key<TAB>point".
+ * Reads points (id,v0,v1,...) or corner lines ("corner<TAB>point|point|...");
+ * every point of a corner line is sampled on its own.
+ */
+
+public class SampleMapper extends Mapper<Object, Text, IntWritable, Text> {
+  public static final IntWritable SAMPLES = new IntWritable(0);
+  WeightedReservoirSampler<String> reservoir;
+
+  @Override
+  protected void setup(Context context) throws IOException, InterruptedException {
+    Configuration conf = context.getConfiguration();
+    int size = conf.getInt(SampleDriver.SIZE, SampleDriver.DEFAULT_SIZE);
+    // each split needs its own random keys
+    long seed = conf.getLong(SampleDriver.SEED, System.nanoTime());
+    seed += 0x9E3779B97F4A7C15L * (context.getTaskAttemptID().getTaskID().getId() + 1);
+    reservoir = new WeightedReservoirSampler<String>(size, new Random(seed));
+  }
+
+  @Override
+  public void map(Object key, Text value, Context context)
+  throws IOException, InterruptedException {
+    String line = value.toString();
+    if (line.length() == 0)
+      return;
+    int tab = line.indexOf('\t');
+    if (tab < 0) {
+      reservoir.addSample(line);
+      return;
+    }
+    int start = tab + 1;
+    while (start < line.length()) {
+      int bar = line.indexOf('|', start);
+      if (bar < 0)
+        bar = line.length();
+      reservoir.addSample(line.substring(start, bar));
+      start = bar + 1;
+    }
+  }
+
+  @Override
+  protected void cleanup(Context context) throws IOException, InterruptedException {
+    write(reservoir, context);
+  }
+
+  static void write(WeightedReservoirSampler<String> reservoir, TaskInputOutputContext<?, ?, IntWritable, Text> context)
+  throws IOException, InterruptedException {
+    Iterator<WeightedReservoirSampler.Keyed<String>> it = reservoir.getKeyedSamples(true);
+    while (it.hasNext()) {
+      WeightedReservoirSampler.Keyed<String> keyed = it.next();
+      context.write(SAMPLES, new Text(keyed.key + "\t" + keyed.sample));
+    }
+  }
+
+  // merge "key<TAB>point" values into the reservoir
+  static void merge(WeightedReservoirSampler<String> reservoir, Iterable<Text> values) {
+    for(Text value: values) {
+      String line = value.toString();
+      int tab = line.indexOf('\t');
+      reservoir.offer(line.substring(tab + 1), Double.parseDouble(line.substring(0, tab)));
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package lsh.hadoop;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.mahout.math.stats.sampler.WeightedReservoirSampler;
+
+/*
+ * Merge all reservoirs into the final sample; writes the points alone.
+ * Runs as the only reducer.
+ */
+
+public class SampleReducer extends Reducer<IntWritable, Text, Text, NullWritable> {
+
+  @Override
+  public void reduce(IntWritable key, Iterable<Text> values, Context context)
+  throws IOException, InterruptedException {
+    WeightedReservoirSampler<String> reservoir = new WeightedReservoirSampler<String>(
+        context.getConfiguration().getInt(SampleDriver.SIZE, SampleDriver.DEFAULT_SIZE));
+    SampleMapper.merge(reservoir, values);
+    Iterator<String> it = reservoir.getSamples(true);
+    while (it.hasNext())
+      context.write(new Text(it.next()), NullWritable.get());
+  }
+
+}
@@ -0,0 +1,65 @@
+package lsh.hadoop.lod;
+
+/*
+ * Grid cell at a level of detail.
+ * Cell at LOD L holds grid corners whose coordinates, shifted right by L,
+ * equal the cell coordinates. LOD 0 is one grid unit.
+ *
+ * Text format: [!]lod:c0,c1,...
+ * '!' marks a finished cell, which later iterations pass through.
+ */
+
+public class LODCell {
+  static final char DONE = '!';
+  public final int lod;
+  public final int[] grid;
+  public final boolean done;
+
+  public LODCell(int lod, int[] grid, boolean done) {
+    this.lod = lod;
+    this.grid = grid;
+    this.done = done;
+  }
+
+  // cell at this LOD containing the grid corner
+  public static LODCell fromHash(int[] hash, int lod) {
+    int[] grid = new int[hash.length];
+    for(int i = 0; i < hash.length; i++) {
+      // arithmetic shift rounds down for negative corners too
+      grid[i] = hash[i] >> lod;
+    }
+    return new LODCell(lod, grid, false);
+  }
+
+  public LODCell finished() {
+    return new LODCell(lod, grid, true);
+  }
+
+  public static LODCell newCell(String key) {
+    boolean done = key.charAt(0) == DONE;
+    int colon = key.indexOf(':');
+    int lod = Integer.parseInt(key.substring(done ? 1 : 0, colon));
+    String[] parts = key.substring(colon + 1).split(",");
+    int[] grid = new int[parts.length];
+    for(int i = 0; i < parts.length; i++) {
+      grid[i] = Integer.parseInt(parts[i]);
+    }
+    return new LODCell(lod, grid, done);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    if (done)
+      sb.append(DONE);
+    sb.append(lod);
+    sb.append(':');
+    for(int i = 0; i < grid.length; i++) {
+      if (i > 0)
+        sb.append(',');
+      sb.append(grid[i]);
+    }
+    return sb.toString();
+  }
+
+}
@@ -0,0 +1,24 @@
+package lsh.hadoop.lod;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+
+/*
+ * Later passes: identity mapper over the previous pass's text output.
+ * Input lines are "cell<TAB>point".
+ */
+
+public class LODChainMapper extends Mapper<Object, Text, Text, Text> {
+
+  @Override
+  public void map(Object key, Text value, Context context)
+  throws IOException, InterruptedException {
+    String line = value.toString();
+    int tab = line.indexOf('\t');
+    if (tab < 0)
+      return;
+    context.write(new Text(line.substring(0, tab)), new Text(line.substring(tab + 1)));
+  }
+}
@@ -0,0 +1,115 @@
+package lsh.hadoop.lod;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import lsh.core.Hasher;
+import lsh.hadoop.LSHDriver;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.util.GenericOptionsParser;
+
+/*
+ * Top-down LOD subdivision, as in README.txt in this directory.
+ *
+ * Pass 0 maps points to their cell at the coarsest LOD (MAXLOD).
+ * Each pass splits the cells that fail the rule into cells one LOD smaller.
+ * Passes repeat until no cell was split. Pass N writes to <out>/pass-N;
+ * the last pass holds every point under its finished cell.
+ *
+ * Hasher and grid size come from the usual LSHDriver keys.
+ * The rule is the LODRule class in RULE, NeighborRule by default.
+ */
+
+public class LODDriver {
+  public static final String MAXLOD = "lsh.hadoop.lod.maxLOD";
+  public static final String RULE = "lsh.hadoop.lod.rule";
+  public static final int DEFAULT_MAXLOD = 8;
+
+  public static void main(String[] args) throws Exception {
+    Configuration conf = new Configuration();
+    String[] otherArgs = new GenericOptionsParser(conf, args).getRemainingArgs();
+    if (otherArgs.length != 2) {
+      System.err.println("Usage: LODDriver [-D lsh.hadoop.lod.maxLOD=N ...] <in> <out>");
+      System.exit(2);
+    }
+    Path result = run(conf, new Path(otherArgs[0]), new Path(otherArgs[1]));
+    System.out.println("Finished cells in " + result);
+  }
+
+  /*
+   * Run passes until no cell is split. Returns the last pass's output.
+   */
+  public static Path run(Configuration conf, Path in, Path out) throws Exception {
+    FileSystem fs = out.getFileSystem(conf);
+    fs.delete(out, true);
+    int maxLOD = conf.getInt(MAXLOD, DEFAULT_MAXLOD);
+    Path input = in;
+    Path output = null;
+    // each pass lowers the LOD of split cells, so maxLOD + 1 passes always finish
+    for(int pass = 0; pass <= maxLOD; pass++) {
+      output = new Path(out, "pass-" + pass);
+      Job job = new Job(conf, "LOD subdivision pass " + pass);
+      job.setJarByClass(LODDriver.class);
+      Class<? extends Mapper> mapper = (pass == 0) ? LODMapper.class : LODChainMapper.class;
+      job.setMapperClass(mapper);
+      job.setReducerClass(LODReducer.class);
+      job.setOutputKeyClass(Text.class);
+      job.setOutputValueClass(Text.class);
+      FileInputFormat.addInputPath(job, input);
+      FileOutputFormat.setOutputPath(job, output);
+      if (! job.waitForCompletion(true))
+        throw new Exception("LOD pass failed: " + pass);
+      long split = job.getCounters().findCounter(LODReducer.Counters.CELLS_SPLIT).getValue();
+      long finished = job.getCounters().findCounter(LODReducer.Counters.CELLS_FINISHED).getValue();
+      System.out.println("LOD pass " + pass + ": split=" + split + ", finished=" + finished);
+      if (split == 0)
+        break;
+      input = output;
+    }
+    return output;
+  }
+
+  static Hasher getHasher(Configuration conf) throws IOException {
+    String hasherClass = conf.get(LSHDriver.HASHER, "lsh.core.OrthonormalHasher");
+    String gridsize = conf.get(LSHDriver.GRIDSIZE, "1.0");
+    String[] parts = gridsize.split("[ ,]");
+    double[] stretch;
+    String dimSize = conf.get(LSHDriver.DIMENSION);
+    if (parts.length == 1 && null != dimSize) {
+      stretch = new double[Integer.parseInt(dimSize)];
+      Arrays.fill(stretch, Double.parseDouble(parts[0]));
+    } else {
+      stretch = new double[parts.length];
+      for(int i = 0; i < parts.length; i++) {
+        stretch[i] = Double.parseDouble(parts[i]);
+      }
+    }
+    try {
+      Hasher hasher = (Hasher) Class.forName(hasherClass).newInstance();
+      hasher.setStretch(stretch);
+      return hasher;
+    } catch (Exception e) {
+      throw new IOException("Cannot create hasher " + hasherClass + ": " + e.toString());
+    }
+  }
+
+  static LODRule getRule(Configuration conf) throws IOException {
+    String ruleClass = conf.get(RULE, NeighborRule.class.getName());
+    try {
+      LODRule rule = (LODRule) Class.forName(ruleClass).newInstance();
+      rule.configure(conf);
+      return rule;
+    } catch (Exception e) {
+      throw new IOException("Cannot create rule " + ruleClass + ": " + e.toString());
+    }
+  }
+
+}
@@ -0,0 +1,38 @@
+package lsh.hadoop.lod;
+
+import java.io.IOException;
+
+import lsh.core.Hasher;
+import lsh.core.Point;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+
+/*
+ * First pass: map raw points to their cell at the coarsest LOD.
+ *
+ * Input: id,d0,d1,...dn[*payload]
+ * Output: lod:c0,c1,...  point
+ */
+
+public class LODMapper extends Mapper<Object, Text, Text, Text> {
+  Hasher hasher;
+  int maxLOD;
+
+  @Override
+  protected void setup(Context context) throws IOException, InterruptedException {
+    hasher = LODDriver.getHasher(context.getConfiguration());
+    maxLOD = context.getConfiguration().getInt(LODDriver.MAXLOD, LODDriver.DEFAULT_MAXLOD);
+  }
+
+  @Override
+  public void map(Object key, Text value, Context context)
+  throws IOException, InterruptedException {
+    String line = value.toString();
+    if (line.length() == 0)
+      return;
+    Point point = Point.newPoint(line);
+    LODCell cell = LODCell.fromHash(hasher.hash(point.values), maxLOD);
+    context.write(new Text(cell.toString()), new Text(point.toString()));
+  }
+}
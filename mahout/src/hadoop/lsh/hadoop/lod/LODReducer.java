@@ -0,0 +1,91 @@
+package lsh.hadoop.lod;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import lsh.core.Hasher;
+import lsh.core.Point;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+
+/*
+ * One step of top-down subdivision.
+ *
+ * For a cell at LOD L: if its points pass the rule, or L is 0,
+ * write them out as a finished cell. Otherwise write each point
+ * under its cell at LOD L-1; the next pass checks those cells.
+ * Finished cells from earlier passes are passed through.
+ *
+ * Only cells up to the rule's maxPoints() are held in memory. The
+ * coarse cells hold most of the input; past the limit they are split
+ * as the points stream through.
+ */
+
+public class LODReducer extends Reducer<Text, Text, Text, Text> {
+  public enum Counters {CELLS_SPLIT, CELLS_FINISHED};
+
+  Hasher hasher;
+  LODRule rule;
+
+  @Override
+  protected void setup(Context context) throws IOException, InterruptedException {
+    Configuration conf = context.getConfiguration();
+    hasher = LODDriver.getHasher(conf);
+    rule = LODDriver.getRule(conf);
+  }
+
+  @Override
+  public void reduce(Text key, Iterable<Text> values, Context context)
+  throws IOException, InterruptedException {
+    LODCell cell = LODCell.newCell(key.toString());
+    if (cell.done) {
+      for(Text value: values)
+        context.write(key, value);
+      return;
+    }
+    if (cell.lod == 0) {
+      Text finished = new Text(cell.finished().toString());
+      for(Text value: values)
+        context.write(finished, new Text(Point.newPoint(value.toString()).toString()));
+      context.getCounter(Counters.CELLS_FINISHED).increment(1);
+      return;
+    }
+    int max = rule.maxPoints();
+    List<Point> points = new ArrayList<Point>();
+    Iterator<Text> it = values.iterator();
+    while (it.hasNext()) {
+      Point point = Point.newPoint(it.next().toString());
+      if (points.size() == max) {
+        // too large to pass: split without holding the rest of the cell
+        for(Point held: points)
+          writeChild(cell, held, context);
+        writeChild(cell, point, context);
+        while (it.hasNext())
+          writeChild(cell, Point.newPoint(it.next().toString()), context);
+        context.getCounter(Counters.CELLS_SPLIT).increment(1);
+        return;
+      }
+      points.add(point);
+    }
+    if (rule.passes(points)) {
+      Text finished = new Text(cell.finished().toString());
+      for(Point point: points)
+        context.write(finished, new Text(point.toString()));
+      context.getCounter(Counters.CELLS_FINISHED).increment(1);
+    } else {
+      for(Point point: points)
+        writeChild(cell, point, context);
+      context.getCounter(Counters.CELLS_SPLIT).increment(1);
+    }
+  }
+
+  private void writeChild(LODCell cell, Point point, Context context) throws IOException, InterruptedException {
+    LODCell child = LODCell.fromHash(hasher.hash(point.values), cell.lod - 1);
+    context.write(new Text(child.toString()), new Text(point.toString()));
+  }
+
+}
@@ -0,0 +1,28 @@
+package lsh.hadoop.lod;
+
+import java.util.List;
+
+import lsh.core.Point;
+
+import org.apache.hadoop.conf.Configuration;
+
+/*
+ * Rule for the top-down LOD subdivision job.
+ * A cell whose points pass the rule is finished.
+ * A cell which fails is split into cells at the next smaller LOD.
+ *
+ * Implementations need a public no-arg constructor:
+ * the reducer creates one from LODDriver.RULE.
+ *
+ * The reducer holds at most maxPoints() points of a cell. A cell with more
+ * fails without a call to passes(), and is split as it streams through.
+ */
+
+public interface LODRule {
+  // read parameters from the job configuration
+  public void configure(Configuration conf);
+  // true if the cell does not need to be split
+  public boolean passes(List<Point> points);
+  // largest cell that can pass
+  public int maxPoints();
+}
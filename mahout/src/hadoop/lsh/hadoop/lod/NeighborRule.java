@@ -0,0 +1,81 @@
+package lsh.hadoop.lod;
+
+import java.util.List;
+
+import lsh.core.Point;
+
+import org.apache.hadoop.conf.Configuration;
+
+/*
+ * "At most COUNT points within distance DISTANCE":
+ * no point in the cell may have more than COUNT points (itself included)
+ * within Euclidean DISTANCE of it.
+ *
+ * With no DISTANCE this is just "at most COUNT points per cell".
+ * Checking the rule is quadratic in the cell size, so cells with more than
+ * MAXCELL points are split without checking.
+ */
+
+public class NeighborRule implements LODRule {
+  public static final String COUNT = "lsh.hadoop.lod.NeighborRule.count";
+  public static final String DISTANCE = "lsh.hadoop.lod.NeighborRule.distance";
+  public static final String MAXCELL = "lsh.hadoop.lod.NeighborRule.maxCell";
+
+  int count = 20;
+  double distance = Double.POSITIVE_INFINITY;
+  int maxCell = 10000;
+
+  public NeighborRule() {
+  }
+
+  public NeighborRule(int count, double distance) {
+    this.count = count;
+    this.distance = distance;
+  }
+
+  @Override
+  public void configure(Configuration conf) {
+    count = conf.getInt(COUNT, count);
+    String d = conf.get(DISTANCE);
+    if (null != d)
+      distance = Double.parseDouble(d);
+    maxCell = conf.getInt(MAXCELL, maxCell);
+  }
+
+  @Override
+  public int maxPoints() {
+    return Double.isInfinite(distance) ? count : Math.max(count, maxCell);
+  }
+
+  @Override
+  public boolean passes(List<Point> points) {
+    int size = points.size();
+    if (size <= count)
+      return true;
+    if (Double.isInfinite(distance) || size > maxCell)
+      return false;
+    double limit = distance * distance;
+    for(int i = 0; i < size; i++) {
+      double[] a = points.get(i).values;
+      int near = 0;
+      for(int j = 0; j < size; j++) {
+        if (distanceSquared(a, points.get(j).values) <= limit) {
+          near++;
+          if (near > count)
+            return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private static double distanceSquared(double[] a, double[] b) {
+    double sum = 0;
+    for(int i = 0; i < a.length; i++) {
+      double d = a[i] - b[i];
+      sum += d * d;
+    }
+    return sum;
+  }
+
+}
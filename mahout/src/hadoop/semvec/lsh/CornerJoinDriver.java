@@ -0,0 +1,117 @@
+package semvec.lsh;
+
+import java.io.IOException;
+
+import lsh.core.CornerGen;
+import lsh.core.Hasher;
+import lsh.hadoop.LSHDriver;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.FloatWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.util.GenericOptionsParser;
+
+/*
+ * Batch recommendations: join user and item points through shared corners
+ * and keep the top N items per user, scored by exact distance.
+ * Replaces loading the whole corner file into LSHRecommender.
+ *
+ * Pass 1 (CornerJoinMapper, CornerJoinReducer) pairs the users and items
+ * of each corner into <out>/pairs, a SequenceFile of (user, item) score.
+ * Pass 2 (identity map, TopNReducer) sorts the pairs by user and item,
+ * drops the copies found through more than one corner, and writes
+ * <out>/topn as text: userID  item:score,...
+ *
+ * Input is the id,vector*U / *I point format of Semvec2PointReducer.
+ * Hasher and grid size come from the usual LSHDriver keys.
+ */
+
+public class CornerJoinDriver {
+  public static final String TOPN = "semvec.lsh.CornerJoin.topN";
+  public static final int DEFAULT_TOPN = 10;
+
+  public static void main(String[] args) throws Exception {
+    Configuration conf = new Configuration();
+    String[] otherArgs = new GenericOptionsParser(conf, args).getRemainingArgs();
+    if (otherArgs.length != 2) {
+      System.err.println("Usage: CornerJoinDriver [-D " + TOPN + "=N ...] <in> <out>");
+      System.exit(2);
+    }
+    Path result = run(conf, new Path(otherArgs[0]), new Path(otherArgs[1]));
+    System.out.println("Recommendations in " + result);
+  }
+
+  public static Path run(Configuration conf, Path in, Path out) throws Exception {
+    FileSystem fs = out.getFileSystem(conf);
+    fs.delete(out, true);
+    Path pairs = new Path(out, "pairs");
+    Path topn = new Path(out, "topn");
+
+    Job join = new Job(conf, "User/item corner join");
+    join.setJarByClass(CornerJoinDriver.class);
+    join.setMapperClass(CornerJoinMapper.class);
+    join.setReducerClass(CornerJoinReducer.class);
+    join.setPartitionerClass(CornerJoinMapper.CornerPartitioner.class);
+    join.setGroupingComparatorClass(CornerJoinMapper.CornerComparator.class);
+    join.setMapOutputKeyClass(Text.class);
+    join.setMapOutputValueClass(Text.class);
+    join.setOutputKeyClass(UserItemKey.class);
+    join.setOutputValueClass(FloatWritable.class);
+    join.setOutputFormatClass(SequenceFileOutputFormat.class);
+    FileInputFormat.addInputPath(join, in);
+    FileOutputFormat.setOutputPath(join, pairs);
+    if (! join.waitForCompletion(true))
+      throw new Exception("Corner join failed");
+
+    Job top = new Job(conf, "Top " + conf.getInt(TOPN, DEFAULT_TOPN) + " items per user");
+    top.setJarByClass(CornerJoinDriver.class);
+    top.setMapperClass(Mapper.class);
+    top.setReducerClass(TopNReducer.class);
+    top.setPartitionerClass(UserItemKey.UserPartitioner.class);
+    top.setGroupingComparatorClass(UserItemKey.UserComparator.class);
+    top.setInputFormatClass(SequenceFileInputFormat.class);
+    top.setMapOutputKeyClass(UserItemKey.class);
+    top.setMapOutputValueClass(FloatWritable.class);
+    top.setOutputKeyClass(LongWritable.class);
+    top.setOutputValueClass(Text.class);
+    FileInputFormat.addInputPath(top, pairs);
+    FileOutputFormat.setOutputPath(top, topn);
+    if (! top.waitForCompletion(true))
+      throw new Exception("Top N pass failed");
+    return topn;
+  }
+
+  public static CornerGen getCornerGen(Configuration conf) throws IOException {
+    String hasherClass = conf.get(LSHDriver.HASHER, "lsh.core.OrthonormalHasher");
+    String gridsize = conf.get(LSHDriver.GRIDSIZE, "1.0");
+    String dimSize = conf.get(LSHDriver.DIMENSION);
+    String[] parts = gridsize.split("[ ,]");
+    double[] stretch;
+    if (parts.length == 1 && null != dimSize) {
+      stretch = new double[Integer.parseInt(dimSize)];
+      for(int i = 0; i < stretch.length; i++)
+        stretch[i] = Double.parseDouble(parts[0]);
+    } else {
+      stretch = new double[parts.length];
+      for(int i = 0; i < parts.length; i++)
+        stretch[i] = Double.parseDouble(parts[i]);
+    }
+    try {
+      Hasher hasher = (Hasher) Class.forName(hasherClass).newInstance();
+      hasher.setStretch(stretch);
+      return new CornerGen(hasher, stretch);
+    } catch (Exception e) {
+      throw new IOException("Cannot create hasher " + hasherClass + ": " + e.toString());
+    }
+  }
+
+}
@@ -0,0 +1,80 @@
+package semvec.lsh;
+
+import java.io.IOException;
+
+import lsh.core.Corner;
+import lsh.core.CornerGen;
+import lsh.core.Point;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.Partitioner;
+
+/*
+ * First pass of CornerJoinDriver: send every user and item point
+ * to the D+1 corners of its simplex.
+ *
+ * Input: id,d0,d1,...dn*U or *I, from Semvec2PointReducer
+ * Output: corner<tab>0 user point, corner<tab>1 item point
+ *
+ * The side marker sorts users ahead of items inside a corner.
+ * CornerPartitioner and CornerComparator only look at the corner,
+ * so one reduce call sees the corner's users first and then streams its items.
+ */
+
+public class CornerJoinMapper extends Mapper<Object, Text, Text, Text> {
+  static final String USERS = "0";
+  static final String ITEMS = "1";
+  CornerGen cg;
+
+  @Override
+  protected void setup(Context context) throws IOException, InterruptedException {
+    cg = CornerJoinDriver.getCornerGen(context.getConfiguration());
+  }
+
+  @Override
+  public void map(Object key, Text value, Context context)
+  throws IOException, InterruptedException {
+    String line = value.toString();
+    if (line.length() == 0)
+      return;
+    Point point = Point.newPoint(line);
+    String side;
+    if ("U".equals(point.payload))
+      side = USERS;
+    else if ("I".equals(point.payload))
+      side = ITEMS;
+    else
+      throw new IOException("CornerJoinMapper: where are the User/Item markers? " + line);
+    for(Corner corner: cg.getHashSet(point)) {
+      context.write(new Text(corner.toString() + "\t" + side), value);
+    }
+  }
+
+  static String getCorner(Text key) {
+    String s = key.toString();
+    return s.substring(0, s.lastIndexOf('\t'));
+  }
+
+  public static class CornerPartitioner<V> extends Partitioner<Text,V> {
+    @Override
+    public int getPartition(Text key, V value, int numPartitions) {
+      return (getCorner(key).hashCode() & Integer.MAX_VALUE) % numPartitions;
+    }
+  }
+
+  public static class CornerComparator extends WritableComparator {
+    public CornerComparator() {
+      super(Text.class, true);
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Override
+    public int compare(WritableComparable a, WritableComparable b) {
+      return getCorner((Text) a).compareTo(getCorner((Text) b));
+    }
+  }
+
+}
@@ -0,0 +1,73 @@
+package semvec.lsh;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import lsh.core.Point;
+
+import org.apache.hadoop.io.FloatWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+
+/*
+ * First pass of CornerJoinDriver: pair up users and items in one corner.
+ *
+ * Users arrive first and are held for the call; items are streamed
+ * past them, so only the user side of a corner is in memory.
+ * Each pair is scored with the exact distance between the two vectors.
+ * A pair that shares several corners is written once per corner;
+ * TopNReducer drops the copies.
+ *
+ * Output: (user, item) score
+ */
+
+public class CornerJoinReducer extends Reducer<Text, Text, UserItemKey, FloatWritable> {
+  public enum Counters {PAIRS, USER_CORNERS, ITEM_CORNERS}
+  final List<Point> users = new ArrayList<Point>();
+  final UserItemKey pair = new UserItemKey();
+  final FloatWritable score = new FloatWritable();
+
+  @Override
+  public void reduce(Text key, Iterable<Text> values, Context context)
+  throws IOException, InterruptedException {
+    users.clear();
+    boolean items = false;
+    for(Text value: values) {
+      Point point = Point.newPoint(value.toString());
+      if ("U".equals(point.payload)) {
+        users.add(point);
+        continue;
+      }
+      items = true;
+      if (users.isEmpty())
+        break;
+      pair.itemID = Long.parseLong(point.id);
+      for(Point user: users) {
+        pair.userID = Long.parseLong(user.id);
+        score.set((float) score(user.values, point.values));
+        context.write(pair, score);
+        context.getCounter(Counters.PAIRS).increment(1);
+      }
+    }
+    // corners with only one side
+    if (! items)
+      context.getCounter(Counters.USER_CORNERS).increment(1);
+    else if (users.isEmpty())
+      context.getCounter(Counters.ITEM_CORNERS).increment(1);
+  }
+
+  /*
+   * Rating from Euclidean distance, scaled so the unit cube diagonal is 1,
+   * as PointTextDataModel.euclidD() and distance2rating().
+   */
+  public static double score(double[] user, double[] item) {
+    double sum = 0;
+    for(int i = 0; i < user.length; i++) {
+      double diff = user[i] - item[i];
+      sum += diff * diff;
+    }
+    return 1 - Math.sqrt(sum / user.length);
+  }
+
+}
@@ -0,0 +1,224 @@
+package semvec.lsh;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import lsh.hadoop.CornerMapper;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.Counters;
+import org.apache.hadoop.mapred.JobClient;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.RunningJob;
+import org.apache.hadoop.mapred.jobcontrol.JobControl;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.util.GenericOptionsParser;
+
+import semvec.mahout.Semvec2PointReducer;
+import semvec.mahout.SemvecMapper;
+import semvec.mahout.TupleWritable;
+import semvec.mahout.UserItemPrefMapper;
+import semvec.mahout.UserItemPrefReducer;
+
+/*
+ * Ratings to LSH corners in one run, replacing SVDriver and two LSHDriver
+ * site files started by hand:
+ *   semvec   UserItemPrefMapper, UserItemPrefReducer  <out>/semvec
+ *   points   SemvecMapper, Semvec2PointReducer        <out>/points
+ *   corners  CornerMapper, UICornerReducer            <out>/corners
+ * The stages go to Hadoop JobControl as one dependency chain. semvec and
+ * points are SequenceFiles of (NullWritable, line); corners is text, for
+ * CornerJoinDriver and the text data models.
+ *
+ * A stage whose output has the _SUCCESS marker is skipped, so a failed
+ * run picks up where it stopped. Once a stage runs, every later one runs.
+ * -force runs everything. After the run, each stage's counters are printed.
+ *
+ * Dimension, seed, hasher and grid size come from the usual LSHDriver keys,
+ * e.g. -conf common-dim2-site.xml.
+ *
+ * Usage: PipelineDriver [-conf site.xml] [-D key=value] <ratings> <out> [-force]
+ */
+
+public class PipelineDriver {
+  public static final String SUCCESS = "_SUCCESS";
+  public static final String[] STAGES = {"semvec", "points", "corners"};
+  // between polls of JobControl
+  static final long POLL = 500;
+
+  final Configuration conf;
+  final Path in;
+  final Path out;
+
+  public PipelineDriver(Configuration conf, Path in, Path out) {
+    this.conf = conf;
+    this.in = in;
+    this.out = out;
+  }
+
+  public static void main(String[] args) throws Exception {
+    Configuration conf = new Configuration();
+    String[] otherArgs = new GenericOptionsParser(conf, args).getRemainingArgs();
+    boolean force = otherArgs.length == 3 && otherArgs[2].equals("-force");
+    if (otherArgs.length != 2 && !force) {
+      System.err.println("Usage: PipelineDriver [-conf site.xml] [-D key=value] <ratings> <out> [-force]");
+      System.exit(2);
+    }
+    PipelineDriver driver = new PipelineDriver(conf, new Path(otherArgs[0]), new Path(otherArgs[1]));
+    List<Stage> stages = driver.run(force);
+    report(stages, System.out);
+    for(Stage stage: stages) {
+      if (stage.failed)
+        System.exit(1);
+    }
+  }
+
+  public Path getOutput(String stage) {
+    return new Path(out, stage);
+  }
+
+  /*
+   * Run the stages that are not complete. Returns every stage in order.
+   */
+  public List<Stage> run(boolean force) throws Exception {
+    FileSystem fs = out.getFileSystem(conf);
+    List<Stage> stages = new ArrayList<Stage>();
+    JobControl control = new JobControl("semvec to LSH");
+    org.apache.hadoop.mapred.jobcontrol.Job previous = null;
+    boolean rerun = force;
+    Path input = in;
+    for(String name: STAGES) {
+      Path output = getOutput(name);
+      Stage stage = new Stage(name, output);
+      stages.add(stage);
+      if (!rerun && fs.exists(new Path(output, SUCCESS))) {
+        stage.skipped = true;
+      } else {
+        rerun = true;
+        fs.delete(output, true);
+        ArrayList<org.apache.hadoop.mapred.jobcontrol.Job> depends = new ArrayList<org.apache.hadoop.mapred.jobcontrol.Job>();
+        if (null != previous)
+          depends.add(previous);
+        stage.job = new org.apache.hadoop.mapred.jobcontrol.Job(toJobConf(createJob(name, input, output)), depends);
+        control.addJob(stage.job);
+        previous = stage.job;
+      }
+      input = output;
+    }
+    if (null != previous)
+      runAll(control);
+    for(Stage stage: stages) {
+      if (null == stage.job)
+        continue;
+      stage.failed = stage.job.getState() != org.apache.hadoop.mapred.jobcontrol.Job.SUCCESS;
+      if (!stage.failed) {
+        stage.counters = getCounters(stage.job);
+        // the marker does not depend on the committer's version
+        Path marker = new Path(stage.output, SUCCESS);
+        if (!fs.exists(marker))
+          fs.create(marker).close();
+      }
+    }
+    return stages;
+  }
+
+  Job createJob(String name, Path input, Path output) throws IOException {
+    Job job = new Job(conf, "Pipeline " + name + ": " + input.getName());
+    job.setJarByClass(PipelineDriver.class);
+    if (name.equals("semvec")) {
+      job.setMapperClass(UserItemPrefMapper.class);
+      job.setReducerClass(UserItemPrefReducer.class);
+      job.setMapOutputKeyClass(LongWritable.class);
+      job.setMapOutputValueClass(TupleWritable.class);
+      job.setOutputKeyClass(NullWritable.class);
+      job.setOutputValueClass(Text.class);
+      job.setOutputFormatClass(SequenceFileOutputFormat.class);
+    } else if (name.equals("points")) {
+      job.setInputFormatClass(SequenceFileInputFormat.class);
+      job.setMapperClass(SemvecMapper.class);
+      job.setReducerClass(Semvec2PointReducer.class);
+      job.setMapOutputKeyClass(Text.class);
+      job.setMapOutputValueClass(Text.class);
+      job.setOutputKeyClass(NullWritable.class);
+      job.setOutputValueClass(Text.class);
+      job.setOutputFormatClass(SequenceFileOutputFormat.class);
+    } else {
+      job.setInputFormatClass(SequenceFileInputFormat.class);
+      job.setMapperClass(CornerMapper.class);
+      job.setReducerClass(UICornerReducer.class);
+      job.setOutputKeyClass(Text.class);
+      job.setOutputValueClass(Text.class);
+    }
+    FileInputFormat.addInputPath(job, input);
+    FileOutputFormat.setOutputPath(job, output);
+    return job;
+  }
+
+  // JobControl takes old-API jobs; this one still runs the new-API classes
+  static JobConf toJobConf(Job job) {
+    JobConf jobConf = new JobConf(job.getConfiguration());
+    jobConf.setJobName(job.getJobName());
+    jobConf.setUseNewMapper(true);
+    jobConf.setUseNewReducer(true);
+    return jobConf;
+  }
+
+  static void runAll(JobControl control) throws InterruptedException {
+    Thread runner = new Thread(control, "PipelineDriver");
+    runner.setDaemon(true);
+    runner.start();
+    while (!control.allFinished())
+      Thread.sleep(POLL);
+    control.stop();
+  }
+
+  static Counters getCounters(org.apache.hadoop.mapred.jobcontrol.Job job) throws IOException {
+    JobClient client = job.getJobClient();
+    if (null == client || null == job.getAssignedJobID())
+      return null;
+    RunningJob running = client.getJob(job.getAssignedJobID());
+    return (null == running) ? null : running.getCounters();
+  }
+
+  public static void report(List<Stage> stages, PrintStream out) {
+    for(Stage stage: stages) {
+      if (stage.skipped) {
+        out.println(stage.name + ": skipped, complete in " + stage.output);
+        continue;
+      }
+      out.println(stage.name + ": " + (stage.failed ? "FAILED " + stage.job.getMessage() : "done") + ", " + stage.output);
+      if (null == stage.counters)
+        continue;
+      for(Counters.Group group: stage.counters) {
+        for(Counters.Counter counter: group)
+          out.println("  " + group.getDisplayName() + "." + counter.getDisplayName() + ": " + counter.getCounter());
+      }
+    }
+  }
+
+  public static class Stage {
+    public final String name;
+    public final Path output;
+    public boolean skipped = false;
+    public boolean failed = false;
+    public Counters counters = null;
+    org.apache.hadoop.mapred.jobcontrol.Job job = null;
+
+    Stage(String name, Path output) {
+      this.name = name;
+      this.output = output;
+    }
+  }
+
+}
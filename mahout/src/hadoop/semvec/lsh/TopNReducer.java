@@ -0,0 +1,92 @@
+package semvec.lsh;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.apache.hadoop.io.FloatWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+
+/*
+ * Second pass of CornerJoinDriver: top N items per user.
+ *
+ * One call per user (UserItemKey.UserComparator), with the pairs
+ * sorted by item. The key is updated as the values are read, so
+ * copies of a pair from several corners are adjacent and are skipped
+ * after the first. Only N items per user are held.
+ *
+ * Output: userID  item:score,item:score,... best first
+ */
+
+public class TopNReducer extends Reducer<UserItemKey, FloatWritable, LongWritable, Text> {
+  public enum Counters {USERS, DUPLICATES}
+  int topN;
+
+  static final Comparator<Scored> WORST_FIRST = new Comparator<Scored>() {
+    @Override
+    public int compare(Scored a, Scored b) {
+      if (a.score != b.score)
+        return a.score < b.score ? -1 : 1;
+      // ties: keep the lower item ID
+      return a.itemID > b.itemID ? -1 : (a.itemID == b.itemID ? 0 : 1);
+    }
+  };
+
+  @Override
+  protected void setup(Context context) throws IOException, InterruptedException {
+    topN = context.getConfiguration().getInt(CornerJoinDriver.TOPN, CornerJoinDriver.DEFAULT_TOPN);
+  }
+
+  @Override
+  public void reduce(UserItemKey key, Iterable<FloatWritable> values, Context context)
+  throws IOException, InterruptedException {
+    PriorityQueue<Scored> top = new PriorityQueue<Scored>(topN + 1, WORST_FIRST);
+    long userID = key.getUserID();
+    boolean first = true;
+    long lastItem = 0;
+    for(FloatWritable value: values) {
+      long itemID = key.getItemID();
+      if (! first && itemID == lastItem) {
+        context.getCounter(Counters.DUPLICATES).increment(1);
+        continue;
+      }
+      first = false;
+      lastItem = itemID;
+      Scored scored = new Scored(itemID, value.get());
+      if (top.size() < topN) {
+        top.add(scored);
+      } else if (WORST_FIRST.compare(scored, top.peek()) > 0) {
+        top.poll();
+        top.add(scored);
+      }
+    }
+    List<Scored> best = new ArrayList<Scored>(top);
+    Collections.sort(best, Collections.reverseOrder(WORST_FIRST));
+    StringBuilder sb = new StringBuilder();
+    for(Scored scored: best) {
+      if (sb.length() > 0)
+        sb.append(',');
+      sb.append(scored.itemID);
+      sb.append(':');
+      sb.append(scored.score);
+    }
+    context.write(new LongWritable(userID), new Text(sb.toString()));
+    context.getCounter(Counters.USERS).increment(1);
+  }
+
+  static final class Scored {
+    final long itemID;
+    final float score;
+
+    Scored(long itemID, float score) {
+      this.itemID = itemID;
+      this.score = score;
+    }
+  }
+
+}
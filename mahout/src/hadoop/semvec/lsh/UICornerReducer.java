@@ -1,15 +1,8 @@
 package semvec.lsh;
 
-import java.io.File;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.util.ArrayList;
-import java.util.List;
-
-import lsh.core.Point;
 
 import org.apache.hadoop.io.Text;
-import org.apache.hadoop.mapred.Reporter;
 import org.apache.hadoop.mapreduce.Reducer;
 
 /*
@@ -21,10 +14,13 @@ import org.apache.hadoop.mapreduce.Reducer;
 /*
  * Receives corners from CornerMapper- with U/I as markers for user point or item grid
  * Output format of "id,1,2,3 id,double...double*U|...*I"
+ *
+ * For recommendations from these corners see CornerJoinDriver.
  */
 
 public class UICornerReducer extends
 Reducer<Text, Text, Text, Text> {
+  public enum Counters {USER_ONLY_CORNERS}
 
   // TODO - what a pain!
   // and to unit test!
@@ -37,19 +33,10 @@ Reducer<Text, Text, Text, Text> {
   //	private boolean userPoints = true;
   //	private boolean itemPoints = true;
   boolean requireBoth = false;
-  PrintWriter side = null;
   float corners = 0;
   float points = 0;
   float maxPoints = 0;
 
-  @Override
-  protected void setup(
-      org.apache.hadoop.mapreduce.Reducer<Text, Text, Text, Text>.Context context)
-  throws IOException, InterruptedException {
-
-    side = new PrintWriter(new File("/tmp/corners.log"));	
-  };
-
   @Override
   public void reduce(Text key, Iterable<Text> values, Context context)
   throws IOException, InterruptedException {
@@ -80,7 +67,7 @@ Reducer<Text, Text, Text, Text> {
     }
     if (requireBoth && (users == 0 || items ==0)) {
       if (users == 1) 
-        side.println(key);
+        context.getCounter(Counters.USER_ONLY_CORNERS).increment(1);
       return;
     }
     if (sb.length() > 0) {
@@ -99,8 +86,6 @@ Reducer<Text, Text, Text, Text> {
   protected void cleanup(
       org.apache.hadoop.mapreduce.Reducer<Text, Text, Text, Text>.Context context)
   throws IOException, InterruptedException {
-    side.flush();
-    side.close();
     System.err.println("REPORT: corners: " + corners + ", maxPoints: " + maxPoints + 
         ", points: " + points + ", mean:" + (points / corners));
   };
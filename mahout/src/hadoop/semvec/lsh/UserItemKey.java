@@ -0,0 +1,99 @@
+package semvec.lsh;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.mapreduce.Partitioner;
+
+/*
+ * (user, item) pair for the second pass of CornerJoinDriver.
+ * Sorts by user then item, so the copies of a pair found through
+ * different corners arrive next to each other.
+ * UserPartitioner and UserComparator send all of a user's pairs
+ * to one reduce call.
+ */
+
+public class UserItemKey implements WritableComparable<UserItemKey> {
+  long userID;
+  long itemID;
+
+  public UserItemKey() {
+  }
+
+  public UserItemKey(long userID, long itemID) {
+    this.userID = userID;
+    this.itemID = itemID;
+  }
+
+  public long getUserID() {
+    return userID;
+  }
+
+  public long getItemID() {
+    return itemID;
+  }
+
+  @Override
+  public void write(DataOutput out) throws IOException {
+    out.writeLong(userID);
+    out.writeLong(itemID);
+  }
+
+  @Override
+  public void readFields(DataInput in) throws IOException {
+    userID = in.readLong();
+    itemID = in.readLong();
+  }
+
+  @Override
+  public int compareTo(UserItemKey other) {
+    if (userID != other.userID)
+      return userID < other.userID ? -1 : 1;
+    if (itemID != other.itemID)
+      return itemID < other.itemID ? -1 : 1;
+    return 0;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (! (other instanceof UserItemKey))
+      return false;
+    UserItemKey key = (UserItemKey) other;
+    return userID == key.userID && itemID == key.itemID;
+  }
+
+  @Override
+  public int hashCode() {
+    return (int) (userID * 31 + itemID);
+  }
+
+  @Override
+  public String toString() {
+    return userID + "," + itemID;
+  }
+
+  public static class UserPartitioner<V> extends Partitioner<UserItemKey,V> {
+    @Override
+    public int getPartition(UserItemKey key, V value, int numPartitions) {
+      return (int) ((key.userID & Long.MAX_VALUE) % numPartitions);
+    }
+  }
+
+  public static class UserComparator extends WritableComparator {
+    public UserComparator() {
+      super(UserItemKey.class, true);
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Override
+    public int compare(WritableComparable a, WritableComparable b) {
+      long userA = ((UserItemKey) a).userID;
+      long userB = ((UserItemKey) b).userID;
+      return userA < userB ? -1 : (userA == userB ? 0 : 1);
+    }
+  }
+
+}
@@ -0,0 +1,138 @@
+package semvec.mahout;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+import lsh.core.Point;
+
+import org.apache.mahout.math.DenseVector;
+import org.apache.mahout.math.KabschRotation;
+import org.apache.mahout.math.Vector;
+
+/*
+ * Keep semvec coordinates stable across retrains.
+ *
+ * Each retrain places users and items in a new random orientation,
+ * so every corner changes. This fits the rotation (and shift) that
+ * best carries the new model's anchor items onto the old model's,
+ * and applies it to every new point before it goes to CornerMapper.
+ * Items that did not move keep their corners; caches and Solr corner
+ * fields keyed on them stay valid.
+ *
+ * Anchors are the points with the given payload ("I" for items) whose
+ * id is in both models ("-payload -" takes every point); -anchors F keeps a fixed fraction of ids, by
+ * hash, to bound memory. Only the old anchors are held in memory. The
+ * new model is read twice: once into KabschRotation's streaming
+ * covariance, once to write the rotated points.
+ *
+ * Points files are Semvec2PointReducer output: id,v0,v1,...*U or *I
+ *
+ * Usage: AlignPoints <old points> <new points> <out points> [-payload P] [-anchors F]
+ */
+
+public class AlignPoints {
+  public static final String DEFAULT_PAYLOAD = "I";
+
+  // old anchor vectors by id
+  public static Map<String,double[]> loadAnchors(BufferedReader old, String payload, double fraction) throws IOException {
+    Map<String,double[]> anchors = new HashMap<String,double[]>();
+    String line;
+    while ((line = old.readLine()) != null) {
+      if (line.length() == 0)
+        continue;
+      Point p = Point.newPoint(line);
+      if (isAnchor(p, payload, fraction))
+        anchors.put(p.id, p.values);
+    }
+    return anchors;
+  }
+
+  // rotation from the new model's space into the old one's
+  public static KabschRotation fit(Map<String,double[]> anchors, BufferedReader newer, String payload) throws IOException {
+    KabschRotation.Accumulator pairs = null;
+    String line;
+    while ((line = newer.readLine()) != null) {
+      if (line.length() == 0)
+        continue;
+      Point p = Point.newPoint(line);
+      if (!matches(p, payload))
+        continue;
+      double[] old = anchors.get(p.id);
+      if (null == old)
+        continue;
+      if (null == pairs)
+        pairs = new KabschRotation.Accumulator(p.values.length);
+      pairs.add(new DenseVector(p.values, true), new DenseVector(old, true));
+    }
+    if (null == pairs || pairs.size() < 2)
+      throw new IOException("AlignPoints: need at least 2 shared anchors, found " + (null == pairs ? 0 : pairs.size()));
+    return new KabschRotation(pairs, true);
+  }
+
+  // write every new point, rotated; returns the number written
+  public static int rotate(KabschRotation rotation, BufferedReader newer, PrintWriter out) throws IOException {
+    int count = 0;
+    String line;
+    while ((line = newer.readLine()) != null) {
+      if (line.length() == 0)
+        continue;
+      Point p = Point.newPoint(line);
+      Vector v = rotation.apply(new DenseVector(p.values, true));
+      double[] values = new double[v.size()];
+      for(int i = 0; i < values.length; i++)
+        values[i] = v.getQuick(i);
+      out.println(new Point(p.id, values, p.payload).toString());
+      count++;
+    }
+    return count;
+  }
+
+  static boolean isAnchor(Point p, String payload, double fraction) {
+    if (!matches(p, payload))
+      return false;
+    if (fraction >= 1.0)
+      return true;
+    // same ids in every run, spread evenly
+    long h = (p.id.hashCode() + 1) * 0x9E3779B97F4A7C15L;
+    return (h >>> 11) * 0x1.0p-53 < fraction;
+  }
+
+  static boolean matches(Point p, String payload) {
+    return null == payload || payload.equals(p.payload);
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 3) {
+      System.err.println("Usage: AlignPoints <old points> <new points> <out points> [-payload P] [-anchors F]");
+      System.exit(2);
+    }
+    String payload = DEFAULT_PAYLOAD;
+    double fraction = 1.0;
+    for(int i = 3; i < args.length - 1; i += 2) {
+      if (args[i].equals("-payload"))
+        payload = args[i + 1].equals("-") ? null : args[i + 1];
+      else if (args[i].equals("-anchors"))
+        fraction = Double.parseDouble(args[i + 1]);
+      else
+        throw new IllegalArgumentException("AlignPoints: unknown option " + args[i]);
+    }
+    BufferedReader reader = new BufferedReader(new FileReader(args[0]));
+    Map<String,double[]> anchors = loadAnchors(reader, payload, fraction);
+    reader.close();
+    reader = new BufferedReader(new FileReader(args[1]));
+    KabschRotation rotation = fit(anchors, reader, payload);
+    reader.close();
+    reader = new BufferedReader(new FileReader(args[1]));
+    PrintWriter out = new PrintWriter(new FileWriter(args[2]));
+    int count = rotate(rotation, reader, out);
+    out.close();
+    reader.close();
+    System.out.println("Aligned " + count + " points on " + rotation.getNumVectors() + " anchors");
+  }
+
+}
@@ -6,7 +6,7 @@ import lsh.core.Point;
 import lsh.hadoop.LSHDriver;
 
 import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Reducer;
 
@@ -21,10 +21,10 @@ import org.apache.hadoop.mapreduce.Reducer;
  */
 
 public class Semvec2PointReducer extends
-Reducer<Text, Text, Text, Text> {
+Reducer<Text, Text, NullWritable, Text> {
   int dimension = -1;
 
-  protected void setup(org.apache.hadoop.mapreduce.Reducer<Text,Text,Text,Text>.Context context) throws IOException ,InterruptedException {
+  protected void setup(org.apache.hadoop.mapreduce.Reducer<Text,Text,NullWritable,Text>.Context context) throws IOException ,InterruptedException {
     Configuration conf = context.getConfiguration();
     String dim = conf.get(LSHDriver.DIMENSION);
     dimension = Integer.parseInt(dim);
@@ -54,11 +54,11 @@ Reducer<Text, Text, Text, Text> {
     }
     if (null != userPoints) {
       Point p = new Point(id.toString(), userPoints, "U");
-      context.write(null, new Text(p.toString()));
+      context.write(NullWritable.get(), new Text(p.toString()));
     }
     if (null != itemPoints) {
       Point p = new Point(id.toString(), itemPoints, "I");
-      context.write(null, new Text(p.toString()));
+      context.write(NullWritable.get(), new Text(p.toString()));
     }
   }
 
@@ -1,20 +1,20 @@
 package semvec.mahout;
 
-import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Mapper;
 
 /*
  * null/value -> first/rest Mapper
+ * Key is a text offset or, from a SequenceFile, NullWritable.
  */
 
-public class SemvecMapper extends Mapper<LongWritable, Text, Text, Text> {
+public class SemvecMapper extends Mapper<Object, Text, Text, Text> {
 
   @Override
   protected void map(
-      LongWritable key,
+      Object key,
       Text value,
-      org.apache.hadoop.mapreduce.Mapper<LongWritable, Text, Text, Text>.Context context)
+      org.apache.hadoop.mapreduce.Mapper<Object, Text, Text, Text>.Context context)
   throws java.io.IOException, InterruptedException {
     String full = value.toString();
     int space = full.indexOf(' ');
@@ -10,6 +10,7 @@ import lsh.hadoop.LSHDriver;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Reducer;
 
@@ -20,6 +21,7 @@ import sun.security.x509.DeltaCRLIndicatorExtension;
  * For each user+preference, pull the item towards the user.
  * 
  * Write projected format with index discriminators: userid U/I dimension spot
+ * Keys are NullWritable, so the output can also be a SequenceFile.
  * 
  */
 
@@ -28,7 +30,7 @@ import sun.security.x509.DeltaCRLIndicatorExtension;
  */
 
 public class UserItemPrefReducer extends
-Reducer<LongWritable, TupleWritable, Text, Text> {
+Reducer<LongWritable, TupleWritable, NullWritable, Text> {
 
   private static final double EFFECT = 3;
   // the space of the incoming pref values
@@ -47,7 +49,7 @@ Reducer<LongWritable, TupleWritable, Text, Text> {
   double deltas = 0.0;
 
   @Override
-  protected void setup(org.apache.hadoop.mapreduce.Reducer<LongWritable,TupleWritable,Text,Text>.Context context) throws IOException ,InterruptedException {
+  protected void setup(org.apache.hadoop.mapreduce.Reducer<LongWritable,TupleWritable,NullWritable,Text>.Context context) throws IOException ,InterruptedException {
     Configuration conf = context.getConfiguration();
     String scaleString = conf.get(LSHDriver.SCALE);
     String biasString = conf.get(LSHDriver.BIAS);
@@ -60,7 +62,7 @@ Reducer<LongWritable, TupleWritable, Text, Text> {
   protected void reduce(
       LongWritable key,
       Iterable<TupleWritable> values,
-      Reducer<LongWritable, TupleWritable, Text, Text>.Context context)
+      Reducer<LongWritable, TupleWritable, NullWritable, Text>.Context context)
   throws java.io.IOException, InterruptedException {
     double tug = 0;
     Set<Long> users = new HashSet<Long>();
@@ -125,13 +127,13 @@ Reducer<LongWritable, TupleWritable, Text, Text> {
       nitems++;
       deltas += Math.abs(spot - itemSpots.get(itemID));
       sb.append(spot.toString());
-      context.write(null, new Text(sb.toString()));
+      context.write(NullWritable.get(), new Text(sb.toString()));
       projections++;
     }		
   }
 
   private void collectUser(
-      Reducer<LongWritable, TupleWritable, Text, Text>.Context context,
+      Reducer<LongWritable, TupleWritable, NullWritable, Text>.Context context,
       Long dim, StringBuilder sb, TupleWritable data) throws IOException,
       InterruptedException {
     sb.setLength(0);
@@ -144,11 +146,11 @@ Reducer<LongWritable, TupleWritable, Text, Text> {
     sb.append(' ');
     Double spot = data.getUserSpot();
     sb.append(spot.toString());
-    context.write(null, new Text(sb.toString()));
+    context.write(NullWritable.get(), new Text(sb.toString()));
   }
 
   @Override
-  protected void cleanup(org.apache.hadoop.mapreduce.Reducer<LongWritable,TupleWritable,Text,Text>.Context context) throws IOException ,InterruptedException {
+  protected void cleanup(org.apache.hadoop.mapreduce.Reducer<LongWritable,TupleWritable,NullWritable,Text>.Context context) throws IOException ,InterruptedException {
     System.err.println("REPORT: # projections: " + projections + ", pinned: " + pinned + ", avg delta: " + (deltas/nitems));
   };
 
@@ -30,8 +30,8 @@ import java.util.regex.Pattern;
 import lsh.hadoop.LSHDriver;
 
 /*
- * Read User/Item/Pref format, for all dimensions
- * 	map dimension, user/item/userrandom/itemrandom/pref
+ * Read User/Item/Pref format
+ * 	map user, user/item/pref
  * 
  * prefs are mapped to 0 -> 1 via BIAS and SCALE
  */
@@ -68,7 +68,7 @@ Mapper<LongWritable,Text, LongWritable,MyTupleWritable> {
     tuple[1] = new LongWritable(itemID);
     tuple[2] = new FloatWritable(prefValue);
     MyTupleWritable valueout = new MyTupleWritable(tuple);	
-    context.write(new LongWritable(itemID), valueout);
+    context.write(new LongWritable(userID), valueout);
   }
 
   /*
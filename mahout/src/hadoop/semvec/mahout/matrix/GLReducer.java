@@ -1,109 +1,89 @@
 package semvec.mahout.matrix;
 
 import java.io.IOException;
-import java.util.Iterator;
+import java.util.Random;
 
 import lsh.hadoop.LSHDriver;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.FloatWritable;
 import org.apache.hadoop.io.LongWritable;
-import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.mahout.cf.taste.impl.common.SemanticVectorFactory;
 import org.apache.mahout.math.DenseVector;
-import org.apache.mahout.math.NamedVector;
-import org.apache.mahout.math.RandomAccessSparseVector;
-import org.apache.mahout.math.RandomFactory;
-import org.apache.mahout.math.RandomMatrix;
-import org.apache.mahout.math.RandomVector;
-import org.apache.mahout.math.Vector;
-import org.apache.mahout.math.Vector.Element;
+import org.apache.mahout.math.VectorWritable;
 
 /*
- * Input: Item=key, value = user, item, pref
+ * Input: User=key, value = user, item, pref
  *  Values are 0->1
  * 
- * For a dimension, randomly project all users and items onto a line from 0 to 1.
- * For each user+preference, pull the item towards the user.
+ * For each dimension, users and items have random positions from 0 to 1.
+ * Each preference pulls the user towards the item:
+ *       position = U + (I - U)/2 * pref
+ *       User(u) = sum(position) / #prefs
  * 
- * Where U=random position and U# = the number of user prefs,
- *       Item(i) =  ((sum(U)+ sum(pref(u,i)/#U))/2)/#U
+ * Same projection as SemanticVectorFactory.projectUserDense(), with the same
+ * random positions. Set BIAS and SCALE to the model's minimum preference
+ * and (max - min) preference to match it exactly.
  * 
- * Write projected Item vectors as SequenceFile.
- * 
- * TODO: Use SemanticVectorFactory?
+ * Write one dense User vector of DIMENSION values per user, as
+ * LongWritable/VectorWritable, to a SequenceFile.
+ * Positions are summed into a double[] reused across calls.
  */
 
 
 public class GLReducer extends
-Reducer<LongWritable, MyTupleWritable, Text, Text> {
+Reducer<LongWritable, MyTupleWritable, LongWritable, VectorWritable> {
 
   private int dimension = -1;
-  private int randomSeed = 0;
-  private RandomFactory factory = null;
+  private final Random rnd = new Random();
+  private double[] userR;
+  private double[] itemR;
+  private double[] sums;
 
   @Override
-  protected void setup(org.apache.hadoop.mapreduce.Reducer<LongWritable,MyTupleWritable,Text,Text>.Context context) throws IOException ,InterruptedException {
+  protected void setup(Context context) throws IOException ,InterruptedException {
     Configuration conf = context.getConfiguration();
     String d = conf.get(LSHDriver.DIMENSION);
-    String r = conf.get(LSHDriver.RANDOMSEED);
     if (null == d)
       dimension = 2;
     else
       dimension = Integer.parseInt(d);
-    if (null != r)
-      randomSeed = Integer.parseInt(r);
-    factory = new RandomFactory(randomSeed);
+    userR = new double[dimension];
+    itemR = new double[dimension];
+    sums = new double[dimension];
   }
 
+  @Override
   protected void reduce(
       LongWritable key,
       Iterable<MyTupleWritable> values,
-      Reducer<LongWritable, MyTupleWritable, Text, Text>.Context context)
+      Context context)
   throws java.io.IOException, InterruptedException {
-    
-    Vector column = new RandomAccessSparseVector(Integer.MAX_VALUE/2);
-    long itemID = -1;
+    long userID = key.get();
+    SemanticVectorFactory.fillRandomUser(userID, rnd, userR);
+    for(int dim = 0; dim < dimension; dim++)
+      sums[dim] = 0;
     int samples = 0;
     for (MyTupleWritable data : values) {
-      long userID = ((LongWritable) data.get(0)).get();
-      itemID = ((LongWritable) data.get(1)).get();
-      Float prefValue = ((FloatWritable) data.get(2)).get();
-      if (prefValue == 0.0)
-        prefValue = 0.0000001f;
-      column.set((int) userID, prefValue);
+      long itemID = ((LongWritable) data.get(1)).get();
+      float prefValue = ((FloatWritable) data.get(2)).get();
+      SemanticVectorFactory.fillRandomItem(itemID, rnd, itemR);
+      for(int dim = 0; dim < dimension; dim++) {
+        double position = userR[dim] + (itemR[dim] - userR[dim])/2 * prefValue;
+        position = Math.max(0.0000001, Math.min(0.99999999999, position));
+        sums[dim] += position;
+      }
       samples++;
     }
-    // how we get 0 samples I don't know.
-    // one sample is not enough
-    if (samples < 2)
+    if (samples == 0)
       return;
-    Vector item = new DenseVector(dimension);
-    for(int dim = 0; dim < dimension; dim++) {
-      int cardinality = 100000;
-      Vector random = new RandomVector(cardinality, factory.getRandom(cardinality, RandomFactory.Distribution.LINEAR));
-      Iterator<Element> sparse = column.iterateNonZero();
-      double userSum = 0;
-      double prefSum = 0;
-      while(sparse.hasNext()) {
-        Element e = sparse.next();
-        int index = e.index();
-        userSum += random.getQuick(index);
-        prefSum += e.get();
-      }
-      double value = ((userSum + (prefSum / samples)/2))/samples;
-      value = Math.min(0.9999999999, value);
-      item.setQuick(dim, value);
-    }
-    NamedVector namedItem = new NamedVector(item, Long.toString(itemID));
-   // write namedItem
-//    System.err.println(namedItem.getName() + item.toString());
+    double[] user = new double[dimension];
+    for(int dim = 0; dim < dimension; dim++)
+      user[dim] = sums[dim] / samples;
+    context.write(key, new VectorWritable(new DenseVector(user, true)));
   }
 
-  @Override
-  protected void cleanup(org.apache.hadoop.mapreduce.Reducer<LongWritable,MyTupleWritable,Text,Text>.Context context) throws IOException ,InterruptedException {
-  };
-
 }
 
 /*
@@ -8,6 +8,9 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import lsh.mahout.core.Hasher;
+import lsh.mahout.core.VertexTransitiveHasher;
+
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
@@ -92,6 +95,15 @@ public class CanopyTest {
     return canopies;
   }
 
+  // candidates limited to points sharing an LSH corner, grid size of t1
+  public static List<Canopy> makeHashCanopies(List<Vector> vectors, DistanceMeasure measure, double t1, double t2) {
+    int dimensions = vectors.get(0).size();
+    Hasher hasher = new VertexTransitiveHasher(dimensions, t1);
+    List<Canopy> canopies = HashCluster.createCanopies(
+        vectors, hasher, measure, t1, t2);
+    return canopies;
+  }
+
   public static SequenceFile.Reader getSequenceFileReader(String path) throws IOException {
     Configuration conf = new Configuration();
     FileSystem fs = FileSystem.get(conf);
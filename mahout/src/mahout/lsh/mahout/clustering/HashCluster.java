@@ -1,77 +1,118 @@
 /**
- * 
+ *
  */
 package lsh.mahout.clustering;
 
-import org.apache.mahout.clustering.AbstractCluster;
-import org.apache.mahout.clustering.Model;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import lsh.mahout.core.DenseHash;
+import lsh.mahout.core.Hasher;
+
+import org.apache.mahout.clustering.canopy.Canopy;
+import org.apache.mahout.common.distance.DistanceMeasure;
 import org.apache.mahout.math.Vector;
-import org.apache.mahout.math.VectorWritable;
 
 /**
- * 
+ * Canopy built from LSH buckets.
+ *
+ * Plain canopy clustering compares every point with every canopy center.
+ * Here every point is hashed to the D+1 corners of its simplex, and only
+ * points that share a corner with the center are candidates. Exact distance
+ * is checked only for those candidates, then the usual T1/T2 rules apply.
+ *
+ * The grid size of the Hasher should be near T1: points further apart than
+ * the grid rarely share a corner and are never compared.
+ *
+ * Output is a list of Canopy, so k-means can start from it exactly as from
+ * CanopyClusterer.createCanopies().
  */
-public class HashCluster extends AbstractCluster {
+public class HashCluster extends Canopy {
 
-  /**
-   * 
-   */
   public HashCluster() {
-    // TODO Auto-generated constructor stub
   }
 
-  /**
-   * @param point
-   * @param id
-   */
-  public HashCluster(Vector point, int id) {
-    super(point, id);
-    // TODO Auto-generated constructor stub
+  public HashCluster(Vector point, int id, DistanceMeasure measure) {
+    super(point, id, measure);
   }
 
   /**
-   * @param center
-   * @param radius
-   * @param id
+   * Same contract as CanopyClusterer.createCanopies(), with candidates
+   * limited to points that share an LSH corner.
+   *
+   * @param points the points to cluster
+   * @param hasher LSH projector, grid size near t1
+   * @param measure exact distance measure
+   * @param t1 points closer than t1 join the canopy
+   * @param t2 points closer than t2 cannot start or join later canopies
    */
-  public HashCluster(Vector center, Vector radius, int id) {
-    super(center, radius, id);
-    // TODO Auto-generated constructor stub
-  }
+  public static List<Canopy> createCanopies(List<Vector> points, Hasher hasher,
+      DistanceMeasure measure, double t1, double t2) {
+    int size = points.size();
+    // corner -> point indexes, keyed by the corner's unique sum as Hash.equals() is.
+    // A center's corners are hashed again when its canopy starts, rather than
+    // keeping D+1 corners of D values for every point.
+    Map<Long,List<Integer>> buckets = new HashMap<Long,List<Integer>>();
+    for(int i = 0; i < size; i++) {
+      for(long corner: getCorners(hasher, points.get(i))) {
+        List<Integer> bucket = buckets.get(corner);
+        if (null == bucket) {
+          bucket = new ArrayList<Integer>();
+          buckets.put(corner, bucket);
+        }
+        bucket.add(i);
+      }
+    }
 
-  /* (non-Javadoc)
-   * @see org.apache.mahout.clustering.AbstractCluster#getIdentifier()
-   */
-  @Override
-  public String getIdentifier() {
-    // TODO Auto-generated method stub
-    return null;
+    boolean[] removed = new boolean[size];
+    // last canopy which checked a point- a point can be in several buckets
+    int[] checked = new int[size];
+    List<Canopy> canopies = new ArrayList<Canopy>();
+    int nextCanopyId = 0;
+    for(int i = 0; i < size; i++) {
+      if (removed[i])
+        continue;
+      removed[i] = true;
+      Vector p1 = points.get(i);
+      Canopy canopy = new HashCluster(p1, nextCanopyId++, measure);
+      canopies.add(canopy);
+      for(long corner: getCorners(hasher, p1)) {
+        for(int j: buckets.get(corner)) {
+          if (removed[j] || checked[j] == nextCanopyId)
+            continue;
+          checked[j] = nextCanopyId;
+          Vector p2 = points.get(j);
+          double dist = measure.distance(p1, p2);
+          if (dist < t1)
+            canopy.observe(p2);
+          if (dist < t2)
+            removed[j] = true;
+        }
+      }
+    }
+    for(Canopy canopy: canopies) {
+      canopy.computeParameters();
+    }
+    return canopies;
   }
 
-  /* (non-Javadoc)
-   * @see org.apache.mahout.clustering.Model#pdf(java.lang.Object)
-   */
-  @Override
-  public double pdf(VectorWritable x) {
-    // TODO Auto-generated method stub
-    return 0;
-  }
-
-  /* (non-Javadoc)
-   * @see org.apache.mahout.clustering.Model#sampleFromPosterior()
-   */
-  @Override
-  public Model<VectorWritable> sampleFromPosterior() {
-    // TODO Auto-generated method stub
-    return null;
-  }
-
-  /**
-   * @param args
-   */
-  public static void main(String[] args) {
-    // TODO Auto-generated method stub
-
+  // D+1 corners of the simplex containing the point, as Hash unique sums
+  static long[] getCorners(Hasher hasher, Vector v) {
+    int dimensions = v.size();
+    double[] values = new double[dimensions];
+    for(int i = 0; i < dimensions; i++) {
+      values[i] = v.getQuick(i);
+    }
+    long[] corners = new long[dimensions + 1];
+    Iterator<int[]> it = hasher.iter(values);
+    int index = 0;
+    while(it.hasNext()) {
+      corners[index++] = new DenseHash(it.next()).getUniqueSum();
+    }
+    return corners;
   }
 
 }
@@ -90,6 +90,21 @@ public abstract class Hash {
     return value;
   }
   
+  /*
+   * Sum of getSingleHash() for every index that is not stored, when all of 
+   * them share one hash value. storedSum is the sum of (index + 1) over the
+   * stored indexes. Lets a sparse hash match a dense hash without walking
+   * all dimensions.
+   */
+  protected final long getSharedHash(int hash, long storedSum) {
+    if (hash == 0)
+      return 0;
+    long dimensions = getDimensions();
+    long val = ((long) hash) >> this.lod;
+    long value = val * ((dimensions * (dimensions + 1)) / 2 - storedSum) * dimensions;
+    return value;
+  }
+  
   protected final boolean contains(long sum, int index) {
     return false;
   }
@@ -28,6 +28,10 @@ public abstract class Hasher {
 	public abstract void hash(double[] values, int[] hashed);
 	// project from corner to point
 	public abstract void unhash(int[] hash, double[] p);
+	// project only the given (index, value) pairs, indexes ascending.
+	// Every coordinate not listed is zero, and all zeros project to the same
+	// grid value: that shared hash is returned instead of being written out.
+	public abstract int hashSparse(int[] indexes, double[] values, int[] hashed);
 	// iterate grid points
 	public Iterator<int[]> iter(double[] values) {
     List<int[]> nabes = proximity_hashes(values);
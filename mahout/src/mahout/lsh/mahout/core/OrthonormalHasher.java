@@ -48,6 +48,19 @@ public class OrthonormalHasher extends Hasher {
     }
   }
   
+  // floor(0 / stretch) is always 0, so zeros need no work at all
+  @Override
+  public int hashSparse(int[] indexes, double[] values, int[] hashed) {
+    for(int i = 0; i < indexes.length; i++) {
+      if (null != stretch) {
+        hashed[i] = (int) Math.floor(values[i] / stretch[indexes[i]]);
+      } else {
+        hashed[i] = (int) Math.floor(values[i]);
+      } 
+    }
+    return 0;
+  }
+  
   @Override
   public void unhash(int[] hash, double[] values) {
     for (int i = 0; i < hash.length; i++) {
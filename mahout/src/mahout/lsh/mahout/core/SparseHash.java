@@ -1,12 +1,11 @@
 package lsh.mahout.core;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
-import java.util.List;
 
 import org.apache.mahout.cf.taste.impl.common.FastByIDMap;
 import org.apache.mahout.cf.taste.impl.common.LongPrimitiveIterator;
+import org.apache.mahout.math.Vector;
 import org.apache.mahout.math.Vector.Element;
 
 /*
@@ -20,56 +19,79 @@ public class SparseHash extends Hash {
   // local array - THIS IS NOT SORTED!
   int[] sparseHashes;
   int dimensions;
+  // hash value of every index not in sparseHashKeys
+  int zeroHash = 0;
   
   public SparseHash(int[] hashes) { 
     this(hashes, 0);
   }
   
   public SparseHash(int[] hashes, int lod) {
-    setHashes(hashes);
     setLOD(lod);
+    setHashes(hashes);
   }
   
   public SparseHash(SparseHash sp, int lod) {
     this.sparseHashes = sp.sparseHashes;
     this.sparseHashKeys = sp.sparseHashKeys;
+    this.zeroHash = sp.zeroHash;
     setLOD(lod);
     this.dimensions = sp.dimensions;
     populateHashes();
   }
   
-  public SparseHash(Hasher hasher, Iterator<Element> el, int dimensions, int lod) {
-    setValues(hasher, el);
-    this.dimensions = dimensions;
+  /*
+   * Hash only the nonzero values of the vector.
+   * Cost scales with the number of nonzeros, not the dimensions.
+   * Equal to DenseHash of the same vector.
+   */
+  public SparseHash(Hasher hasher, Vector v, int lod) {
+    this.dimensions = v.size();
     setLOD(lod);
+    setValues(hasher, v);
   }
   
-  // is bullshit- VertexTransitive needs all of the hashed grid at once
-  private void setValues(Hasher hasher, Iterator<Element> el) {
-    sparseHashKeys = new FastByIDMap<Integer>();
-    List<Integer> keys = new ArrayList<Integer>(dimensions);
-    List<Integer> values = new ArrayList<Integer>(dimensions);
-    int nonZero = 0;
-    double[] d = new double[1];
-    int[] h = new int[1];
-    
+  // VertexTransitive needs all of the values at once, in index order
+  private void setValues(Hasher hasher, Vector v) {
+    int nonZero = v.getNumNondefaultElements();
+    int[] indexes = new int[nonZero];
+    double[] values = new double[nonZero];
+    Iterator<Element> el = v.iterateNonZero();
+    boolean sorted = true;
+    int count = 0;
     while(el.hasNext()) {
       Element e = el.next();
-      sparseHashKeys.put(e.index(), new Integer(nonZero));
-      keys.add(e.index());
-      d[0] = e.get();
-      hasher.hash(d, h);  
-      values.add(h[0]);
-      nonZero++;
+      if (count == indexes.length) {
+        indexes = Arrays.copyOf(indexes, count * 2 + 1);
+        values = Arrays.copyOf(values, count * 2 + 1);
+      }
+      indexes[count] = e.index();
+      values[count] = e.get();
+      if (count > 0 && indexes[count] < indexes[count - 1])
+        sorted = false;
+      count++;
     } 
+    if (count != indexes.length) {
+      indexes = Arrays.copyOf(indexes, count);
+      values = Arrays.copyOf(values, count);
+    }
+    if (! sorted) {
+      Arrays.sort(indexes);
+      for(int i = 0; i < count; i++) {
+        values[i] = v.getQuick(indexes[i]);
+      }
+    }
+    sparseHashes = new int[count];
+    zeroHash = hasher.hashSparse(indexes, values, sparseHashes);
+    sparseHashKeys = new FastByIDMap<Integer>(count);
     long sum = 0;
-    sparseHashes = new int[nonZero];
-    // TODO: this could be in the above loops
-    for(int index = 0; index < nonZero; index++) {
-      sparseHashes[index] = values.get(index);
-      long value = getSingleHash(keys.get(index), values.get(index));
-      sum += value;
+    long storedSum = 0;
+    for(int index = 0; index < count; index++) {
+      sparseHashKeys.put(indexes[index], index);
+      sum += getSingleHash(indexes[index], sparseHashes[index]);
+      storedSum += indexes[index] + 1;
     }
+    sum += getSharedHash(zeroHash, storedSum);
     super.setIndexes(sum);
   }
   
@@ -99,13 +121,15 @@ public class SparseHash extends Hash {
   protected void populateHashes() {
     LongPrimitiveIterator it = sparseHashKeys.keySetIterator();
     long sum = 0;
+    long storedSum = 0;
     while(it.hasNext()) {
       long index = it.nextLong();
       Integer nonZero = sparseHashKeys.get(index);
-      nonZero.hashCode();
       long value = getSingleHash((int) index, sparseHashes[(int) nonZero]);
       sum += value;
+      storedSum += index + 1;
     }
+    sum += getSharedHash(zeroHash, storedSum);
     super.setIndexes(sum);
   }
   
@@ -118,7 +142,7 @@ public class SparseHash extends Hash {
       int index = sparseHashKeys.get(nonZero);
       x += "(" + nonZero + "," + sparseHashes[index] + "),";
     }
-    return x + ": LOD=" + getLOD() + ",code=" + getUniqueSum() + "}";
+    return x + ": zero=" + zeroHash + ",LOD=" + getLOD() + ",code=" + getUniqueSum() + "}";
   }
   
   @Override
@@ -139,16 +163,18 @@ public class SparseHash extends Hash {
   
   @Override
   public Integer getValue(int index) {
+    if (index < 0 || index >= dimensions)
+      return null;
     Integer nonZero = sparseHashKeys.get(index);
     if (null == nonZero)
-      return null;
+      return zeroHash;
     int value = sparseHashes[nonZero];
     return value;
   }
   
   @Override
   public void setValue(int index, int hash) {
-    int oldHash = 0;
+    int oldHash = zeroHash;
     // Change existing value, or add new value.
     // Changing a value to 0 does not reclaim space
     // This is not thread-safe with iterators.
@@ -167,6 +193,13 @@ public class SparseHash extends Hash {
   }
   
   
+  /*
+   * Hash value shared by every index that is not stored.
+   */
+  public int getZeroHash() {
+    return zeroHash;
+  }
+  
   @Override
   public Iterator<Integer> iterator() {
     // TODO Auto-generated method stub
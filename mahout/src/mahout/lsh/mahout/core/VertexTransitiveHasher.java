@@ -63,6 +63,32 @@ public class VertexTransitiveHasher extends Hasher {
     }
   }
   
+  // The sum only needs the nonzero values, and a zero coordinate
+  // projects to just musum. Summing in index order keeps the
+  // floating point result identical to project().
+  @Override
+  public int hashSparse(int[] indexes, double[] values, int[] hashed) {
+    double sum = 0.0d;
+    for(int i = 0; i < indexes.length; i++) {
+      if (null != stretch) {
+        sum += values[i] / stretch[indexes[i]];
+      } else {
+        sum += values[i];
+      }
+    }
+    double musum = MU * sum;
+    for(int i = 0; i < indexes.length; i++) {
+      double gp;
+      if (null != stretch) {
+        gp = values[i] / stretch[indexes[i]];
+      } else {
+        gp = values[i];
+      }
+      hashed[i] = (int) (gp / S3 + musum);
+    }
+    return (int) musum;
+  }
+  
   // hashed space to input space
   @Override
   public void unhash(int[] hash, double[] values) {
@@ -1,17 +1,22 @@
 package lsh.mahout.io;
 
-import java.io.DataOutput;
-import java.io.DataOutputStream;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.FileReader;
+import java.io.FileInputStream;
+import java.io.FileWriter;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.io.InputStream;
 import java.io.PrintWriter;
-import java.io.Reader;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
@@ -19,42 +24,44 @@ import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.SequenceFile;
 import org.apache.mahout.math.DenseVector;
-import org.apache.mahout.math.Vector;
 import org.apache.mahout.math.VectorWritable;
-import org.apache.mahout.utils.vectors.io.SequenceFileVectorWriter;
-import org.apache.mahout.utils.vectors.io.VectorWriter;
 
 import lsh.core.Corner;
 import lsh.core.Hasher;
-import lsh.core.Lookup;
 import lsh.core.Point;
 import lsh.core.VertexTransitiveHasher;
 
 /*
  * Read LSH format and write as CSV or Mahout vector file.
- * 
+ *
  * Usage:
  * 	-u do user values    - default is item
  *  -n add 'name'        - ID value
  * 	-m do Mahout vectors - default CSV, no header
  *  -g                   - hasher gridsize if using VTHasher
+ *  -t threads           - default 1
+ *
+ * With -t N the input is cut into N byte ranges, parsed on N threads.
+ * Mahout output is then a directory of N SequenceFiles, part-00000...,
+ * written in parallel; CSV is still one file. Either way the records are
+ * the ones a single thread writes: duplicate ids are dropped as before,
+ * and keys run 0...n-1 in input order across the parts.
  */
 
 public class WriteVectors {
+  static final String CHARSET = "UTF-8";
 
   /**
    * @param args
-   * @throws Exception 
+   * @throws Exception
    */
   public static void main(String[] args) throws Exception {
-    boolean doUser = false;
-    boolean doItem = false;
     String payload = null;
     boolean doPoints = true;
-    boolean doName = false;
     int n = 0;
     boolean csv = true;
     double gridsize = 1.0;
+    int threads = 1;
 
     while(true) {
       if (args[n].equals("-c")) {
@@ -64,15 +71,12 @@ public class WriteVectors {
         doPoints = true;
         n++;
       } else if (args[n].equals("-i")) {
-        doItem = true;
         payload = "I";
         n++;
       } else if (args[n].equals("-u")) {
-        doUser = true;
         payload = "U";
         n++;
       } else if (args[n].equals("-n")) {
-        doName = true;
         n++;
       } else if (args[n].equals("-m")) {
         csv = false;
@@ -80,107 +84,232 @@ public class WriteVectors {
       } else if (args[n].equals("-g")) {
         gridsize = Double.parseDouble(args[n+1]);
         n += 2;
+      } else if (args[n].equals("-t")) {
+        threads = Integer.parseInt(args[n+1]);
+        n += 2;
       } else if (args[n].charAt(0) == '-') {
         throw new Exception("don't know options: " + args[n]);
       } else
         break;
     }
-    File input = new File(args[n]);
-    String outputFile = args[n+1];
-    File fOut = new File(outputFile);
-    fOut.delete();
-    Reader lshReader = new FileReader(input);
-    if (csv) {
-      fOut.delete();
-      OutputStream fOutStream = new FileOutputStream(fOut);
-      doCSV(doUser, doPoints, gridsize, new PrintWriter(fOut), lshReader, payload);
-      fOutStream.flush();
-      fOutStream.close();
+    convert(new File(args[n]), args[n+1], doPoints, csv, payload, gridsize, threads);
+  }
+
+  public static void convert(File input, String outputFile, boolean doPoints, boolean csv,
+      String payload, double gridsize, int threads) throws IOException {
+    if (threads < 1)
+      throw new IllegalArgumentException("WriteVectors: threads must be positive: " + threads);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<List<Object>> ranges = parse(input, threads, doPoints, payload, executor);
+      dropDuplicates(ranges);
+      if (csv) {
+        doCSV(ranges, gridsize, new File(outputFile), executor);
+      } else {
+        doMahout(ranges, gridsize, outputFile, executor);
+      }
+    } finally {
+      executor.shutdown();
     }
-    else {
-      doMahout(doUser, doPoints, gridsize, outputFile, lshReader, payload);
-    } 
   }
 
-  private static void doCSV(boolean doUser, boolean doPoints, double gridsize,
-      PrintWriter printWriter, Reader lshReader, String payload) throws IOException {
-    Lookup box = new Lookup(doPoints, !doPoints);
-    if (doPoints) {
-      box.loadPoints(lshReader, payload);
-      for(Point p: box.points) {
-        StringBuilder sb = new StringBuilder();
-        double[] values = p.values;
-        for(int i = 0; i < values.length; i++) {
-          sb.append(values[i]);
-          sb.append(',');
+  /*
+   * Points or Corners from each byte range, in input order.
+   * A line belongs to the range holding its first byte.
+   */
+  static List<List<Object>> parse(final File input, int count, final boolean doPoints, final String payload,
+      ExecutorService executor) throws IOException {
+    long length = input.length();
+    List<Callable<List<Object>>> tasks = new ArrayList<Callable<List<Object>>>(count);
+    for(int i = 0; i < count; i++) {
+      final long start = length * i / count;
+      final long end = length * (i + 1) / count;
+      tasks.add(new Callable<List<Object>>() {
+        public List<Object> call() throws IOException {
+          return parseRange(input, start, end, doPoints, payload);
         }
-        sb.setLength(sb.length() -1);
-        printWriter.println(sb.toString());
+      });
+    }
+    return runAll(executor, tasks);
+  }
+
+  // same parsing and payload test as Utils.load_point() and load_corner()
+  static List<Object> parseRange(File input, long start, long end, boolean doPoints, String payload) throws IOException {
+    List<Object> records = new ArrayList<Object>();
+    InputStream in = new BufferedInputStream(new FileInputStream(input));
+    try {
+      long pos = start;
+      if (start > 0) {
+        // the line that holds start-1 belongs to the previous range, unless it ends there
+        skipFully(in, start - 1);
+        if (in.read() != '\n')
+          pos += skipLine(in);
       }
-    } else {
-      box.loadCorners(lshReader, payload);
-      StringBuilder sb = new StringBuilder();
-
-      for(Corner c: box.corners) {
-        int dimensions = c.hashes.length;
-        double[] values = copyHashes(c, dimensions, gridsize);
-        sb.setLength(0);
-        for(int i = 0; i < dimensions; i++) {
-          sb.append(values[i]);
-          sb.append(',');
+      ByteArrayOutputStream line = new ByteArrayOutputStream();
+      while (pos < end) {
+        line.reset();
+        int b;
+        while ((b = in.read()) != -1 && b != '\n')
+          line.write(b);
+        if (b == -1 && line.size() == 0)
+          break;
+        pos += line.size() + 1;
+        String text = line.toString(CHARSET);
+        if (text.endsWith("\r"))
+          text = text.substring(0, text.length() - 1);
+        String[] parts = text.split("[ \t]");
+        if (doPoints) {
+          Point point = Point.newPoint(parts[0]);
+          if (null == payload || payload.equals(point.payload))
+            records.add(point);
+        } else {
+          Corner corner = Corner.newCorner(parts[0], parts.length > 1 ? parts[1] : null);
+          if (null == payload || payload.equals(corner.payload))
+            records.add(corner);
         }
-        sb.setLength(sb.length() -1);
-        printWriter.println(sb.toString());
       }
+    } finally {
+      in.close();
+    }
+    return records;
+  }
 
+  private static void skipFully(InputStream in, long n) throws IOException {
+    while (n > 0) {
+      long skipped = in.skip(n);
+      if (skipped <= 0) {
+        if (in.read() == -1)
+          return;
+        skipped = 1;
+      }
+      n -= skipped;
     }
+  }
 
+  // bytes up to and including the next newline
+  private static long skipLine(InputStream in) throws IOException {
+    long count = 0;
+    int b;
+    while ((b = in.read()) != -1) {
+      count++;
+      if (b == '\n')
+        break;
+    }
+    return count;
   }
 
-  private static void doMahout(boolean doUser, boolean doPoints,
-      double gridsize, String outFile, Reader lshReader, String payload) throws IOException {
-    Lookup box = new Lookup(doPoints, !doPoints);
-    VectorWriter vWriter = getSeqFileWriter(outFile);
-    if (doPoints) {
-      box.loadPoints(lshReader, payload);
-      List<Vector> one = new ArrayList<Vector>();
-      one.add(new DenseVector());
-      for(Point p: box.points) {
-        Vector v = new DenseVector(p.values);
-        one.set(0, v);
-        vWriter.write(one);
-      }
-      vWriter.close();
-    } else {
-      box.loadCorners(lshReader, payload);
-      List<Vector> one = new ArrayList<Vector>();
-      one.add(new DenseVector());
-      for(Corner c: box.corners) {
-        int dimensions = c.hashes.length;
-        double[] values = copyHashes(c, dimensions, gridsize);
-        Vector v = new DenseVector(values);
-        one.set(0, v);
-        vWriter.write(one);
+  /*
+   * Keep the first of equal Points or Corners, as loading into Lookup's sets does.
+   * One pass over the parsed records, cheap next to the parsing.
+   */
+  static void dropDuplicates(List<List<Object>> ranges) {
+    Set<Object> seen = new HashSet<Object>();
+    for(List<Object> range: ranges) {
+      int kept = 0;
+      for(Object record: range) {
+        if (seen.add(record))
+          range.set(kept++, record);
       }
-      vWriter.close();
+      range.subList(kept, range.size()).clear();
     }
   }
 
-  private static double[] copyHashes(Corner c, int dimensions, double gridsize) {
-    double[] values = new double[dimensions];
-    SimplexFactory hasher = new VertexTransitiveHasher(dimensions, gridsize);
-    hasher.unhashDense(c.hashes, values);
-    return values;
+  private static void doCSV(final List<List<Object>> ranges, final double gridsize, File fOut,
+      ExecutorService executor) throws IOException {
+    List<Callable<String>> tasks = new ArrayList<Callable<String>>(ranges.size());
+    for(final List<Object> range: ranges) {
+      tasks.add(new Callable<String>() {
+        public String call() {
+          StringBuilder sb = new StringBuilder();
+          Hasher hasher = null;
+          for(Object record: range) {
+            if (record instanceof Corner && null == hasher)
+              hasher = new VertexTransitiveHasher(((Corner) record).hashes.length, gridsize);
+            double[] values = getValues(record, hasher);
+            for(int i = 0; i < values.length; i++) {
+              sb.append(values[i]);
+              sb.append(',');
+            }
+            sb.setLength(sb.length() -1);
+            sb.append('\n');
+          }
+          return sb.toString();
+        }
+      });
+    }
+    List<String> texts = runAll(executor, tasks);
+    fOut.delete();
+    PrintWriter printWriter = new PrintWriter(new FileWriter(fOut));
+    for(String text: texts)
+      printWriter.print(text);
+    printWriter.close();
   }
 
-  private static VectorWriter getSeqFileWriter(String outFile) throws IOException {
-    Path path = new Path(outFile);
-    Configuration conf = new Configuration();
-    FileSystem fs = FileSystem.get(conf);
-    SequenceFile.Writer seqWriter = SequenceFile.createWriter(fs, conf, path, LongWritable.class,
-        VectorWritable.class);
-    return new SequenceFileVectorWriter(seqWriter);
+  private static void doMahout(final List<List<Object>> ranges, final double gridsize, String outFile,
+      ExecutorService executor) throws IOException {
+    final Configuration conf = new Configuration();
+    final FileSystem fs = FileSystem.get(conf);
+    Path out = new Path(outFile);
+    fs.delete(out, true);
+    List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>(ranges.size());
+    long first = 0;
+    for(int i = 0; i < ranges.size(); i++) {
+      final List<Object> range = ranges.get(i);
+      // a single part keeps the old layout: one file at outFile
+      final Path path = ranges.size() == 1 ? out : new Path(out, String.format("part-%05d", i));
+      final long firstKey = first;
+      first += range.size();
+      tasks.add(new Callable<Integer>() {
+        public Integer call() throws IOException {
+          SequenceFile.Writer writer = SequenceFile.createWriter(fs, conf, path, LongWritable.class, VectorWritable.class);
+          try {
+            LongWritable key = new LongWritable();
+            VectorWritable value = new VectorWritable();
+            Hasher hasher = null;
+            long recNum = firstKey;
+            for(Object record: range) {
+              if (record instanceof Corner && null == hasher)
+                hasher = new VertexTransitiveHasher(((Corner) record).hashes.length, gridsize);
+              key.set(recNum++);
+              value.set(new DenseVector(getValues(record, hasher), true));
+              writer.append(key, value);
+            }
+          } finally {
+            writer.close();
+          }
+          return range.size();
+        }
+      });
+    }
+    runAll(executor, tasks);
   }
 
+  private static double[] getValues(Object record, Hasher hasher) {
+    if (record instanceof Point)
+      return ((Point) record).values;
+    return copyHashes((Corner) record, hasher);
+  }
+
+  private static double[] copyHashes(Corner c, Hasher hasher) {
+    double[] values = new double[c.hashes.length];
+    hasher.unhash(c.hashes, values);
+    return values;
+  }
+
+  // results in task order
+  private static <T> List<T> runAll(ExecutorService executor, List<Callable<T>> tasks) throws IOException {
+    List<T> results = new ArrayList<T>(tasks.size());
+    try {
+      for(Future<T> future: executor.invokeAll(tasks))
+        results.add(future.get());
+    } catch (InterruptedException e) {
+      throw new IOException("WriteVectors: interrupted");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException)
+        throw (IOException) e.getCause();
+      throw new IOException("WriteVectors: " + e.getCause());
+    }
+    return results;
+  }
 
 }
@@ -76,6 +76,13 @@ public class DenseLSHQuantizer extends Quantizer<Vector> {
     return new UnhashIterator(hasher, nabes);
   }
 
+  /*
+   * The D+1 grid points of the simplex around v, as hashes.
+   */
+  public List<int[]> getNearestHashes(Vector v) {
+    return proximity_hashes(v);
+  }
+
   private List<int[]> proximity_hashes(Vector v) {
     int[] this_hash = getHash(v);
     List<int[]> hashes = new ArrayList<int[]>();
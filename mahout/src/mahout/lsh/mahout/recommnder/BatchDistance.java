@@ -0,0 +1,127 @@
+package lsh.mahout.recommnder;
+
+import java.util.Collection;
+
+/*
+ * Distance from one query point to a block of points.
+ * The block is a flat row-major double[]: point p starts at p * stride.
+ * Only the first 'dimensions' values of each row are used.
+ *
+ * Kernels return the raw sums- callers apply their own root and rescaling.
+ *
+ * Each row is summed into 4 independent accumulators so the JIT does not
+ * stall on one long chain of dependent adds, and can unroll and vectorize
+ * the subtract/abs. The sums are reassociated, so results can differ from
+ * the one-pair-at-a-time loops in the last few bits.
+ */
+
+public final class BatchDistance {
+
+  private BatchDistance() {
+  }
+
+  // pack points into a row-major block with the given stride
+  public static double[] pack(Collection<double[]> points, int stride) {
+    double[] block = new double[points.size() * stride];
+    int row = 0;
+    for(double[] values: points) {
+      System.arraycopy(values, 0, block, row, Math.min(stride, values.length));
+      row += stride;
+    }
+    return block;
+  }
+
+  // L1: sum of |q - p|
+  public static void manhattan(double[] query, double[] block, int count, int stride, int dimensions, double[] out) {
+    int tail = dimensions & ~3;
+    int row = 0;
+    for(int p = 0; p < count; p++) {
+      double s0 = 0;
+      double s1 = 0;
+      double s2 = 0;
+      double s3 = 0;
+      int i = 0;
+      for(; i < tail; i += 4) {
+        s0 += Math.abs(query[i] - block[row + i]);
+        s1 += Math.abs(query[i + 1] - block[row + i + 1]);
+        s2 += Math.abs(query[i + 2] - block[row + i + 2]);
+        s3 += Math.abs(query[i + 3] - block[row + i + 3]);
+      }
+      for(; i < dimensions; i++) {
+        s0 += Math.abs(query[i] - block[row + i]);
+      }
+      out[p] = (s0 + s1) + (s2 + s3);
+      row += stride;
+    }
+  }
+
+  // L2 without the root: sum of (q - p)^2
+  public static void euclidSquared(double[] query, double[] block, int count, int stride, int dimensions, double[] out) {
+    int tail = dimensions & ~3;
+    int row = 0;
+    for(int p = 0; p < count; p++) {
+      double s0 = 0;
+      double s1 = 0;
+      double s2 = 0;
+      double s3 = 0;
+      int i = 0;
+      for(; i < tail; i += 4) {
+        double d0 = query[i] - block[row + i];
+        double d1 = query[i + 1] - block[row + i + 1];
+        double d2 = query[i + 2] - block[row + i + 2];
+        double d3 = query[i + 3] - block[row + i + 3];
+        s0 += d0 * d0;
+        s1 += d1 * d1;
+        s2 += d2 * d2;
+        s3 += d3 * d3;
+      }
+      for(; i < dimensions; i++) {
+        double d = query[i] - block[row + i];
+        s0 += d * d;
+      }
+      out[p] = (s0 + s1) + (s2 + s3);
+      row += stride;
+    }
+  }
+
+  // Minkowski without the root: sum of |q - p|^power
+  // power 0.5 uses sqrt, which is much cheaper than Math.pow
+  public static void minkowski(double[] query, double[] block, int count, int stride, int dimensions, double power, double[] out) {
+    if (power == 1.0) {
+      manhattan(query, block, count, stride, dimensions, out);
+      return;
+    }
+    if (power == 2.0) {
+      euclidSquared(query, block, count, stride, dimensions, out);
+      return;
+    }
+    boolean half = (power == 0.5);
+    int tail = dimensions & ~1;
+    int row = 0;
+    for(int p = 0; p < count; p++) {
+      double s0 = 0;
+      double s1 = 0;
+      int i = 0;
+      if (half) {
+        for(; i < tail; i += 2) {
+          s0 += Math.sqrt(Math.abs(query[i] - block[row + i]));
+          s1 += Math.sqrt(Math.abs(query[i + 1] - block[row + i + 1]));
+        }
+        for(; i < dimensions; i++) {
+          s0 += Math.sqrt(Math.abs(query[i] - block[row + i]));
+        }
+      } else {
+        for(; i < tail; i += 2) {
+          s0 += Math.pow(Math.abs(query[i] - block[row + i]), power);
+          s1 += Math.pow(Math.abs(query[i + 1] - block[row + i + 1]), power);
+        }
+        for(; i < dimensions; i++) {
+          s0 += Math.pow(Math.abs(query[i] - block[row + i]), power);
+        }
+      }
+      out[p] = s0 + s1;
+      row += stride;
+    }
+  }
+
+}
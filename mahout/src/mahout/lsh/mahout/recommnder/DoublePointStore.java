@@ -0,0 +1,52 @@
+package lsh.mahout.recommnder;
+
+import java.util.List;
+
+/*
+ * Full precision PointStore over BatchDistance.
+ */
+
+public class DoublePointStore extends PointStore {
+  final double[] block;
+
+  DoublePointStore(List<double[]> points, int dimensions) {
+    super(points.size(), dimensions);
+    block = BatchDistance.pack(points, dimensions);
+  }
+
+  @Override
+  public void get(int row, double[] values) {
+    System.arraycopy(block, row * dimensions, values, 0, dimensions);
+  }
+
+  @Override
+  public void manhattan(double[] query, int dims, double[] out) {
+    BatchDistance.manhattan(query, block, count, dimensions, dims, out);
+  }
+
+  @Override
+  public double manhattan(int row, double[] query, int dims) {
+    int first = row * dimensions;
+    double sum = 0;
+    for(int i = 0; i < dims; i++) {
+      sum += Math.abs(query[i] - block[first + i]);
+    }
+    return sum;
+  }
+
+  @Override
+  public void euclidSquared(double[] query, int dims, double[] out) {
+    BatchDistance.euclidSquared(query, block, count, dimensions, dims, out);
+  }
+
+  @Override
+  public double getMaxError(int dim) {
+    return 0;
+  }
+
+  @Override
+  public long getHeapBytes() {
+    return 8L * block.length;
+  }
+
+}
@@ -0,0 +1,84 @@
+package lsh.mahout.recommnder;
+
+import java.util.List;
+
+/*
+ * PointStore with float coordinates: half the memory of doubles.
+ * Differences are taken in double, so only the stored values are rounded.
+ */
+
+public class FloatPointStore extends PointStore {
+  final float[] block;
+  // largest |value| per dimension, for the error bound
+  final double[] magnitude;
+
+  FloatPointStore(List<double[]> points, int dimensions) {
+    super(points.size(), dimensions);
+    block = new float[count * dimensions];
+    magnitude = new double[dimensions];
+    int row = 0;
+    for(double[] values: points) {
+      for(int d = 0; d < dimensions; d++) {
+        block[row + d] = (float) values[d];
+        magnitude[d] = Math.max(magnitude[d], Math.abs(values[d]));
+      }
+      row += dimensions;
+    }
+  }
+
+  @Override
+  public void get(int row, double[] values) {
+    int base = row * dimensions;
+    for(int d = 0; d < dimensions; d++)
+      values[d] = block[base + d];
+  }
+
+  @Override
+  public void manhattan(double[] query, int dims, double[] out) {
+    int row = 0;
+    for(int p = 0; p < count; p++) {
+      double sum = 0;
+      for(int i = 0; i < dims; i++) {
+        sum += Math.abs(query[i] - block[row + i]);
+      }
+      out[p] = sum;
+      row += dimensions;
+    }
+  }
+
+  @Override
+  public double manhattan(int row, double[] query, int dims) {
+    int first = row * dimensions;
+    double sum = 0;
+    for(int i = 0; i < dims; i++) {
+      sum += Math.abs(query[i] - block[first + i]);
+    }
+    return sum;
+  }
+
+  @Override
+  public void euclidSquared(double[] query, int dims, double[] out) {
+    int row = 0;
+    for(int p = 0; p < count; p++) {
+      double sum = 0;
+      for(int i = 0; i < dims; i++) {
+        double diff = query[i] - block[row + i];
+        sum += diff * diff;
+      }
+      out[p] = sum;
+      row += dimensions;
+    }
+  }
+
+  // rounding to float is within half an ulp of the largest value
+  @Override
+  public double getMaxError(int dim) {
+    return Math.ulp((float) magnitude[dim]) / 2;
+  }
+
+  @Override
+  public long getHeapBytes() {
+    return 4L * block.length;
+  }
+
+}
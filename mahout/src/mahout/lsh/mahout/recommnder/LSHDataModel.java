@@ -9,14 +9,12 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Map.Entry;
 
 import org.apache.mahout.cf.taste.common.NoSuchUserException;
 import org.apache.mahout.cf.taste.common.Refreshable;
 import org.apache.mahout.cf.taste.common.TasteException;
 import org.apache.mahout.cf.taste.impl.common.FastIDSet;
+import org.apache.mahout.cf.taste.impl.common.LongPrimitiveArrayIterator;
 import org.apache.mahout.cf.taste.impl.common.LongPrimitiveIterator;
 import org.apache.mahout.cf.taste.model.PreferenceArray;
 import org.apache.mahout.cf.taste.similarity.ItemSimilarity;
@@ -41,8 +39,12 @@ public class LSHDataModel extends AbstractDataModel implements ItemSimilarity {
   int fullDimensions;
   int dimensions;
   final DistanceMeasure measure;
-  Map<Long,Vector> users = new HashMap<Long, Vector>();
-  Map<Long,Vector> items = new HashMap<Long, Vector>();
+  // vectors in sortedUserIDs and sortedItemIDs order
+  final PointStore users;
+  final PointStore items;
+  // sorted, for the primitive ID iterators
+  long[] sortedUserIDs;
+  long[] sortedItemIDs;
   // debug
   public double total = 0;
   public int count = 0;
@@ -55,6 +57,14 @@ public class LSHDataModel extends AbstractDataModel implements ItemSimilarity {
   }
 
   public LSHDataModel(File pointsFile, DistanceMeasure measure) {
+    this(pointsFile, measure, PointStore.Precision.DOUBLE);
+  }
+
+  /*
+   * FLOAT or FIXED16 trade a bounded distance error
+   * for a half or a quarter of the memory.
+   */
+  public LSHDataModel(File pointsFile, DistanceMeasure measure, PointStore.Precision precision) {
     // raw text corner-first LSH of users
     final Lookup userDB;
     //  // raw text corner-first LSH of items
@@ -80,25 +90,49 @@ public class LSHDataModel extends AbstractDataModel implements ItemSimilarity {
     dimensions = fullDimensions;
     rescale  = Math.pow(dimensions, 1/FRACTION_L);
 
-    // TODO: clear points arrays on the way
-    for(Point p: userDB.points) {
-      users.put(Long.parseLong(p.id), new DenseVector(p.values));
+    sortedUserIDs = sortedIDs(userDB.points);
+    sortedItemIDs = sortedIDs(itemDB.points);
+    users = PointStore.newStore(userDB.points, sortedUserIDs, fullDimensions, precision);
+    items = PointStore.newStore(itemDB.points, sortedItemIDs, fullDimensions, precision);
+  }
+
+  // a repeated ID keeps one row, as the old ID maps did
+  static long[] sortedIDs(Collection<Point> points) {
+    long[] sorted = new long[points.size()];
+    int i = 0;
+    for(Point p: points) {
+      sorted[i++] = Long.parseLong(p.id);
+    }
+    Arrays.sort(sorted);
+    int unique = 0;
+    for(i = 0; i < sorted.length; i++) {
+      if (unique == 0 || sorted[i] != sorted[unique - 1])
+        sorted[unique++] = sorted[i];
     }
-    for(Point p: itemDB.points) {
-      items.put(Long.parseLong(p.id), new DenseVector(p.values));
+    return (unique == sorted.length) ? sorted : Arrays.copyOf(sorted, unique);
+  }
+
+  // Lookup ids are decimal strings
+  static long[] parseSortedIDs(Collection<String> ids) {
+    long[] sorted = new long[ids.size()];
+    int i = 0;
+    for(String id: ids) {
+      sorted[i++] = Long.parseLong(id);
     }
+    Arrays.sort(sorted);
+    return sorted;
   }
 
   @Override
   public LongPrimitiveIterator getItemIDs() throws TasteException {
-    return new LPIL(items.keySet().iterator());
+    return new LongPrimitiveArrayIterator(sortedItemIDs);
   }
 
   @Override
   public FastIDSet getItemIDsFromUser(long userID) throws TasteException {
     int nitems = getNumItems();
     FastIDSet fids = new FastIDSet(nitems);
-    for(Long itemID: items.keySet()) {
+    for(long itemID: sortedItemIDs) {
       fids.add(itemID);
     }
     return fids;
@@ -106,12 +140,12 @@ public class LSHDataModel extends AbstractDataModel implements ItemSimilarity {
 
   @Override
   public int getNumItems() throws TasteException {
-    return items.size();
+    return sortedItemIDs.length;
   }
 
   @Override
   public int getNumUsers() throws TasteException {
-    return users.size();
+    return sortedUserIDs.length;
   }
 
   @Override
@@ -129,13 +163,21 @@ public class LSHDataModel extends AbstractDataModel implements ItemSimilarity {
   @Override
   public Float getPreferenceValue(long userID, long itemID)
   throws TasteException {
-    return getPreferenceValuePoint(users.get(userID), items.get(itemID));
+    return getPreferenceValuePoint(users, Arrays.binarySearch(sortedUserIDs, userID),
+        items, Arrays.binarySearch(sortedItemIDs, itemID));
   }
 
-  private Float getPreferenceValuePoint(Vector v1, Vector v2) {
-    if (null == v1 || null == v2) {
+  private Float getPreferenceValuePoint(PointStore store1, int row1, PointStore store2, int row2) {
+    if (row1 < 0 || row2 < 0) {
       return DEFAULT_PREF;
     }
+    // decoded per call: the model is shared by recommender threads
+    double[] values1 = new double[fullDimensions];
+    double[] values2 = new double[fullDimensions];
+    store1.get(row1, values1);
+    store2.get(row2, values2);
+    Vector v1 = new DenseVector(values1, true);
+    Vector v2 = new DenseVector(values2, true);
     double distance = measure.distance(v1, v2) / rescale;
     total += distance;
     count++;
@@ -160,18 +202,15 @@ public class LSHDataModel extends AbstractDataModel implements ItemSimilarity {
 
   private PreferenceArray getPreferencesFromUserPoint(long userID)
   throws NoSuchUserException {
-    int prefIndex = 0;
-    Vector v = users.get(userID);
-    if (null == v)
+    int user = Arrays.binarySearch(sortedUserIDs, userID);
+    if (user < 0)
       return new GenericUserPreferenceArray(0);
-    PreferenceArray prefs = new GenericUserPreferenceArray(items.size());
-    for(Entry<Long, Vector> itemEntry: items.entrySet()) {
-      Long itemID = itemEntry.getKey();
-      float rating = (float) getPreferenceValuePoint(users.get(userID), items.get(itemID));
+    PreferenceArray prefs = new GenericUserPreferenceArray(sortedItemIDs.length);
+    for(int prefIndex = 0; prefIndex < sortedItemIDs.length; prefIndex++) {
+      float rating = (float) getPreferenceValuePoint(users, user, items, prefIndex);
       prefs.setUserID(prefIndex, userID);
-      prefs.setItemID(prefIndex, itemID);
+      prefs.setItemID(prefIndex, sortedItemIDs[prefIndex]);
       prefs.setValue(prefIndex, rating);
-      prefIndex++;
     }
     return prefs;
   }
@@ -191,7 +230,7 @@ public class LSHDataModel extends AbstractDataModel implements ItemSimilarity {
 
   @Override
   public LongPrimitiveIterator getUserIDs() throws TasteException {
-    return new LPIL(users.keySet().iterator());
+    return new LongPrimitiveArrayIterator(sortedUserIDs);
   }
 
   @Override
@@ -224,8 +263,9 @@ public class LSHDataModel extends AbstractDataModel implements ItemSimilarity {
   public double[] itemSimilarities(long itemID1, long[] itemID2s)
       throws TasteException {
     double[] prefs = new double[itemID2s.length];
+    int item1 = Arrays.binarySearch(sortedItemIDs, itemID1);
     for(int i = 0; i < itemID2s.length; i++) {
-      float distance = getPreferenceValuePoint(items.get(itemID1), items.get(itemID2s[i]));
+      float distance = getPreferenceValuePoint(items, item1, items, Arrays.binarySearch(sortedItemIDs, itemID2s[i]));
       prefs[i] = (double) distance;
     }
     return prefs;
@@ -234,7 +274,8 @@ public class LSHDataModel extends AbstractDataModel implements ItemSimilarity {
   @Override
   public double itemSimilarity(long itemID1, long itemID2)
       throws TasteException {
-    float distance = getPreferenceValuePoint(items.get(itemID1), items.get(itemID2));
+    float distance = getPreferenceValuePoint(items, Arrays.binarySearch(sortedItemIDs, itemID1),
+        items, Arrays.binarySearch(sortedItemIDs, itemID2));
     return (double) distance;
   }
 
@@ -254,7 +295,7 @@ public class LSHDataModel extends AbstractDataModel implements ItemSimilarity {
    * @throws TasteException 
    */
   public static void main(String[] args) throws IOException, TasteException {
-    VectorDataModel model = new VectorDataModel(args[0], new ManhattanDistanceMeasure());
+    LSHDataModel model = new LSHDataModel(args[0], new ManhattanDistanceMeasure());
     model.hashCode();
     System.out.println("pow: " + Math.pow(200, 0.5));
     System.out.println("Items");
@@ -264,10 +305,10 @@ public class LSHDataModel extends AbstractDataModel implements ItemSimilarity {
     dodistances(model);
   }
 
-  static void dodistances(VectorDataModel model) throws TasteException {
+  static void dodistances(LSHDataModel model) throws TasteException {
     Float min= 10000f, max = 0f;
-    for(Long userID: model.users.keySet()) {
-      for(Long itemID: model.items.keySet()) {
+    for(long userID: model.sortedUserIDs) {
+      for(long itemID: model.sortedItemIDs) {
         Float f = model.getPreferenceValue(userID, itemID);
         if (min > f)
           min = f;
@@ -286,15 +327,17 @@ public class LSHDataModel extends AbstractDataModel implements ItemSimilarity {
     System.out.println("range:   " + (max - min));
   }
 
-  static void doscan(Map<Long, Vector> vectors, int dimensions) {
+  static void doscan(PointStore vectors, int dimensions) {
     double min = 100000;
     double max = -100000;
     double sum = 0;
-    for(Vector v: vectors.values()) {
+    double[] v = new double[vectors.getDimensions()];
+    for(int row = 0; row < vectors.size(); row++) {
+      vectors.get(row, v);
       for(int i = 0; i < dimensions;i++) {
-        min = Math.min(v.get(i), min);
-        max = Math.max(v.get(i), max);
-        sum += v.get(i);
+        min = Math.min(v[i], min);
+        max = Math.max(v[i], max);
+        sum += v[i];
       }
     }
     System.out.println("min: " + min + ", max: " + max + ", mean: " + sum / (vectors.size() * dimensions));
@@ -0,0 +1,236 @@
+package lsh.mahout.recommnder;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lsh.core.Corner;
+import lsh.core.CornerFilter;
+
+import org.apache.mahout.cf.taste.impl.common.FastByIDMap;
+import org.apache.mahout.cf.taste.impl.common.FastIDSet;
+import org.apache.mahout.cf.taste.impl.common.LongPrimitiveIterator;
+
+/*
+ * Immutable copy of the LSH corners behind LSHTextDataModel, for serving.
+ *
+ * Nothing here is written after the constructor, so any number of threads
+ * can read one snapshot without locks. Changes make a new snapshot:
+ * withUser() shares the item side and only copies the user table.
+ *
+ * itemVersion changes only when the item side changes, so caches of
+ * per-user candidates can tell an item reload from a user move.
+ */
+
+public final class LSHSnapshot {
+  private static final long[] NO_ITEMS = new long[0];
+  private static final AtomicLong versions = new AtomicLong();
+  // user ID -> corner
+  private final FastByIDMap<int[]> userCorners;
+  // item ID -> corner
+  private final FastByIDMap<int[]> itemCorners;
+  // corner -> item IDs
+  private final Map<Corner,long[]> cornerItems;
+  // occupied item corners, asked before each cornerItems lookup
+  private final CornerFilter filter;
+  private final long itemVersion;
+  // same rating parameters as LSHTextDataModel
+  private final double varianceManhattan;
+  private final double scale;
+  private final double offset;
+
+  public LSHSnapshot(FastByIDMap<int[]> userCorners, FastByIDMap<int[]> itemCorners,
+      Map<Corner,long[]> cornerItems, double varianceManhattan, double scale, double offset) {
+    this(userCorners, itemCorners, cornerItems, CornerFilter.build(cornerItems.keySet()),
+        versions.incrementAndGet(), varianceManhattan, scale, offset);
+  }
+
+  private LSHSnapshot(FastByIDMap<int[]> userCorners, FastByIDMap<int[]> itemCorners,
+      Map<Corner,long[]> cornerItems, CornerFilter filter, long itemVersion,
+      double varianceManhattan, double scale, double offset) {
+    this.userCorners = userCorners;
+    this.itemCorners = itemCorners;
+    this.cornerItems = cornerItems;
+    this.filter = filter;
+    this.itemVersion = itemVersion;
+    this.varianceManhattan = varianceManhattan;
+    this.scale = scale;
+    this.offset = offset;
+  }
+
+  /*
+   * Copy the model's string-keyed tables into long-keyed ones.
+   */
+  public static LSHSnapshot fromModel(LSHTextDataModel model) {
+    FastByIDMap<int[]> users = new FastByIDMap<int[]>(model.userDB.id2corner.size());
+    for(Map.Entry<String,Corner> entry: model.userDB.id2corner.entrySet()) {
+      users.put(Long.parseLong(entry.getKey()), entry.getValue().hashes.clone());
+    }
+    FastByIDMap<int[]> items = new FastByIDMap<int[]>(model.itemDB.id2corner.size());
+    for(Map.Entry<String,Corner> entry: model.itemDB.id2corner.entrySet()) {
+      items.put(Long.parseLong(entry.getKey()), entry.getValue().hashes.clone());
+    }
+    Map<Corner,long[]> corners = new HashMap<Corner,long[]>(model.itemDB.corner2ids.size());
+    for(Map.Entry<Corner,Set<String>> entry: model.itemDB.corner2ids.entrySet()) {
+      long[] ids = new long[entry.getValue().size()];
+      int i = 0;
+      for(String id: entry.getValue()) {
+        ids[i++] = Long.parseLong(id);
+      }
+      // corners are looked up by hashes only
+      corners.put(new Corner(entry.getKey().hashes.clone()), ids);
+    }
+    return new LSHSnapshot(users, items, corners, model.varianceManhattan, model.scale, model.offset);
+  }
+
+  /*
+   * New snapshot with one user moved to a new corner. Items are shared.
+   */
+  public LSHSnapshot withUser(long userID, int[] corner) {
+    FastByIDMap<int[]> users = new FastByIDMap<int[]>(userCorners.size() + 1);
+    LongPrimitiveIterator it = userCorners.keySetIterator();
+    while(it.hasNext()) {
+      long id = it.nextLong();
+      users.put(id, userCorners.get(id));
+    }
+    users.put(userID, corner.clone());
+    return new LSHSnapshot(users, itemCorners, cornerItems, filter, itemVersion, varianceManhattan, scale, offset);
+  }
+
+  public int[] getUserCorner(long userID) {
+    return userCorners.get(userID);
+  }
+
+  public int[] getItemCorner(long itemID) {
+    return itemCorners.get(itemID);
+  }
+
+  public long getItemVersion() {
+    return itemVersion;
+  }
+
+  public int getNumUsers() {
+    return userCorners.size();
+  }
+
+  public LongPrimitiveIterator getUserIDs() {
+    return userCorners.keySetIterator();
+  }
+
+  public float estimate(long userID, long itemID) {
+    int[] user = userCorners.get(userID);
+    int[] item = itemCorners.get(itemID);
+    if (null == user || null == item)
+      return Float.NaN;
+    double mean = LSHTextDataModel.averageCornerDistance(user, item, varianceManhattan);
+    return (float) distance2rating(mean);
+  }
+
+  /*
+   * All items in the user's corner and the D neighboring corners,
+   * best rating first. Same corners as LSHRecommender's cluster walk.
+   */
+  public Candidates getCandidates(long userID) {
+    int[] main = userCorners.get(userID);
+    if (null == main)
+      return null;
+    int[] corner = main.clone();
+    FastIDSet seen = new FastIDSet();
+    long[] ids = new long[16];
+    float[] ratings = new float[16];
+    int count = 0;
+    for(int step = 0; step <= corner.length; step++) {
+      if (step > 0)
+        corner[step - 1]++;
+      if (! filter.mightContain(corner))
+        continue;
+      long[] items = cornerItems.get(new Corner(corner));
+      if (null == items)
+        continue;
+      float rating = (float) distance2rating(manhattan(main, corner));
+      for(long id: items) {
+        if (! seen.add(id))
+          continue;
+        if (count == ids.length) {
+          ids = Arrays.copyOf(ids, count * 2);
+          ratings = Arrays.copyOf(ratings, count * 2);
+        }
+        ids[count] = id;
+        ratings[count] = rating;
+        count++;
+      }
+    }
+    sortByRatingReversed(ids, ratings, count);
+    return new Candidates(main, itemVersion, count == 0 ? NO_ITEMS : Arrays.copyOf(ids, count),
+        Arrays.copyOf(ratings, count));
+  }
+
+  // corners are stepped in order, so ratings only fall- insertion sort is cheap
+  private static void sortByRatingReversed(long[] ids, float[] ratings, int count) {
+    for(int i = 1; i < count; i++) {
+      long id = ids[i];
+      float rating = ratings[i];
+      int j = i - 1;
+      while(j >= 0 && ratings[j] < rating) {
+        ids[j + 1] = ids[j];
+        ratings[j + 1] = ratings[j];
+        j--;
+      }
+      ids[j + 1] = id;
+      ratings[j + 1] = rating;
+    }
+  }
+
+  private double manhattan(int[] a, int[] b) {
+    double sum = 0;
+    for(int i = 0; i < a.length; i++) {
+      sum += Math.abs(a[i] - b[i]);
+    }
+    return (sum < 0.0000001) ? 0 : sum * varianceManhattan;
+  }
+
+  private double distance2rating(double d) {
+    if (d < 0)
+      d = 0.0;
+    if (d > 1)
+      d = 1.0;
+    return (1-d) * scale + offset;
+  }
+
+  /*
+   * Immutable candidate list for one user, and the corner it came from.
+   */
+  public static final class Candidates {
+    final int[] corner;
+    final long itemVersion;
+    final long[] itemIDs;
+    final float[] ratings;
+
+    Candidates(int[] corner, long itemVersion, long[] itemIDs, float[] ratings) {
+      this.corner = corner;
+      this.itemVersion = itemVersion;
+      this.itemIDs = itemIDs;
+      this.ratings = ratings;
+    }
+
+    // still valid for this corner and item set?
+    boolean isValid(int[] userCorner, long version) {
+      return itemVersion == version && (corner == userCorner || Arrays.equals(corner, userCorner));
+    }
+
+    public int size() {
+      return itemIDs.length;
+    }
+
+    public long getItemID(int i) {
+      return itemIDs[i];
+    }
+
+    public float getRating(int i) {
+      return ratings[i];
+    }
+  }
+
+}
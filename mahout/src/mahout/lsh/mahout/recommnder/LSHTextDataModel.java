@@ -11,14 +11,18 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
 import org.apache.mahout.cf.taste.common.NoSuchUserException;
 import org.apache.mahout.cf.taste.common.Refreshable;
 import org.apache.mahout.cf.taste.common.TasteException;
 import org.apache.mahout.cf.taste.impl.common.FastIDSet;
+import org.apache.mahout.cf.taste.impl.common.LongPrimitiveArrayIterator;
 import org.apache.mahout.cf.taste.impl.common.LongPrimitiveIterator;
+import org.apache.mahout.cf.taste.impl.model.GenericUserPreferenceArray;
 import org.apache.mahout.cf.taste.model.PreferenceArray;
 
 /*
@@ -46,6 +50,9 @@ public class LSHTextDataModel extends AbstractDataModel {
   final double scale = 4;
   final double offset = 1;
   final boolean earlyBinding = false;
+  // sorted, for the primitive ID iterators
+  final long[] sortedUserIDs;
+  final long[] sortedItemIDs;
 
   public LSHTextDataModel(String cornersFile, CornerGen cg) throws IOException {
     //		this.hasher = hasher;
@@ -56,6 +63,9 @@ public class LSHTextDataModel extends AbstractDataModel {
     f = new FileReader(new File(cornersFile));
     Utils.load_corner_points_format(f, "I", itemDB, "U", userDB);
     f.close();
+    itemDB.buildFilter();
+    sortedUserIDs = LSHDataModel.parseSortedIDs(userDB.id2corner.keySet());
+    sortedItemIDs = LSHDataModel.parseSortedIDs(itemDB.id2corner.keySet());
     int dimension = cg.stretch.length;
     double[] zero = new double[dimension];
     for(int i = 0; i < zero.length; i++)
@@ -75,7 +85,7 @@ public class LSHTextDataModel extends AbstractDataModel {
 
   @Override
   public LongPrimitiveIterator getItemIDs() throws TasteException {
-    return new LPIS(itemDB.id2corner.keySet().iterator());
+    return new LongPrimitiveArrayIterator(sortedItemIDs);
   }
 
   @Override
@@ -119,16 +129,30 @@ public class LSHTextDataModel extends AbstractDataModel {
   private Float getPreferenceAverageCorner(long userID, long itemID) {
     Corner user = userDB.id2corner.get(userID + "");
     Corner item = itemDB.id2corner.get(itemID + "");
-    Set<Corner> all = cg.getHashSet(item.hashes.clone());
-    double sum = 0;
-    for(Corner c: all) {
-      double distance = manhattan(user.hashes, c.hashes);
-      sum += distance;
-    }
-    double mean = sum / all.size();
+    double mean = averageCornerDistance(user.hashes, item.hashes, varianceManhattan);
     return (float) distance2rating(mean);
   }
 
+  /*
+   * Mean of manhattan() from the user to the D+1 corners around the item.
+   * Corner k is the item corner with dimensions 0..k-1 stepped up by one,
+   * the same set CornerGen.getHashSet(int[]) builds. Stepping one dimension
+   * changes one term of the sum, so the corners are walked in place
+   * without building a Set of them.
+   */
+  public static double averageCornerDistance(int[] user, int[] item, double varianceManhattan) {
+    long sum = 0;
+    for(int i = 0; i < item.length; i++) {
+      sum += Math.abs(user[i] - item[i]);
+    }
+    double total = (sum == 0) ? 0 : sum * varianceManhattan;
+    for(int i = 0; i < item.length; i++) {
+      sum += Math.abs(user[i] - item[i] - 1) - Math.abs(user[i] - item[i]);
+      total += (sum == 0) ? 0 : sum * varianceManhattan;
+    }
+    return total / (item.length + 1);
+  }
+
   // early binding: all corners exist for each item.
   private Float getPreferenceValueCorner(long userID, long itemID)
   throws TasteException {
@@ -159,29 +183,38 @@ public class LSHTextDataModel extends AbstractDataModel {
     throw new UnsupportedOperationException();
   }
 
-  // late binding- have to fabricate all neighboring oorners
+  /*
+   * late binding- have to fabricate all neighboring corners.
+   * Corner k is the user's corner with dimensions 0..k-1 stepped up by one,
+   * as in averageCornerDistance(). The corner is stepped in place and
+   * the item filter is asked before making a Corner to look up.
+   */
   private PreferenceArray enumeratePreferencesFromUserCorner(long userID)
   throws NoSuchUserException {
     Corner main = userDB.id2corner.get((userID) + "");
-    Set<Corner> all = cg.getHashSet(main.hashes.clone());
+    int[] corner = main.hashes.clone();
+    List<Set<String>> found = new ArrayList<Set<String>>(corner.length + 1);
+    float[] ratings = new float[corner.length + 1];
     int count = 0;
-    for(Corner c: all) {
-      Set<String> items = itemDB.corner2ids.get(c);
+    for(int step = 0; step <= corner.length; step++) {
+      if (step > 0)
+        corner[step - 1]++;
+      if (! itemDB.mayHaveCorner(corner))
+        continue;
+      Set<String> items = itemDB.corner2ids.get(new Corner(corner));
       if (null != items) {
+        ratings[found.size()] = (float) distance2rating(manhattan(main.hashes, corner));
+        found.add(items);
         count += items.size();
       }
     }
     int prefIndex = 0;
     PreferenceArray prefs = new GenericUserPreferenceArray(count);
-    for(Corner c: all) {
-      Set<String> items = itemDB.corner2ids.get(c);
-      if (null != items) {
-        float dist = (float) distance2rating(manhattan(main.hashes, c.hashes));
-        for(String itemID: items) {
-          prefs.setUserID(prefIndex, userID);
-          prefs.setItemID(prefIndex, Long.parseLong(itemID));
-          prefs.setValue(prefIndex, dist);
-        }
+    for(int i = 0; i < found.size(); i++) {
+      for(String itemID: found.get(i)) {
+        prefs.setUserID(prefIndex, userID);
+        prefs.setItemID(prefIndex, Long.parseLong(itemID));
+        prefs.setValue(prefIndex, ratings[i]);
         prefIndex++;
       }
     }
@@ -226,7 +259,7 @@ public class LSHTextDataModel extends AbstractDataModel {
 
   @Override
   public LongPrimitiveIterator getUserIDs() throws TasteException {
-    return new LPIS(userDB.id2corner.keySet().iterator());
+    return new LongPrimitiveArrayIterator(sortedUserIDs);
   }
 
   @Override
@@ -0,0 +1,84 @@
+package lsh.mahout.recommnder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import lsh.core.Point;
+
+/*
+ * Compact row-major storage for a block of points.
+ *
+ * DOUBLE keeps full doubles (8 bytes per value).
+ * FLOAT keeps floats (4 bytes), about 7 significant digits.
+ * FIXED16 keeps 16-bit codes (2 bytes) over each dimension's [min, max];
+ *   each value is off by at most half a step, (max - min)/65535/2.
+ *
+ * Distance kernels read the compact form directly; rows are never expanded
+ * back to double[]. Like BatchDistance they return raw sums- callers apply
+ * their own root and rescaling.
+ */
+
+public abstract class PointStore {
+  public enum Precision {DOUBLE, FLOAT, FIXED16};
+
+  final int count;
+  final int dimensions;
+
+  PointStore(int count, int dimensions) {
+    this.count = count;
+    this.dimensions = dimensions;
+  }
+
+  public static PointStore newStore(List<double[]> points, int dimensions, Precision precision) {
+    switch (precision) {
+    case FLOAT:
+      return new FloatPointStore(points, dimensions);
+    case FIXED16:
+      return new FixedPointStore(points, dimensions);
+    default:
+      return new DoublePointStore(points, dimensions);
+    }
+  }
+
+  /*
+   * Points in the order of their numeric IDs, so row i belongs to sortedIDs[i]
+   * and Arrays.binarySearch(sortedIDs, id) finds a point's row. Once this
+   * returns, the caller can let go of the Points and their double[] values.
+   */
+  public static PointStore newStore(Collection<Point> points, long[] sortedIDs, int dimensions, Precision precision) {
+    List<double[]> rows = new ArrayList<double[]>(Arrays.asList(new double[sortedIDs.length][]));
+    for(Point point: points) {
+      rows.set(Arrays.binarySearch(sortedIDs, Long.parseLong(point.id)), point.values);
+    }
+    return newStore(rows, dimensions, precision);
+  }
+
+  public int size() {
+    return count;
+  }
+
+  public int getDimensions() {
+    return dimensions;
+  }
+
+  // copy one point out, as stored
+  public abstract void get(int row, double[] values);
+
+  // L1 sums from query to every point, over the first 'dims' dimensions
+  public abstract void manhattan(double[] query, int dims, double[] out);
+
+  // L1 sum from query to one point
+  public abstract double manhattan(int row, double[] query, int dims);
+
+  // L2 sums without the root
+  public abstract void euclidSquared(double[] query, int dims, double[] out);
+
+  // largest error of one stored value in this dimension
+  public abstract double getMaxError(int dim);
+
+  // bytes held by the coordinate arrays
+  public abstract long getHeapBytes();
+
+}
@@ -8,15 +8,19 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
 import org.apache.mahout.cf.taste.common.NoSuchUserException;
 import org.apache.mahout.cf.taste.common.Refreshable;
 import org.apache.mahout.cf.taste.common.TasteException;
 import org.apache.mahout.cf.taste.impl.common.FastIDSet;
+import org.apache.mahout.cf.taste.impl.common.LongPrimitiveArrayIterator;
 import org.apache.mahout.cf.taste.impl.common.LongPrimitiveIterator;
 import org.apache.mahout.cf.taste.impl.recommender.GenericRecommendedItem;
 import org.apache.mahout.cf.taste.model.Preference;
@@ -30,10 +34,10 @@ import org.apache.mahout.cf.taste.recommender.RecommendedItem;
 public class PointTextDataModel extends AbstractDataModel {
   // Use L(0.5) instead of L1 (Manhattan) or L2 (Euclidean)
   // L(0.5) seems to give a saddle for 200-300 dimension saddle
-  private final double FRACTION_L = 0.5;
+  private static final double FRACTION_L = 0.5;
   // raw text corner-first LSH of users
   final Lookup userDB;
-  // raw text corner-first LSH of items
+  // raw text corner-first LSH of items; its Points are dropped once packed
   final Lookup itemDB;
   int dimensions;
   final double scale = 1;
@@ -43,13 +47,26 @@ public class PointTextDataModel extends AbstractDataModel {
   public int clamped = 0;
 
   public long[] buckets = new long[10];
+  // sorted, for the primitive ID iterators
+  private final long[] sortedUserIDs;
+  private final long[] sortedItemIDs;
   private double rescale = Double.NaN;
+  // item vectors, in sortedItemIDs order
+  private final PointStore itemStore;
 
   public PointTextDataModel(String pointsPath) throws IOException {
     this(new File(pointsPath));
   }
 
   public PointTextDataModel(File pointsFile) {
+    this(pointsFile, PointStore.Precision.DOUBLE);
+  }
+
+  /*
+   * Item storage: FLOAT or FIXED16 trade a bounded distance error
+   * for a half or a quarter of the memory.
+   */
+  public PointTextDataModel(File pointsFile, PointStore.Precision precision) {
     userDB = new Lookup(null, true, false, true, true, false, false, false, false);
     itemDB = new Lookup(null, true, false, true, true, false, false, false, false);
     try {
@@ -68,11 +85,17 @@ public class PointTextDataModel extends AbstractDataModel {
     }
     dimensions = userDB.getDimensions();
     rescale  = Math.pow(dimensions, 1/FRACTION_L);
+    sortedUserIDs = LSHDataModel.parseSortedIDs(userDB.ids);
+    sortedItemIDs = LSHDataModel.parseSortedIDs(itemDB.ids);
+    itemStore = PointStore.newStore(itemDB.id2point.values(), sortedItemIDs, itemDB.getDimensions(), precision);
+    // the store holds the only copy of the item values
+    itemDB.points.clear();
+    itemDB.id2point.clear();
   }
 
   @Override
   public LongPrimitiveIterator getItemIDs() throws TasteException {
-    return new LPIS(itemDB.ids.iterator());
+    return new LongPrimitiveArrayIterator(sortedItemIDs);
   }
 
   @Override
@@ -115,10 +138,11 @@ public class PointTextDataModel extends AbstractDataModel {
 
   private Float getPreferenceValuePoint(long userID, long itemID) {
     Point userP = userDB.id2point.get((userID) + "");
-    Point itemP = itemDB.id2point.get((itemID) + "");
-    if (null == userP || null == itemP)
+    int item = Arrays.binarySearch(sortedItemIDs, itemID);
+    if (null == userP || item < 0)
       return 0.5f;
-    double distance = fractionalD(itemP.values, userP.values);
+    // same as fractionalD()
+    double distance = rankToDistance(itemStore.manhattan(item, userP.values, dimensions));
     total += distance;
     count++;
     //		System.err.println(userID +"," + itemID + "," + distance);
@@ -142,24 +166,61 @@ public class PointTextDataModel extends AbstractDataModel {
 
   private PreferenceArray getPreferencesFromUserPoint(long userID)
   throws NoSuchUserException {
-    int prefIndex = 0;
     Point up = userDB.id2point.get((userID) + "");
     if (null == up)
       return new GenericUserPreferenceArray(0);
-    PreferenceArray prefs = new GenericUserPreferenceArray(itemDB.ids.size());
-    for(String item: itemDB.ids) {
-      Point ip = itemDB.id2point.get(item);
-      double distance = fractionalD(up.values, ip.values);
+    // same as fractionalD(), one user against all items at once
+    double[] sums = new double[sortedItemIDs.length];
+    itemStore.manhattan(up.values, dimensions, sums);
+    PreferenceArray prefs = new GenericUserPreferenceArray(sortedItemIDs.length);
+    for(int prefIndex = 0; prefIndex < sortedItemIDs.length; prefIndex++) {
+      double distance = Math.pow(sums[prefIndex], 1/FRACTION_L) / rescale;
       total += distance;
       float rating = (float) distance2rating(distance);
       prefs.setUserID(prefIndex, userID);
-      prefs.setItemID(prefIndex, Long.parseLong(item));
+      prefs.setItemID(prefIndex, sortedItemIDs[prefIndex]);
       prefs.setValue(prefIndex, rating);
-      prefIndex++;
     }
     return prefs;
   }
 
+  public PointStore getItemStore() {
+    return itemStore;
+  }
+
+  /*
+   * The howMany items nearest the user by fractionalD(), nearest first,
+   * valued as getPreferenceValue() would.
+   * Items are ranked on the rank-only sums; only the winners get the root.
+   */
+  public List<RecommendedItem> getNearestItems(long userID, int howMany) {
+    Point up = userDB.id2point.get((userID) + "");
+    if (null == up || howMany < 1)
+      return Collections.emptyList();
+    double[] sums = new double[sortedItemIDs.length];
+    itemStore.manhattan(up.values, dimensions, sums);
+    // insertion into a sorted top list; howMany is small
+    int[] top = new int[Math.min(howMany, sums.length)];
+    int size = 0;
+    for(int i = 0; i < sums.length; i++) {
+      double sum = sums[i];
+      if (size == top.length && sum >= sums[top[size - 1]])
+        continue;
+      int j = (size < top.length) ? size++ : size - 1;
+      while (j > 0 && sums[top[j - 1]] > sum) {
+        top[j] = top[j - 1];
+        j--;
+      }
+      top[j] = i;
+    }
+    List<RecommendedItem> nearest = new ArrayList<RecommendedItem>(size);
+    for(int i = 0; i < size; i++) {
+      float rating = (float) distance2rating(rankToDistance(sums[top[i]]));
+      nearest.add(new GenericRecommendedItem(sortedItemIDs[top[i]], rating));
+    }
+    return nearest;
+  }
+
   // L<1 distance
   public double minkowskiD(double[] a, double[] b) {
     double sum = 0;
@@ -172,6 +233,36 @@ public class PointTextDataModel extends AbstractDataModel {
 //    return r;
   }
 
+  /*
+   * Rank-only versions of minkowskiD() and fractionalD(): the same order,
+   * without the root and the rescale. rankToDistance() finishes the job
+   * for the few that are kept.
+   */
+  public double minkowskiRank(double[] a, double[] b) {
+    double sum = 0;
+    for(int i = 0; i < dimensions; i++) {
+      sum += power(Math.abs(a[i] - b[i]));
+    }
+    return sum;
+  }
+
+  public double fractionalRank(double[] a, double[] b) {
+    double sum = 0;
+    for(int i = 0; i < dimensions; i++) {
+      sum += Math.abs(a[i] - b[i]);
+    }
+    return sum;
+  }
+
+  public double rankToDistance(double rank) {
+    return Math.pow(rank, 1/FRACTION_L) / rescale;
+  }
+
+  // x^FRACTION_L; at 0.5 that is sqrt, a single exact instruction
+  private static double power(double x) {
+    return (FRACTION_L == 0.5) ? Math.sqrt(x) : Math.pow(x, FRACTION_L);
+  }
+
   // L<1 distance w/o powers - bogus Minkowski
   public double fractionalD(double[] a, double[] b) {
     double sum = 0;
@@ -220,7 +311,7 @@ public class PointTextDataModel extends AbstractDataModel {
 
   @Override
   public LongPrimitiveIterator getUserIDs() throws TasteException {
-    return new LPIS(userDB.ids.iterator());
+    return new LongPrimitiveArrayIterator(sortedUserIDs);
   }
 
   @Override
@@ -269,7 +360,7 @@ public class PointTextDataModel extends AbstractDataModel {
     double pow =  Math.pow(100, 0.5);
     System.out.println("pow: " + Math.pow(200, 0.5));
     System.out.println("Items");
-    doscan(model.itemDB, model.dimensions);
+    doscan(model.itemStore, model.dimensions);
     System.out.println("Users");
     doscan(model.userDB, model.dimensions);
     dodistances(model);
@@ -315,4 +406,20 @@ public class PointTextDataModel extends AbstractDataModel {
 
   }
 
+  static void doscan(PointStore points, int dimensions) {
+    double min = 100000;
+    double max = -100000;
+    double sum = 0;
+    double[] values = new double[points.getDimensions()];
+    for(int row = 0; row < points.size(); row++) {
+      points.get(row, values);
+      for(int i = 0; i < dimensions;i++) {
+        min = Math.min(values[i], min);
+        max = Math.max(values[i], max);
+        sum += values[i];
+      }
+    }
+    System.out.println("min: " + min + ", max: " + max + ", mean: " + sum / (points.size() * dimensions));
+  }
+
 }
@@ -0,0 +1,158 @@
+package lsh.mahout.recommnder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.mahout.cf.taste.common.Refreshable;
+import org.apache.mahout.cf.taste.common.TasteException;
+import org.apache.mahout.cf.taste.impl.recommender.GenericRecommendedItem;
+import org.apache.mahout.cf.taste.model.DataModel;
+import org.apache.mahout.cf.taste.recommender.IDRescorer;
+import org.apache.mahout.cf.taste.recommender.RecommendedItem;
+import org.apache.mahout.cf.taste.recommender.Recommender;
+
+/*
+ * Serving version of LSHRecommender: safe for concurrent requests.
+ *
+ * Reads go to an immutable LSHSnapshot held in a volatile field.
+ * Updates build a new snapshot and swap it in; requests in flight
+ * finish on the old one. Writers lock the recommender, so a reload
+ * is not lost under a concurrent moveUser().
+ *
+ * Per-user candidate lists are kept in a fixed-size direct-mapped cache.
+ * A slot holds one immutable entry and is read and written with plain
+ * atomic gets and sets- there are no locks on the read path. Two users
+ * that map to the same slot just evict each other.
+ * An entry remembers the corner and item set it was built from, and is
+ * rebuilt when the user's corner has moved or the items were reloaded.
+ */
+
+public class ServingLSHRecommender implements Recommender {
+  static final List<RecommendedItem> NORECS = Collections.emptyList();
+  private final DataModel model;
+  private volatile LSHSnapshot snapshot;
+  private final AtomicReferenceArray<CacheEntry> cache;
+  private final int mask;
+
+  public ServingLSHRecommender(LSHTextDataModel model, int cacheSize) {
+    this(model, LSHSnapshot.fromModel(model), cacheSize);
+  }
+
+  public ServingLSHRecommender(DataModel model, LSHSnapshot snapshot, int cacheSize) {
+    this.model = model;
+    this.snapshot = snapshot;
+    int size = 1;
+    while (size < cacheSize)
+      size <<= 1;
+    this.cache = new AtomicReferenceArray<CacheEntry>(size);
+    this.mask = size - 1;
+  }
+
+  public LSHSnapshot getSnapshot() {
+    return snapshot;
+  }
+
+  // publish a new model. Stale cache entries are caught on the next read.
+  public synchronized void setSnapshot(LSHSnapshot snapshot) {
+    this.snapshot = snapshot;
+  }
+
+  // move one user to a new corner
+  public synchronized void moveUser(long userID, int[] corner) {
+    snapshot = snapshot.withUser(userID, corner);
+  }
+
+  @Override
+  public float estimatePreference(long userID, long itemID)
+  throws TasteException {
+    return snapshot.estimate(userID, itemID);
+  }
+
+  @Override
+  public DataModel getDataModel() {
+    return model;
+  }
+
+  @Override
+  public List<RecommendedItem> recommend(long userID, int howMany)
+  throws TasteException {
+    return recommend(userID, howMany, null);
+  }
+
+  @Override
+  public List<RecommendedItem> recommend(long userID, int howMany,
+      IDRescorer rescorer) throws TasteException {
+    LSHSnapshot snap = snapshot;
+    LSHSnapshot.Candidates candidates = getCandidates(snap, userID);
+    if (null == candidates)
+      return NORECS;
+    List<RecommendedItem> recs = new ArrayList<RecommendedItem>(Math.min(howMany, candidates.size()));
+    for(int i = 0; i < candidates.size() && recs.size() < howMany; i++) {
+      long itemID = candidates.getItemID(i);
+      if (null != rescorer && rescorer.isFiltered(itemID))
+        continue;
+      float rating = candidates.getRating(i);
+      if (null != rescorer)
+        rating = (float) rescorer.rescore(itemID, rating);
+      recs.add(new GenericRecommendedItem(itemID, rating));
+    }
+    return recs;
+  }
+
+  LSHSnapshot.Candidates getCandidates(LSHSnapshot snap, long userID) {
+    int[] corner = snap.getUserCorner(userID);
+    if (null == corner)
+      return null;
+    int slot = slot(userID);
+    CacheEntry entry = cache.get(slot);
+    if (null != entry && entry.userID == userID && entry.candidates.isValid(corner, snap.getItemVersion()))
+      return entry.candidates;
+    LSHSnapshot.Candidates candidates = snap.getCandidates(userID);
+    cache.set(slot, new CacheEntry(userID, candidates));
+    return candidates;
+  }
+
+  // drop one user's candidates
+  public void invalidate(long userID) {
+    int slot = slot(userID);
+    CacheEntry entry = cache.get(slot);
+    if (null != entry && entry.userID == userID)
+      cache.compareAndSet(slot, entry, null);
+  }
+
+  private int slot(long userID) {
+    long h = userID * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32)) & mask;
+  }
+
+  @Override
+  public void removePreference(long userID, long itemID)
+  throws TasteException {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void setPreference(long userID, long itemID, float value)
+  throws TasteException {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void refresh(Collection<Refreshable> alreadyRefreshed) {
+    throw new UnsupportedOperationException();
+  }
+
+  static final class CacheEntry {
+    final long userID;
+    final LSHSnapshot.Candidates candidates;
+
+    CacheEntry(long userID, LSHSnapshot.Candidates candidates) {
+      this.userID = userID;
+      this.candidates = candidates;
+    }
+  }
+
+}
@@ -1,6 +1,12 @@
 
 package org.apache.mahout.math.simplex;
 
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.apache.mahout.math.Vector;
+import org.apache.mahout.math.Vector.Element;
+
 /*
  * Quantize an N-dimensional vector using either rectangles or triangles
  * 
@@ -16,4 +22,46 @@ public abstract class Hasher {
 	public abstract void hashDense(double[] values, int[] hashed, Double factor);
 	// project from lower corner back to point
 	public abstract void unhashDense(int[] hash, double[] p, Double factor);
+	// hash of a zero value- the same for every zero coordinate in a vector
+	public abstract int hashZero(Double factor);
+	
+	/*
+	 * Sparse vectors: project only the nonzero values into a sparse Simplex.
+	 * Every other coordinate has the shared zero hash, so the cost is in the nonzeros, not the dimensions.
+	 * Nonzeros are hashed in index order so that the factor matches getFactor() on the dense values.
+	 */
+	public <T> Simplex<T> hashSparse(Vector v, T label) {
+	  int nonZero = v.getNumNondefaultElements();
+	  int[] indexes = new int[nonZero];
+	  double[] values = new double[nonZero];
+	  Iterator<Element> el = v.iterateNonZero();
+	  boolean sorted = true;
+	  int count = 0;
+	  while(el.hasNext()) {
+	    Element e = el.next();
+	    if (count == indexes.length) {
+	      indexes = Arrays.copyOf(indexes, count * 2 + 1);
+	      values = Arrays.copyOf(values, count * 2 + 1);
+	    }
+	    indexes[count] = e.index();
+	    values[count] = e.get();
+	    if (count > 0 && indexes[count] < indexes[count - 1])
+	      sorted = false;
+	    count++;
+	  }
+	  if (count != indexes.length) {
+	    indexes = Arrays.copyOf(indexes, count);
+	    values = Arrays.copyOf(values, count);
+	  }
+	  if (! sorted) {
+	    Arrays.sort(indexes);
+	    for(int i = 0; i < count; i++) {
+	      values[i] = v.getQuick(indexes[i]);
+	    }
+	  }
+	  Double factor = getFactor(values);
+	  int[] hashed = new int[count];
+	  hashDense(values, hashed, factor);
+	  return new Simplex<T>(v.size(), indexes, hashed, hashZero(factor), factor, label);
+	}
 }
@@ -28,6 +28,11 @@ public class OrthonormalHasher extends Hasher {
     }
   }
   
+  @Override
+  public int hashZero(Double factor) {
+    return 0;
+  }
+  
   @Override
   public void unhashDense(int[] hash, double[] values, Double factor) {
     for (int i = 0; i < hash.length; i++) {
@@ -8,7 +8,8 @@ import org.apache.commons.collections.iterators.ArrayIterator;
 
 /*
  * Hashed values, stored in hash space.
- * Dense only
+ * Dense, or sparse: the hashes of the nonzero values only, with one shared
+ * hash for every other coordinate (see Hasher.hashSparse()).
  * No knowledge of Vectors. Simple data structure.
  * 
  * Contains the base hash, and optionally the list of neighbor simplexes.
@@ -20,8 +21,12 @@ import org.apache.commons.collections.iterators.ArrayIterator;
 
 public class Simplex<T> {
   final T label;
+  // dense: every hash. sparse: the hashes at 'indexes'
   public final int[] base;
   public final boolean[] neighbors;
+  // sparse only: sorted indexes of stored hashes; all others are zeroHash
+  final int[] indexes;
+  final int zeroHash;
   public final int dimensions;
   final Double factor;
   
@@ -31,6 +36,8 @@ public class Simplex<T> {
     neighbors = hasNeighbors ? new boolean[dimensions] : null;
     this.label = label;
     this.factor = factor;
+    indexes = null;
+    zeroHash = 0;
   }
   
   public Simplex(int[] hash, boolean[] neighbors, Double factor, T label) {
@@ -39,6 +46,38 @@ public class Simplex<T> {
     this.neighbors = neighbors;
     this.label = label;
     this.factor = factor;
+    indexes = null;
+    zeroHash = 0;
+  }
+  
+  /*
+   * Sparse, with no neighbors. Hashes equal to zeroHash are dropped,
+   * so equal hashes give equal sparse simplexes.
+   */
+  public Simplex(int dimensions, int[] indexes, int[] hash, int zeroHash, Double factor, T label) {
+    int count = 0;
+    for(int i = 0; i < hash.length; i++) {
+      if (hash[i] != zeroHash)
+        count++;
+    }
+    this.indexes = new int[count];
+    this.base = new int[count];
+    count = 0;
+    for(int i = 0; i < hash.length; i++) {
+      if (hash[i] != zeroHash) {
+        this.indexes[count] = indexes[i];
+        this.base[count++] = hash[i];
+      }
+    }
+    this.dimensions = dimensions;
+    this.zeroHash = zeroHash;
+    this.neighbors = null;
+    this.label = label;
+    this.factor = factor;
+  }
+  
+  public boolean isSparse() {
+    return indexes != null;
   }
   
   public boolean hasNeighbors() {
@@ -57,11 +96,23 @@ public class Simplex<T> {
     return nabe;
   }
 
+  // a sparse simplex makes the dense array
   public int[] getValues() {
-    return this.base;
+    if (! isSparse())
+      return this.base;
+    int[] values = new int[dimensions];
+    Arrays.fill(values, zeroHash);
+    for(int i = 0; i < indexes.length; i++) {
+      values[indexes[i]] = base[i];
+    }
+    return values;
   }
   
   public int getValue(int index) {
+    if (isSparse()) {
+      int i = Arrays.binarySearch(indexes, index);
+      return i < 0 ? zeroHash : base[i];
+    }
     // null exception? why, yes!
     return base[index];
   }
@@ -84,7 +135,7 @@ public class Simplex<T> {
 
   @SuppressWarnings("unchecked")
   public Iterator<Integer> iterateValues() {
-     ArrayIterator ait = new ArrayIterator(base);
+     ArrayIterator ait = new ArrayIterator(getValues());
     // magic! I did not know this was possible!
     return (Iterator<Integer>) ait;
   }
@@ -94,7 +145,7 @@ public class Simplex<T> {
   @Override
   public int hashCode() {
     return Arrays.hashCode(base) ^ (dimensions * 17) ^ (neighbors != null ? Arrays.hashCode(neighbors) : 0xffffffff)
-      ^ (label != null ? label.hashCode() : 0x77777777);
+      ^ (label != null ? label.hashCode() : 0x77777777) ^ (isSparse() ? Arrays.hashCode(indexes) * 31 + zeroHash : 0);
   }
   
   @Override
@@ -109,6 +160,8 @@ public class Simplex<T> {
       return false;
     if (! Arrays.equals(neighbors, other.neighbors))
       return false;
+    if (! Arrays.equals(indexes, other.indexes) || zeroHash != other.zeroHash)
+      return false;
     return dimensions == other.dimensions;
   }
    
@@ -59,29 +59,17 @@ public class SimplexSpace<T> {
   }
   
   public Simplex<T> newSimplex(Vector v, T label) {
+    if (! v.isDense()) {
+      // only the nonzero values are projected and stored, zeros share one hash
+      return hasher.hashSparse(v, label);
+    }
     int[] hashes = new int[v.size()];
-//    if (v.isDense()) {
-      double[] values = new double[v.size()];
-      boolean[] neighbors = new boolean[v.size()];
-      getValues(v, values);
-      Double factor = hasher.getFactor(values);
-      hasher.hashDense(values, hashes, factor);
-      return new Simplex<T>(hashes, neighbors, factor, label);
-//    } 
-/*    else {
-      // this only works with Orthonormal
-      // vertextransitive has be changed to read all, then give each dimension
-      double[] d = new double[1];
-      int[] h = new int[1];
-      Iterator<Element> el = v.iterateNonZero();
-      while(el.hasNext()) {
-        Element e = el.next();
-        d[0] = e.get();
-        hasher.hashDense(d, h);
-        hashes[e.index()] = h[0];
-      }
-      return new Simplex(hashes);
-    }*/
+    boolean[] neighbors = new boolean[v.size()];
+    double[] values = new double[v.size()];
+    getValues(v, values);
+    Double factor = hasher.getFactor(values);
+    hasher.hashDense(values, hashes, factor);
+    return new Simplex<T>(hashes, neighbors, factor, label);
   }
 
   public Iterator<T> getKeyIterator() {
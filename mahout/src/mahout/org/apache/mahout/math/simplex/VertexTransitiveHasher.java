@@ -30,6 +30,16 @@ public class VertexTransitiveHasher extends Hasher {
     }
   }
   
+  // a zero value projects to just musum
+  @Override
+  public int hashZero(Double factor) {
+    double projected = MU * factor;
+    int hashed = (int) projected;
+    if (projected < 0)
+      hashed--;
+    return hashed;
+  }
+  
   // input space to hashed space
   protected void project(double[] values, double[] gp, double factor) {
     double musum = MU * factor;
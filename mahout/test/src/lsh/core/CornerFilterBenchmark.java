@@ -0,0 +1,76 @@
+package lsh.core;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/*
+ * Probe cost of the D+1 corner walk with and without CornerFilter.
+ * Points are sparse in a high-dimensional grid, so most probes miss.
+ * Reports the hit rate, the filter's false positive rate and the speedup.
+ */
+
+public class CornerFilterBenchmark {
+  static int DIMENSIONS = 30;
+  static int POINTS = 50000;
+  static int QUERIES = 20000;
+  static long sink = 0;
+
+  public static void main(String[] args) {
+    if (args.length > 0)
+      DIMENSIONS = Integer.parseInt(args[0]);
+    Random rnd = new Random(0);
+    Map<Corner,long[]> corners = new HashMap<Corner,long[]>();
+    for(int i = 0; i < POINTS; i++)
+      corners.put(new Corner(randomCorner(rnd)), new long[]{i});
+    CornerFilter filter = CornerFilter.build(corners.keySet());
+    int[][] queries = new int[QUERIES][];
+    for(int i = 0; i < QUERIES; i++)
+      queries[i] = randomCorner(rnd);
+    System.out.println("dimensions=" + DIMENSIONS + ", corners=" + corners.size() + ", filter=" + filter.getBytes() + " bytes");
+
+    for(int pass = 0; pass < 3; pass++) {
+      long start = System.nanoTime();
+      long hits = probe(queries, corners, null);
+      long plain = System.nanoTime() - start;
+      start = System.nanoTime();
+      long filtered = probe(queries, corners, filter);
+      long withFilter = System.nanoTime() - start;
+      long probes = (long) QUERIES * (DIMENSIONS + 1);
+      System.out.println(String.format("pass %d: hit rate %.4f, lookups after filter %.4f, map only %dms, with filter %dms, speedup %.2fx",
+          pass, hits / (double) probes, filtered / (double) probes, plain / 1000000, withFilter / 1000000, plain / (double) withFilter));
+    }
+  }
+
+  // returns number of HashMap lookups made
+  static long probe(int[][] queries, Map<Corner,long[]> corners, CornerFilter filter) {
+    long lookups = 0;
+    for(int[] query: queries) {
+      int[] corner = query.clone();
+      for(int step = 0; step <= corner.length; step++) {
+        if (step > 0)
+          corner[step - 1]++;
+        if (null != filter && ! filter.mightContain(corner))
+          continue;
+        if (null != filter)
+          lookups++;
+        long[] items = corners.get(new Corner(corner));
+        if (null != items) {
+          sink += items.length;
+          if (null == filter)
+            lookups++;
+        }
+      }
+    }
+    return lookups;
+  }
+
+  // clustered near the origin, so walks from one corner reach others
+  static int[] randomCorner(Random rnd) {
+    int[] corner = new int[DIMENSIONS];
+    for(int i = 0; i < DIMENSIONS; i++)
+      corner[i] = (int) Math.round(rnd.nextGaussian() * 0.3);
+    return corner;
+  }
+
+}
@@ -0,0 +1,89 @@
+package lsh.core;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class TestCornerFilter extends Assert {
+  static final int DIMENSIONS = 20;
+
+  @Test
+  public void testNoFalseNegatives() {
+    Random rnd = new Random(0);
+    Set<Corner> corners = new HashSet<Corner>();
+    while (corners.size() < 10000)
+      corners.add(new Corner(randomHashes(rnd)));
+    CornerFilter filter = CornerFilter.build(corners);
+    assertEquals(10000, filter.size());
+    for(Corner c: corners)
+      assertTrue(filter.mightContain(c.hashes));
+    // about 10 bits per corner
+    assertTrue(filter.getBytes() <= 10000 * 20 / 8);
+  }
+
+  @Test
+  public void testFalsePositives() {
+    Random rnd = new Random(1);
+    Set<Corner> corners = new HashSet<Corner>();
+    while (corners.size() < 10000)
+      corners.add(new Corner(randomHashes(rnd)));
+    CornerFilter filter = CornerFilter.build(corners);
+    int probes = 0;
+    int wrong = 0;
+    while (probes < 100000) {
+      int[] hashes = randomHashes(rnd);
+      if (corners.contains(new Corner(hashes)))
+        continue;
+      probes++;
+      if (filter.mightContain(hashes))
+        wrong++;
+    }
+    assertTrue("false positive rate " + wrong / (double) probes, wrong < probes * 0.03);
+  }
+
+  @Test
+  public void testNeighborCorners() {
+    // the D+1 walk only changes one dimension per step: still no misses
+    Random rnd = new Random(2);
+    CornerFilter filter = new CornerFilter(1000);
+    int[][] stored = new int[1000][];
+    for(int i = 0; i < stored.length; i++) {
+      stored[i] = randomHashes(rnd);
+      filter.add(stored[i]);
+      int[] step = stored[i].clone();
+      step[0]++;
+      filter.add(step);
+    }
+    for(int i = 0; i < stored.length; i++) {
+      int[] step = stored[i].clone();
+      assertTrue(filter.mightContain(step));
+      step[0]++;
+      assertTrue(filter.mightContain(step));
+    }
+  }
+
+  @Test
+  public void testLookup() {
+    Lookup lookup = new Lookup(null, false, false, false, false, false, true, false, false);
+    lookup.corner2ids.put(new Corner(new int[]{1, 2}), new HashSet<String>());
+    lookup.corner2ids.put(new Corner(new int[]{3, 4}), new HashSet<String>());
+    // without a filter every corner may be there
+    assertTrue(lookup.mayHaveCorner(new int[]{9, 9}));
+    lookup.buildFilter();
+    assertNotNull(lookup.filter);
+    assertTrue(lookup.mayHaveCorner(new int[]{1, 2}));
+    assertTrue(lookup.mayHaveCorner(new int[]{3, 4}));
+    assertEquals(2, lookup.filter.size());
+  }
+
+  static int[] randomHashes(Random rnd) {
+    int[] hashes = new int[DIMENSIONS];
+    for(int i = 0; i < hashes.length; i++)
+      hashes[i] = rnd.nextInt(7) - 3;
+    return hashes;
+  }
+
+}
@@ -0,0 +1,77 @@
+package lsh.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Random;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+public final class TestGenSVG extends Assert {
+
+  // corner file: two cells side by side and one apart, 10 points in all
+  static final String CORNERS =
+    "a,0,0,0\t1,0.1,0.1|2,0.2,0.3|3,0.5,0.5\n" +
+    "b,1,0,0\t4,1.1,0.1|5,1.5,0.9\n" +
+    "c,3,3,0\t6,3.1,3.2|7,3.3,3.3|8,3.4,3.5|9,3.6,3.7|10,3.8,3.9\n";
+
+  @Test
+  public void testStreaming() throws Exception {
+    Document doc = render("lines", 0);
+    assertEquals(10, count(doc, "circle", "p"));
+    assertEquals(10, count(doc, "line", "l"));
+    assertEquals(3, count(doc, "circle", "c"));
+    assertEquals(1, doc.getElementsByTagName("use").getLength());
+  }
+
+  @Test
+  public void testOccupiedGrid() throws Exception {
+    Document doc = render("points", 0);
+    // 3 cells * 5 edges, less the edge shared by the two neighbors
+    int grid = doc.getElementsByTagName("line").getLength() - count(doc, "line", "l");
+    // the origin cross adds 2
+    assertEquals(3 * 5 - 1 + 2, grid);
+  }
+
+  @Test
+  public void testSample() throws Exception {
+    Document doc = render("lines", 4);
+    assertEquals(4, count(doc, "circle", "p"));
+    assertEquals(4, count(doc, "line", "l"));
+    // corners are not sampled
+    assertEquals(3, count(doc, "circle", "c"));
+  }
+
+  @Test
+  public void testCounts() throws Exception {
+    Document doc = render("counts", 0);
+    assertEquals(0, count(doc, "circle", "p"));
+    assertEquals(0, doc.getElementsByTagName("use").getLength());
+    assertEquals(3, doc.getElementsByTagName("circle").getLength());
+  }
+
+  private static Document render(String style, int sample) throws Exception {
+    GenSVG gsvg = new GenSVG(style);
+    gsvg.hasher = new OrthonormalHasher(new double[]{1d, 1d});
+    StringWriter w = new StringWriter();
+    gsvg.makeStreamingSVG(new StringReader(CORNERS), w, sample, new Random(0));
+    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+    factory.setValidating(false);
+    factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+    return factory.newDocumentBuilder().parse(new ByteArrayInputStream(w.toString().getBytes("ISO-8859-1")));
+  }
+
+  private static int count(Document doc, String tag, String cls) {
+    int count = 0;
+    for(int i = 0; i < doc.getElementsByTagName(tag).getLength(); i++) {
+      if (cls.equals(((org.w3c.dom.Element) doc.getElementsByTagName(tag).item(i)).getAttribute("class")))
+        count++;
+    }
+    return count;
+  }
+
+}
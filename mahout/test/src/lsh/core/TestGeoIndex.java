@@ -0,0 +1,105 @@
+package lsh.core;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class TestGeoIndex extends Assert {
+
+  @Test
+  public void testKnownHashes() {
+    assertEquals("ezs42", GeoIndex.encode(42.6, -5.6, 5));
+    assertEquals("u4pruydqqvj", GeoIndex.encode(57.64911, 10.40744, 11));
+    assertEquals("s0000", GeoIndex.encode(0, 0, 5));
+    assertEquals("7zzzz", GeoIndex.encode(-0.00001, -0.00001, 5));
+    double[] box = GeoIndex.decode("ezs42");
+    assertEquals(42.605, (box[0] + box[1]) / 2, 0.001);
+    assertEquals(-5.603, (box[2] + box[3]) / 2, 0.001);
+    assertTrue(box[0] <= 42.6 && 42.6 <= box[1]);
+    assertTrue(box[2] <= -5.6 && -5.6 <= box[3]);
+    // longitude wraps like GeoHasher
+    assertEquals(GeoIndex.encode(10, -170, 6), GeoIndex.encode(10, 190, 6));
+  }
+
+  @Test
+  public void testNeighbors() {
+    String west = GeoIndex.encode(0, 179.99, 5);
+    String east = GeoIndex.encode(0, -179.99, 5);
+    assertEquals(east, GeoIndex.neighbor(west, 0, 1));
+    assertEquals(west, GeoIndex.neighbor(east, 0, -1));
+    assertTrue(GeoIndex.neighbors(west).contains(east));
+    assertEquals(8, GeoIndex.neighbors("ezs42").size());
+    // nothing north of the top row
+    String top = GeoIndex.encode(89.99, 10, 4);
+    assertNull(GeoIndex.neighbor(top, 1, 0));
+    assertEquals(5, GeoIndex.neighbors(top).size());
+  }
+
+  @Test
+  public void testHaversine() {
+    assertEquals(111195, GeoIndex.haversine(0, 0, 0, 1), 1);
+    assertEquals(Math.PI * GeoIndex.EARTH_RADIUS, GeoIndex.haversine(0, 0, 0, 180), 1);
+    assertEquals(GeoIndex.haversine(0, 179.5, 0, -179.5), GeoIndex.haversine(0, 0, 0, 1), 1e-6);
+    // meridians meet at the pole
+    assertEquals(0, GeoIndex.haversine(90, 0, 90, 123), 1e-6);
+  }
+
+  @Test
+  public void testPrecision() {
+    assertTrue(GeoIndex.cellHeight(GeoIndex.precisionFor(1000)) >= 1000);
+    assertTrue(GeoIndex.cellHeight(GeoIndex.precisionFor(1000) + 1) < 1000);
+    // around the pole every column of the top row is in range
+    Set<String> cells = GeoIndex.cover(89.9, 0, 50000, 3);
+    for(double lon = -179; lon < 180; lon += 1)
+      assertTrue(cells.contains(GeoIndex.encode(89.99, lon, 3)));
+  }
+
+  @Test
+  public void testRecallNearPole() {
+    checkRecall(new Random(0), 80, 90, -180, 180, 50000);
+    checkRecall(new Random(1), -90, -85, -180, 180, 200000);
+  }
+
+  @Test
+  public void testRecallAntimeridian() {
+    checkRecall(new Random(2), -10, 10, 175, 185, 50000);
+    checkRecall(new Random(3), 60, 70, 178, 182, 20000);
+  }
+
+  // radius queries find exactly the points a full scan finds
+  private void checkRecall(Random rnd, double minLat, double maxLat, double minLon, double maxLon, double radius) {
+    GeoIndex index = new GeoIndex(GeoIndex.precisionFor(radius) + 1);
+    Point[] points = new Point[3000];
+    for(int i = 0; i < points.length; i++) {
+      points[i] = new Point("" + i, new double[]{uniform(rnd, minLat, maxLat), uniform(rnd, minLon, maxLon)}, null);
+      index.add(points[i]);
+    }
+    int total = 0;
+    for(int q = 0; q < 50; q++) {
+      double lat = uniform(rnd, minLat, maxLat);
+      double lon = uniform(rnd, minLon, maxLon);
+      Set<String> expected = new HashSet<String>();
+      for(Point p: points) {
+        if (GeoIndex.haversine(lat, lon, p.values[0], p.values[1]) <= radius)
+          expected.add(p.id);
+      }
+      Set<String> found = new HashSet<String>();
+      List<Point> result = index.query(lat, lon, radius);
+      for(Point p: result)
+        found.add(p.id);
+      assertEquals(expected.size(), result.size());
+      assertEquals(expected, found);
+      total += expected.size();
+    }
+    assertTrue(total > 0);
+  }
+
+  private static double uniform(Random rnd, double min, double max) {
+    return min + rnd.nextDouble() * (max - min);
+  }
+
+}
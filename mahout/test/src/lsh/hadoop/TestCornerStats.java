@@ -0,0 +1,145 @@
+package lsh.hadoop;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class TestCornerStats extends Assert {
+
+  @Test
+  public void testCountPoints() {
+    // "|" as a regex splits between every character- count the separators instead
+    assertEquals(1, CornerStats.countPoints("1,2\t5,0.1,0.2"));
+    assertEquals(3, CornerStats.countPoints("1,2\t5,0.1,0.2|6,0.1,0.3|7,0.2,0.2*x"));
+    assertEquals(0, CornerStats.countPoints("1,2\t"));
+    assertEquals(3, "a|b|c".split("\\|").length);
+  }
+
+  @Test
+  public void testStats() {
+    CornerStats stats = new CornerStats(3);
+    // 100 corners: 60 singletons, 30 with 2-3 points, 9 with 10, one with 100
+    int corner = 0;
+    for(int i = 0; i < 60; i++)
+      add(stats, 1, corner++);
+    for(int i = 0; i < 30; i++)
+      add(stats, 2 + i % 2, corner++);
+    for(int i = 0; i < 9; i++)
+      add(stats, 10, corner++);
+    add(stats, 100, corner++);
+    assertEquals(100, stats.getCorners());
+    assertEquals(60 + 15 * 2 + 15 * 3 + 90 + 100, stats.getPoints());
+    assertEquals(60, stats.getSingletons());
+    assertEquals(1, stats.getPercentile(50));
+    assertEquals(3, stats.getPercentile(90));
+    assertEquals(10, stats.getPercentile(99));
+    assertEquals(100, stats.getPercentile(100));
+    long[] histogram = stats.getHistogram();
+    assertEquals(7, histogram.length);
+    assertEquals(60, histogram[0]);
+    assertEquals(30, histogram[1]);
+    assertEquals(9, histogram[3]);
+    assertEquals(1, histogram[6]);
+    List<String> top = stats.getTop();
+    assertEquals(3, top.size());
+    assertEquals("100\tc99", top.get(0));
+    assertTrue(top.get(1).startsWith("10\t"));
+  }
+
+  /*
+   * Count tables from two mappers merge to the table of one.
+   */
+  @Test
+  public void testMergeCounts() {
+    CornerStats whole = new CornerStats(0);
+    CornerStats left = new CornerStats(0);
+    CornerStats right = new CornerStats(0);
+    for(int i = 0; i < 40; i++) {
+      int count = 1 + (i * 7) % 13;
+      whole.add(count);
+      (i % 3 == 0 ? left : right).addCount(count, 1);
+    }
+    CornerStats merged = new CornerStats(0);
+    merged.addCounts(left.getCounts());
+    merged.addCounts(right.getCounts());
+    merged.addCounts(new CornerStats(0).getCounts());
+    assertEquals(whole.getCounts(), merged.getCounts());
+    assertEquals(whole.getPoints(), merged.getPoints());
+    assertEquals(whole.getMean(), merged.getMean(), 1e-12);
+    assertEquals(whole.getSD(), merged.getSD(), 1e-9);
+    assertEquals(whole.summarizer.getSD(), merged.getSD(), 1e-9);
+    assertEquals(whole.getPercentile(90), merged.getPercentile(90));
+
+    // the summarizer sees each merged corner once
+    merged.sampleCounts(new Random(1));
+    assertEquals(merged.getCorners(), merged.sampled);
+    assertEquals(merged.getMean(), merged.summarizer.getMean(), 1e-9);
+    assertEquals(merged.getSD(), merged.summarizer.getSD(), 1e-9);
+  }
+
+  @Test
+  public void testLocalRunner() throws Exception {
+    File dir = File.createTempFile("cornerstats", "");
+    dir.delete();
+    dir.mkdirs();
+    File input = new File(dir, "corners.txt");
+    PrintWriter pw = new PrintWriter(new FileWriter(input));
+    for(int c = 0; c < 50; c++) {
+      StringBuilder sb = new StringBuilder();
+      int points = (c % 5 == 0) ? c + 1 : 1;
+      for(int p = 0; p < points; p++) {
+        if (p > 0)
+          sb.append('|');
+        sb.append(c * 100 + p).append(",0.5,0.5");
+      }
+      pw.println(c + ",0\t" + sb);
+    }
+    pw.close();
+
+    Configuration conf = new Configuration();
+    conf.set("mapred.job.tracker", "local");
+    conf.set("fs.default.name", "file:///");
+    conf.setInt(CornerStatsDriver.TOPK, 2);
+    Path summary = CornerStatsDriver.run(conf, new Path(input.getAbsolutePath()), new Path(new File(dir, "out").getAbsolutePath()));
+    Map<String,String> values = new HashMap<String,String>();
+    BufferedReader br = new BufferedReader(new FileReader(summary.toUri().getPath()));
+    String line;
+    while((line = br.readLine()) != null) {
+      int tab = line.indexOf('\t');
+      values.put(line.substring(0, tab), line.substring(tab + 1));
+    }
+    br.close();
+    assertEquals("50", values.get("corners"));
+    assertEquals("275", values.get("points"));
+    assertEquals("5.5", values.get("mean"));
+    assertEquals(5.5, Double.parseDouble(values.get("online.mean")), 1e-9);
+    assertEquals(Double.parseDouble(values.get("sd")), Double.parseDouble(values.get("online.sd")), 1e-9);
+    // 41 of the 50 corners hold one point
+    assertEquals(1.0, Double.parseDouble(values.get("online.q1")), 0.0);
+    assertEquals(1.0, Double.parseDouble(values.get("online.median")), 0.0);
+    assertEquals(1.0, Double.parseDouble(values.get("online.q3")), 0.0);
+    // corner 0 has one point too
+    assertEquals("41", values.get("singletons"));
+    assertEquals("46", values.get("max"));
+    assertEquals("46\t45,0", values.get("top.1"));
+    assertEquals("41\t40,0", values.get("top.2"));
+    assertNull(values.get("top.3"));
+  }
+
+  private static void add(CornerStats stats, int count, int corner) {
+    stats.add(count);
+    stats.offerTop(count, "c" + corner);
+  }
+
+}
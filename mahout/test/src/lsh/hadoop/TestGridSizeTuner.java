@@ -0,0 +1,97 @@
+package lsh.hadoop;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import lsh.core.Point;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class TestGridSizeTuner extends Assert {
+  static final String HASHER = "lsh.core.OrthonormalHasher";
+
+  @Test
+  public void testSample() throws Exception {
+    StringBuilder sb = new StringBuilder();
+    for(int i = 0; i < 1000; i++)
+      sb.append(i + "," + (i / 1000.0) + "," + (1 - i / 1000.0) + "\n");
+    List<Point> points = GridSizeTuner.sample(new BufferedReader(new StringReader(sb.toString())), 100, new Random(0));
+    assertEquals(100, points.size());
+    for(Point p: points)
+      assertEquals(2, p.values.length);
+    // short input: everything is kept
+    points = GridSizeTuner.sample(new BufferedReader(new StringReader("a,0.1,0.2\n\nb,0.3,0.4\n")), 100, new Random(0));
+    assertEquals(2, points.size());
+  }
+
+  @Test
+  public void testCandidates() throws Exception {
+    GridSizeTuner tuner = new GridSizeTuner(HASHER, uniform(2000, 2, new Random(1)), 50, 10);
+    double[] sizes = tuner.getSizes(12);
+    assertEquals(1.0, sizes[0], 0.01);
+    List<GridSizeTuner.Candidate> candidates = new ArrayList<GridSizeTuner.Candidate>();
+    for(double size: sizes)
+      candidates.add(tuner.evaluate(size));
+    // smaller cells: more corners, fewer points in each, fewer neighbors in the same cell
+    for(int i = 1; i < candidates.size(); i++) {
+      GridSizeTuner.Candidate bigger = candidates.get(i - 1);
+      GridSizeTuner.Candidate smaller = candidates.get(i);
+      assertTrue(smaller.corners >= bigger.corners);
+      assertTrue(smaller.mean <= bigger.mean);
+    }
+    GridSizeTuner.Candidate first = candidates.get(0);
+    GridSizeTuner.Candidate last = candidates.get(candidates.size() - 1);
+    assertTrue(first.recall > 0.9);
+    assertTrue(last.recall < 0.5);
+    assertTrue(last.median < 10);
+
+    GridSizeTuner.Candidate chosen = GridSizeTuner.chooseMedian(candidates, 20);
+    for(GridSizeTuner.Candidate c: candidates)
+      assertTrue(Math.abs(Math.log(chosen.median / 20.0)) <= Math.abs(Math.log(c.median / 20.0)));
+    chosen = GridSizeTuner.chooseRecall(candidates, 0.5);
+    assertTrue(chosen.recall >= 0.5);
+    for(GridSizeTuner.Candidate c: candidates)
+      assertTrue(c.recall < 0.5 || c.size >= chosen.size);
+    // unreachable recall: best one seen
+    assertEquals(first.recall, GridSizeTuner.chooseRecall(candidates.subList(0, 1), 2.0).recall, 0);
+  }
+
+  @Test
+  public void testConfig() throws Exception {
+    GridSizeTuner tuner = new GridSizeTuner(HASHER, uniform(200, 3, new Random(2)), 10, 5);
+    GridSizeTuner.Candidate chosen = tuner.evaluate(0.25);
+    StringWriter sw = new StringWriter();
+    tuner.writeConfig(new PrintWriter(sw), chosen);
+    File file = File.createTempFile("gridsize", ".xml");
+    file.deleteOnExit();
+    PrintWriter pw = new PrintWriter(file);
+    pw.print(sw.toString());
+    pw.close();
+    Configuration conf = new Configuration(false);
+    conf.addResource(new Path(file.getAbsolutePath()));
+    assertEquals(HASHER, conf.get(LSHDriver.HASHER));
+    assertEquals(0.25, Double.parseDouble(conf.get(LSHDriver.GRIDSIZE)), 0);
+    assertEquals(3, conf.getInt(LSHDriver.DIMENSION, 0));
+  }
+
+  static List<Point> uniform(int n, int dimensions, Random rnd) {
+    List<Point> points = new ArrayList<Point>();
+    for(int i = 0; i < n; i++) {
+      double[] values = new double[dimensions];
+      for(int d = 0; d < dimensions; d++)
+        values[d] = rnd.nextDouble();
+      points.add(new Point(Integer.toString(i), values, null));
+    }
+    return points;
+  }
+
+}
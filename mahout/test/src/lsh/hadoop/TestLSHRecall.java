@@ -0,0 +1,97 @@
+package lsh.hadoop;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import lsh.core.OrthonormalHasher;
+import lsh.core.Point;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class TestLSHRecall extends Assert {
+
+  @Test
+  public void testExact() throws Exception {
+    List<Point> points = TestGridSizeTuner.uniform(500, 3, new Random(0));
+    LSHRecall one = new LSHRecall(points, 100, 5, new Random(1), 1);
+    LSHRecall four = new LSHRecall(points, 100, 5, new Random(1), 4);
+    assertEquals(100, one.queries.length);
+    for(int q = 0; q < one.queries.length; q++) {
+      assertEquals(one.queries[q], four.queries[q]);
+      assertTrue(Arrays.equals(one.truth[q], four.truth[q]));
+      assertEquals(5, one.truth[q].length);
+      // nearest first, never the query itself
+      double last = 0;
+      for(int n: one.truth[q]) {
+        assertTrue(n != one.queries[q]);
+        double d = distance(points.get(n), points.get(one.queries[q]));
+        assertTrue(d >= last);
+        last = d;
+      }
+    }
+  }
+
+  @Test
+  public void testOneCell() throws Exception {
+    List<Point> points = TestGridSizeTuner.uniform(200, 2, new Random(2));
+    LSHRecall recall = new LSHRecall(points, 50, 10, new Random(3), 2);
+    LSHRecall.Result r = recall.evaluate(new LSHRecall.Scheme() {
+      public String getName() {
+        return "everything";
+      }
+
+      public List<int[]> getCells(double[] values) {
+        List<int[]> cells = new ArrayList<int[]>();
+        cells.add(new int[]{0, 0});
+        return cells;
+      }
+    });
+    assertEquals(1.0, r.recall, 0);
+    assertEquals(1, r.cells);
+    assertEquals(199, r.candidates, 0);
+    assertEquals(1.0, r.scanned, 0);
+  }
+
+  @Test
+  public void testGridSizes() throws Exception {
+    List<Point> points = TestGridSizeTuner.uniform(2000, 2, new Random(4));
+    LSHRecall recall = new LSHRecall(points, 200, 10, new Random(5), 4);
+    LSHRecall.Result last = null;
+    for(double size = 0.01; size < 2; size *= 2) {
+      double[] stretch = {size, size};
+      LSHRecall.Result r = recall.evaluate(new LSHRecall.CornerGenScheme(new OrthonormalHasher(), stretch));
+      // bigger cells: fewer of them, more candidates, more true neighbors found
+      if (null != last) {
+        assertTrue(r.cells <= last.cells);
+        assertTrue(r.candidates >= last.candidates);
+        assertTrue(r.recall >= last.recall);
+      }
+      last = r;
+    }
+    assertTrue(last.recall > 0.99);
+  }
+
+  @Test
+  public void testStretch() throws Exception {
+    Configuration conf = new Configuration(false);
+    conf.set(LSHDriver.GRIDSIZE, "0.5");
+    conf.set(LSHDriver.DIMENSION, "3");
+    assertTrue(Arrays.equals(new double[]{0.5, 0.5, 0.5}, LSHRecall.getStretch(conf)));
+    conf = new Configuration(false);
+    conf.set(LSHDriver.GRIDSIZE, "0.5,2");
+    assertTrue(Arrays.equals(new double[]{0.5, 2}, LSHRecall.getStretch(conf)));
+    assertEquals(3, LSHRecall.getSchemes("lsh.core.OrthonormalHasher", new double[]{1, 1}).size());
+  }
+
+  static double distance(Point a, Point b) {
+    double sum = 0;
+    for(int d = 0; d < a.values.length; d++)
+      sum += (a.values[d] - b.values[d]) * (a.values[d] - b.values[d]);
+    return sum;
+  }
+
+}
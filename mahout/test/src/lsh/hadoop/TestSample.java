@@ -0,0 +1,77 @@
+package lsh.hadoop;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.PrintWriter;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class TestSample extends Assert {
+
+  /*
+   * Three inputs, so three mappers: two points files and a corners file.
+   */
+  @Test
+  public void testLocalRunner() throws Exception {
+    File dir = File.createTempFile("sample", "");
+    dir.delete();
+    File in = new File(dir, "in");
+    in.mkdirs();
+    Set<String> all = new HashSet<String>();
+    for(int f = 0; f < 2; f++) {
+      PrintWriter pw = new PrintWriter(new FileWriter(new File(in, "points" + f + ".txt")));
+      for(int i = 0; i < 300; i++) {
+        String point = (f * 1000 + i) + ",0.5," + (i / 300.0);
+        pw.println(point);
+        all.add(point);
+      }
+      pw.close();
+    }
+    PrintWriter pw = new PrintWriter(new FileWriter(new File(in, "corners.txt")));
+    for(int c = 0; c < 40; c++) {
+      StringBuilder sb = new StringBuilder();
+      for(int p = 0; p <= c % 4; p++) {
+        String point = (5000 + c * 10 + p) + ",0.25,0.75*I";
+        if (p > 0)
+          sb.append('|');
+        sb.append(point);
+        all.add(point);
+      }
+      pw.println(c + ",0\t" + sb);
+    }
+    pw.close();
+
+    Configuration conf = new Configuration();
+    conf.set("mapred.job.tracker", "local");
+    conf.set("fs.default.name", "file:///");
+    conf.setInt(SampleDriver.SIZE, 50);
+    conf.setLong(SampleDriver.SEED, 0);
+    Set<String> sample = run(conf, in, dir);
+    assertEquals(50, sample.size());
+    assertTrue(all.containsAll(sample));
+
+    // more room than points: everything comes back
+    conf.setInt(SampleDriver.SIZE, 1000);
+    assertEquals(all, run(conf, in, dir));
+  }
+
+  private static Set<String> run(Configuration conf, File in, File dir) throws Exception {
+    Path sample = SampleDriver.run(conf, new Path(in.getAbsolutePath()), new Path(new File(dir, "out").getAbsolutePath()));
+    Set<String> lines = new HashSet<String>();
+    BufferedReader br = new BufferedReader(new FileReader(sample.toUri().getPath()));
+    String line;
+    while((line = br.readLine()) != null) {
+      assertTrue(line, lines.add(line));
+    }
+    br.close();
+    return lines;
+  }
+
+}
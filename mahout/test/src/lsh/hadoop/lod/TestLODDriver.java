@@ -0,0 +1,120 @@
+package lsh.hadoop.lod;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import lsh.core.Hasher;
+import lsh.core.Point;
+import lsh.hadoop.LSHDriver;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.junit.Assert;
+import org.junit.Test;
+
+/*
+ * Run the LOD subdivision job with Hadoop's local runner.
+ */
+public final class TestLODDriver extends Assert {
+  static final int POINTS = 300;
+  static final int MAXCOUNT = 5;
+
+  @Test
+  public void testNeighborRule() {
+    List<Point> points = new ArrayList<Point>();
+    for(int i = 0; i < 4; i++)
+      points.add(new Point("" + i, new double[]{i * 10.0, 0}, null));
+    assertTrue(new NeighborRule(3, 1.0).passes(points));
+    assertFalse(new NeighborRule(3, Double.POSITIVE_INFINITY).passes(points));
+    assertFalse(new NeighborRule(1, 10.0).passes(points));
+    assertTrue(new NeighborRule(2, 10.0).passes(points));
+    // the reducer splits larger cells unchecked; the local run below goes through that path
+    assertEquals(3, new NeighborRule(3, Double.POSITIVE_INFINITY).maxPoints());
+    assertEquals(10000, new NeighborRule(3, 1.0).maxPoints());
+  }
+
+  @Test
+  public void testCell() {
+    LODCell cell = LODCell.fromHash(new int[]{5, -5, 0}, 2);
+    assertEquals("2:1,-2,0", cell.toString());
+    assertEquals("!2:1,-2,0", cell.finished().toString());
+    LODCell parsed = LODCell.newCell("!2:1,-2,0");
+    assertTrue(parsed.done);
+    assertEquals(2, parsed.lod);
+    assertArrayEquals(new int[]{1, -2, 0}, parsed.grid);
+  }
+
+  @Test
+  public void testLocalRunner() throws Exception {
+    File dir = File.createTempFile("lod", "");
+    dir.delete();
+    dir.mkdirs();
+    File input = new File(dir, "points.txt");
+    Random rnd = new Random(0);
+    PrintWriter pw = new PrintWriter(new FileWriter(input));
+    for(int i = 0; i < POINTS; i++) {
+      // three blobs of different spread
+      double scale = (i % 3 + 1) * 0.1;
+      double x = (i % 3) + rnd.nextGaussian() * scale;
+      double y = rnd.nextGaussian() * scale;
+      pw.println(i + "," + x + "," + y);
+    }
+    pw.close();
+
+    Configuration conf = new Configuration();
+    conf.set("mapred.job.tracker", "local");
+    conf.set("fs.default.name", "file:///");
+    conf.set(LSHDriver.HASHER, "lsh.core.OrthonormalHasher");
+    conf.set(LSHDriver.GRIDSIZE, "0.01,0.01");
+    conf.setInt(LODDriver.MAXLOD, 8);
+    conf.setInt(NeighborRule.COUNT, MAXCOUNT);
+    Path result = LODDriver.run(conf, new Path(input.getAbsolutePath()), new Path(new File(dir, "out").getAbsolutePath()));
+
+    Hasher hasher = LODDriver.getHasher(conf);
+    Map<String,Integer> cellSizes = new HashMap<String,Integer>();
+    Set<String> ids = new HashSet<String>();
+    for(String line: readLines(new File(result.toUri().getPath(), "part-r-00000"))) {
+      String[] parts = line.split("\t");
+      LODCell cell = LODCell.newCell(parts[0]);
+      Point point = Point.newPoint(parts[1]);
+      assertTrue(cell.done);
+      assertTrue(ids.add(point.id));
+      // point is inside its cell
+      assertArrayEquals(LODCell.fromHash(hasher.hash(point.values), cell.lod).grid, cell.grid);
+      Integer size = cellSizes.get(parts[0]);
+      cellSizes.put(parts[0], null == size ? 1 : size + 1);
+    }
+    assertEquals(POINTS, ids.size());
+    boolean subdivided = false;
+    for(Map.Entry<String,Integer> entry: cellSizes.entrySet()) {
+      LODCell cell = LODCell.newCell(entry.getKey());
+      if (cell.lod > 0)
+        assertTrue(entry.getValue() <= MAXCOUNT);
+      if (cell.lod < 8)
+        subdivided = true;
+    }
+    assertTrue(subdivided);
+  }
+
+  private static List<String> readLines(File f) throws IOException {
+    List<String> lines = new ArrayList<String>();
+    BufferedReader br = new BufferedReader(new FileReader(f));
+    String line;
+    while((line = br.readLine()) != null)
+      lines.add(line);
+    br.close();
+    return lines;
+  }
+
+}
@@ -0,0 +1,67 @@
+package lsh.mahout.clustering;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import lsh.mahout.core.Hasher;
+import lsh.mahout.core.OrthonormalHasher;
+import lsh.mahout.core.VertexTransitiveHasher;
+
+import org.apache.mahout.clustering.canopy.Canopy;
+import org.apache.mahout.clustering.canopy.CanopyClusterer;
+import org.apache.mahout.common.distance.DistanceMeasure;
+import org.apache.mahout.common.distance.EuclideanDistanceMeasure;
+import org.apache.mahout.math.DenseVector;
+import org.apache.mahout.math.Vector;
+import org.junit.Assert;
+import org.junit.Test;
+
+/*
+ * LSH canopies of well-separated blobs match plain canopy clustering.
+ */
+public final class TestHashCluster extends Assert {
+  static double[][] CENTERS = {{0, 0}, {10, 10}, {-10, 20}};
+  static int PER_BLOB = 50;
+  static double SPREAD = 0.05;
+
+  @Test
+  public void testOrthonormal() {
+    checkBlobs(new OrthonormalHasher(2, 2.0));
+  }
+
+  @Test
+  public void testVertexTransitive() {
+    checkBlobs(new VertexTransitiveHasher(2, 2.0));
+  }
+
+  private void checkBlobs(Hasher hasher) {
+    DistanceMeasure measure = new EuclideanDistanceMeasure();
+    List<Vector> points = makeBlobs();
+    List<Canopy> hashed = HashCluster.createCanopies(points, hasher, measure, 3.0, 2.0);
+    List<Canopy> plain = CanopyClusterer.createCanopies(makeBlobs(), measure, 3.0, 2.0);
+    assertEquals(CENTERS.length, plain.size());
+    assertEquals(plain.size(), hashed.size());
+    for(int i = 0; i < hashed.size(); i++) {
+      Canopy canopy = hashed.get(i);
+      assertTrue(canopy instanceof HashCluster);
+      assertEquals(plain.get(i).getNumPoints(), canopy.getNumPoints());
+      assertEquals(0.0, measure.distance(plain.get(i).getCenter(), canopy.getCenter()), 0.000001);
+    }
+  }
+
+  private static List<Vector> makeBlobs() {
+    Random rnd = new Random(0);
+    List<Vector> points = new ArrayList<Vector>();
+    for(int i = 0; i < PER_BLOB; i++) {
+      for(double[] center: CENTERS) {
+        Vector v = new DenseVector(2);
+        v.set(0, center[0] + rnd.nextGaussian() * SPREAD);
+        v.set(1, center[1] + rnd.nextGaussian() * SPREAD);
+        points.add(v);
+      }
+    }
+    return points;
+  }
+
+}
@@ -0,0 +1,100 @@
+package lsh.mahout.core2;
+
+import java.util.Random;
+
+import lsh.mahout.core.DenseHash;
+import lsh.mahout.core.Hash;
+import lsh.mahout.core.Hasher;
+import lsh.mahout.core.OrthonormalHasher;
+import lsh.mahout.core.SparseHash;
+import lsh.mahout.core.VertexTransitiveHasher;
+
+import org.apache.mahout.math.RandomAccessSparseVector;
+import org.apache.mahout.math.SequentialAccessSparseVector;
+import org.apache.mahout.math.Vector;
+import org.junit.Assert;
+import org.junit.Test;
+
+/*
+ * Sparse hashing walks only the nonzero values.
+ * It must give exactly the same hash as the dense walk over every dimension.
+ */
+public final class TestSparseHash extends Assert {
+  static int DIMS = 2000;
+  static int NONZERO = 30;
+
+  @Test
+  public void testOrthonormal() {
+    Hasher hasher = new OrthonormalHasher(DIMS, 0.1d);
+    checkRandom(hasher, 0);
+    checkRandom(hasher, 3);
+  }
+
+  @Test
+  public void testVertexTransitive() {
+    Hasher hasher = new VertexTransitiveHasher(DIMS, 0.1d);
+    checkRandom(hasher, 0);
+    checkRandom(hasher, 3);
+  }
+
+  @Test
+  public void testZeroHash() {
+    // the zero coordinates of a vertex transitive hash are not zero
+    Hasher hasher = new VertexTransitiveHasher(DIMS, 0.01d);
+    Vector v = new RandomAccessSparseVector(DIMS);
+    v.set(5, 3.0);
+    v.set(17, 4.0);
+    SparseHash sparse = new SparseHash(hasher, v, 0);
+    Hash dense = denseHash(hasher, v, 0);
+    assertTrue(sparse.getZeroHash() != 0);
+    assertEquals(2, sparse.getNumEntries());
+    for(int i = 0; i < DIMS; i++) {
+      assertEquals(dense.getValue(i), sparse.getValue(i));
+    }
+    assertEquals(dense.getUniqueSum(), sparse.getUniqueSum());
+    // changing the LOD keeps the shared zero hash in the sum
+    assertEquals(denseHash(hasher, v, 4), new SparseHash(sparse, 4));
+  }
+
+  @Test
+  public void testSetValue() {
+    Hasher hasher = new VertexTransitiveHasher(DIMS, 0.01d);
+    Vector v = new RandomAccessSparseVector(DIMS);
+    v.set(5, 3.0);
+    SparseHash sparse = new SparseHash(hasher, v, 0);
+    Hash dense = denseHash(hasher, v, 0);
+    sparse.setValue(100, 7);
+    dense.setValue(100, 7);
+    assertEquals(dense.getUniqueSum(), sparse.getUniqueSum());
+  }
+
+  private void checkRandom(Hasher hasher, int lod) {
+    Random rnd = new Random(0);
+    for(int trial = 0; trial < 20; trial++) {
+      Vector random = new RandomAccessSparseVector(DIMS);
+      for(int i = 0; i < NONZERO; i++) {
+        random.set(rnd.nextInt(DIMS), (rnd.nextDouble() - 0.5) * 10);
+      }
+      Vector sequential = new SequentialAccessSparseVector(random);
+      Hash dense = denseHash(hasher, random, lod);
+      Hash sparse1 = new SparseHash(hasher, random, lod);
+      Hash sparse2 = new SparseHash(hasher, sequential, lod);
+      assertEquals(dense.getUniqueSum(), sparse1.getUniqueSum());
+      assertEquals(dense.getUniqueSum(), sparse2.getUniqueSum());
+      assertEquals(dense, sparse1);
+      assertEquals(dense.hashCode(), sparse1.hashCode());
+      assertTrue(sparse1.getNumEntries() <= NONZERO);
+    }
+  }
+
+  private Hash denseHash(Hasher hasher, Vector v, int lod) {
+    double[] values = new double[DIMS];
+    for(int i = 0; i < DIMS; i++) {
+      values[i] = v.get(i);
+    }
+    int[] hashed = new int[DIMS];
+    hasher.hash(values, hashed);
+    return new DenseHash(hashed, lod);
+  }
+
+}
@@ -0,0 +1,127 @@
+package lsh.mahout.io;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.mahout.math.VectorWritable;
+import org.junit.Assert;
+import org.junit.Test;
+
+/*
+ * Several threads must write the records one thread writes.
+ */
+public final class WriteVectorsTest extends Assert {
+
+  @Test
+  public void testPoints() throws Exception {
+    File dir = tempDir();
+    File input = new File(dir, "points.txt");
+    Random rnd = new Random(0);
+    PrintWriter pw = new PrintWriter(new FileWriter(input));
+    for(int i = 0; i < 200; i++) {
+      // repeated ids, mixed payloads, some CRLF
+      String id = "" + rnd.nextInt(150);
+      pw.print(id + "," + rnd.nextDouble() + "," + rnd.nextDouble() + (rnd.nextBoolean() ? "*U" : "*I"));
+      pw.print(rnd.nextInt(4) == 0 ? "\r\n" : "\n");
+    }
+    pw.print("last,0.5,0.25*U");
+    pw.close();
+
+    for(String payload: new String[] {null, "U"}) {
+      List<String> single = mahout(dir, input, true, payload, 1);
+      assertFalse(single.isEmpty());
+      for(int threads: new int[] {2, 4, 7, 500})
+        assertEquals("threads " + threads, single, mahout(dir, input, true, payload, threads));
+      List<String> csv = csv(dir, input, true, payload, 1);
+      assertEquals(single.size(), csv.size());
+      assertEquals(csv, csv(dir, input, true, payload, 4));
+    }
+  }
+
+  @Test
+  public void testCorners() throws Exception {
+    File dir = tempDir();
+    File input = new File(dir, "corners.txt");
+    Random rnd = new Random(1);
+    PrintWriter pw = new PrintWriter(new FileWriter(input));
+    // no ids, so repeats are dropped by their hashes
+    for(int i = 0; i < 100; i++)
+      pw.println("," + rnd.nextInt(4) + "," + rnd.nextInt(4) + "," + rnd.nextInt(4) + ",0\tx,0.1,0.2*I");
+    pw.close();
+
+    List<String> single = mahout(dir, input, false, null, 1);
+    assertFalse(single.isEmpty());
+    assertEquals(single, mahout(dir, input, false, null, 3));
+    assertEquals(csv(dir, input, false, null, 1), csv(dir, input, false, null, 3));
+  }
+
+  private static File tempDir() throws Exception {
+    File dir = File.createTempFile("vectors", "");
+    dir.delete();
+    dir.mkdirs();
+    return dir;
+  }
+
+  // vectors sorted, after checking the keys are 0...n-1
+  private static List<String> mahout(File dir, File input, boolean points, String payload, int threads) throws Exception {
+    File output = new File(dir, "out-" + threads);
+    WriteVectors.convert(input, output.getAbsolutePath(), points, false, payload, 1.0, threads);
+    Configuration conf = new Configuration();
+    FileSystem fs = FileSystem.getLocal(conf);
+    Path out = new Path(output.getAbsolutePath());
+    List<Path> parts = new ArrayList<Path>();
+    if (threads == 1) {
+      parts.add(out);
+    } else {
+      for(FileStatus status: fs.listStatus(out)) {
+        if (status.getPath().getName().startsWith("part-"))
+          parts.add(status.getPath());
+      }
+      assertEquals(threads, parts.size());
+    }
+    List<String> vectors = new ArrayList<String>();
+    List<Long> keys = new ArrayList<Long>();
+    LongWritable key = new LongWritable();
+    VectorWritable value = new VectorWritable();
+    for(Path part: parts) {
+      SequenceFile.Reader reader = new SequenceFile.Reader(fs, part, conf);
+      while (reader.next(key, value)) {
+        keys.add(key.get());
+        vectors.add(value.get().asFormatString());
+      }
+      reader.close();
+    }
+    Collections.sort(keys);
+    for(int i = 0; i < keys.size(); i++)
+      assertEquals(i, keys.get(i).longValue());
+    Collections.sort(vectors);
+    return vectors;
+  }
+
+  private static List<String> csv(File dir, File input, boolean points, String payload, int threads) throws Exception {
+    File output = new File(dir, "out-" + threads + ".csv");
+    WriteVectors.convert(input, output.getAbsolutePath(), points, true, payload, 1.0, threads);
+    List<String> lines = new ArrayList<String>();
+    BufferedReader reader = new BufferedReader(new FileReader(output));
+    String line;
+    while ((line = reader.readLine()) != null)
+      lines.add(line);
+    reader.close();
+    Collections.sort(lines);
+    return lines;
+  }
+
+}
@@ -0,0 +1,81 @@
+package lsh.mahout.recommender;
+
+import java.util.Random;
+
+import lsh.mahout.recommnder.BatchDistance;
+
+/*
+ * Benchmark BatchDistance kernels against the one-pair-at-a-time loops
+ * used in PointTextDataModel.
+ */
+
+public class BatchDistanceBenchmark {
+  static int DIMENSIONS = 200;
+  static int POINTS = 20000;
+  static int QUERIES = 50;
+  static double sink = 0;
+  
+  public static void main(String[] args) {
+    BatchDistanceBenchmark benchmark = new BatchDistanceBenchmark();
+    benchmark.benchmarkAll();
+  }
+  
+  public void benchmarkAll() {
+    Random rnd = new Random(0);
+    double[][] points = new double[POINTS][DIMENSIONS];
+    double[] block = new double[POINTS * DIMENSIONS];
+    for(int p = 0; p < POINTS; p++) {
+      for(int d = 0; d < DIMENSIONS; d++) {
+        points[p][d] = rnd.nextDouble();
+        block[p * DIMENSIONS + d] = points[p][d];
+      }
+    }
+    double[][] queries = new double[QUERIES][DIMENSIONS];
+    for(int q = 0; q < QUERIES; q++)
+      for(int d = 0; d < DIMENSIONS; d++)
+        queries[q][d] = rnd.nextDouble();
+    // warm up both paths before timing
+    for(int i = 0; i < 3; i++) {
+      pairs(queries, points, 1.0);
+      batch(queries, block, 1.0);
+    }
+    double[] powers = {1.0, 2.0, 0.5, 3.0};
+    for(double power: powers) {
+      long pairTime = pairs(queries, points, power);
+      long batchTime = batch(queries, block, power);
+      System.out.println("L" + power + ": pairs=" + pairTime + ", batch=" + batchTime);
+    }
+    System.out.println("\t all times in ms");
+  }
+
+  long pairs(double[][] queries, double[][] points, double power) {
+    long start = System.currentTimeMillis();
+    for(double[] query: queries) {
+      for(double[] point: points) {
+        double sum = 0;
+        for(int i = 0; i < DIMENSIONS; i++) {
+          double d = Math.abs(query[i] - point[i]);
+          if (power == 1.0)
+            sum += d;
+          else if (power == 2.0)
+            sum += d * d;
+          else
+            sum += Math.pow(d, power);
+        }
+        sink += sum;
+      }
+    }
+    return System.currentTimeMillis() - start;
+  }
+
+  long batch(double[][] queries, double[] block, double power) {
+    double[] out = new double[POINTS];
+    long start = System.currentTimeMillis();
+    for(double[] query: queries) {
+      BatchDistance.minkowski(query, block, POINTS, DIMENSIONS, DIMENSIONS, power, out);
+      sink += out[0];
+    }
+    return System.currentTimeMillis() - start;
+  }
+  
+}
@@ -0,0 +1,198 @@
+package lsh.mahout.recommender;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import lsh.mahout.recommnder.BatchDistance;
+import lsh.mahout.recommnder.PointTextDataModel;
+
+import org.apache.mahout.cf.taste.impl.TasteTestCase;
+import org.apache.mahout.cf.taste.model.PreferenceArray;
+import org.apache.mahout.cf.taste.recommender.RecommendedItem;
+import org.junit.Before;
+import org.junit.Test;
+
+/*
+ * Batch kernels must match the one-pair-at-a-time distances in PointTextDataModel,
+ * and rank-only distances must order items exactly as the full distances do.
+ */
+public final class BatchDistanceTest extends TasteTestCase {
+  static final int DIMENSIONS = 23;
+  static final int USERS = 5;
+  static final int ITEMS = 40;
+  static final int TOP = 7;
+
+  private PointTextDataModel model;
+  private List<double[]> users;
+  private List<double[]> items;
+
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+    Random rnd = new Random(0);
+    users = randomPoints(rnd, USERS, DIMENSIONS);
+    items = randomPoints(rnd, ITEMS, DIMENSIONS);
+    String[] lines = new String[USERS + ITEMS];
+    for(int i = 0; i < USERS; i++)
+      lines[i] = toLine(i, users.get(i), "U");
+    for(int i = 0; i < ITEMS; i++)
+      lines[USERS + i] = toLine(i, items.get(i), "I");
+    File testFile = getTestTempFile("points.txt");
+    writeLines(testFile, lines);
+    model = new PointTextDataModel(testFile);
+  }
+
+  @Test
+  public void testKernels() {
+    double[] block = BatchDistance.pack(items, DIMENSIONS);
+    double[] out = new double[ITEMS];
+    double rescale = Math.pow(DIMENSIONS, 1/0.5);
+    for(double[] user: users) {
+      BatchDistance.manhattan(user, block, ITEMS, DIMENSIONS, DIMENSIONS, out);
+      for(int i = 0; i < ITEMS; i++)
+        assertEquals(model.manhattanD(user, items.get(i)), out[i] / DIMENSIONS, EPSILON);
+      BatchDistance.euclidSquared(user, block, ITEMS, DIMENSIONS, DIMENSIONS, out);
+      for(int i = 0; i < ITEMS; i++)
+        assertEquals(model.euclidD(user, items.get(i)), Math.sqrt(out[i]) / Math.sqrt(DIMENSIONS), EPSILON);
+      BatchDistance.minkowski(user, block, ITEMS, DIMENSIONS, DIMENSIONS, 0.5, out);
+      for(int i = 0; i < ITEMS; i++)
+        assertEquals(model.minkowskiD(user, items.get(i)), Math.pow(out[i], 2) / rescale, EPSILON);
+      BatchDistance.minkowski(user, block, ITEMS, DIMENSIONS, DIMENSIONS, 3.0, out);
+      for(int i = 0; i < ITEMS; i++)
+        assertEquals(pairMinkowski(user, items.get(i), 3.0), out[i], EPSILON);
+    }
+  }
+
+  @Test
+  public void testStride() {
+    // use fewer dimensions than the rows hold
+    double[] block = BatchDistance.pack(items, DIMENSIONS);
+    double[] out = new double[ITEMS];
+    int dims = DIMENSIONS - 6;
+    BatchDistance.manhattan(users.get(0), block, ITEMS, DIMENSIONS, dims, out);
+    for(int i = 0; i < ITEMS; i++) {
+      double sum = 0;
+      for(int d = 0; d < dims; d++)
+        sum += Math.abs(users.get(0)[d] - items.get(i)[d]);
+      assertEquals(sum, out[i], EPSILON);
+    }
+  }
+
+  @Test
+  public void testPreferences() throws Exception {
+    // batch preference array matches per-pair preference values
+    for(int u = 0; u < USERS; u++) {
+      PreferenceArray prefs = model.getPreferencesFromUser(u);
+      assertEquals(ITEMS, prefs.length());
+      for(int i = 0; i < prefs.length(); i++) {
+        float single = model.getPreferenceValue(u, prefs.getItemID(i));
+        assertEquals(single, prefs.getValue(i), EPSILON);
+      }
+    }
+  }
+
+  @Test
+  public void testRanking() {
+    for(final double[] user: users) {
+      Integer[] exact = sorted(new Comparator<Integer>() {
+        public int compare(Integer a, Integer b) {
+          return Double.compare(model.minkowskiD(user, items.get(a)), model.minkowskiD(user, items.get(b)));
+        }
+      });
+      Integer[] rank = sorted(new Comparator<Integer>() {
+        public int compare(Integer a, Integer b) {
+          return Double.compare(model.minkowskiRank(user, items.get(a)), model.minkowskiRank(user, items.get(b)));
+        }
+      });
+      assertTrue(Arrays.equals(exact, rank));
+
+      exact = sorted(new Comparator<Integer>() {
+        public int compare(Integer a, Integer b) {
+          return Double.compare(model.fractionalD(user, items.get(a)), model.fractionalD(user, items.get(b)));
+        }
+      });
+      rank = sorted(new Comparator<Integer>() {
+        public int compare(Integer a, Integer b) {
+          return Double.compare(model.fractionalRank(user, items.get(a)), model.fractionalRank(user, items.get(b)));
+        }
+      });
+      assertTrue(Arrays.equals(exact, rank));
+    }
+  }
+
+  @Test
+  public void testRankToDistance() {
+    for(double[] user: users) {
+      for(double[] item: items) {
+        assertEquals(model.fractionalD(user, item), model.rankToDistance(model.fractionalRank(user, item)), EPSILON);
+        assertEquals(model.minkowskiD(user, item), model.rankToDistance(model.minkowskiRank(user, item)), EPSILON);
+      }
+    }
+  }
+
+  @Test
+  public void testNearestItems() throws Exception {
+    for(int u = 0; u < USERS; u++) {
+      final double[] user = users.get(u);
+      Integer[] exact = sorted(new Comparator<Integer>() {
+        public int compare(Integer a, Integer b) {
+          return Double.compare(model.fractionalD(user, items.get(a)), model.fractionalD(user, items.get(b)));
+        }
+      });
+      List<RecommendedItem> nearest = model.getNearestItems(u, TOP);
+      assertEquals(TOP, nearest.size());
+      for(int i = 0; i < TOP; i++) {
+        assertEquals(exact[i].longValue(), nearest.get(i).getItemID());
+        assertEquals(model.getPreferenceValue(u, exact[i]), nearest.get(i).getValue(), EPSILON);
+      }
+    }
+    assertEquals(ITEMS, model.getNearestItems(0, ITEMS + 5).size());
+    assertTrue(model.getNearestItems(USERS + 1, TOP).isEmpty());
+  }
+
+  private static Integer[] sorted(Comparator<Integer> order) {
+    Integer[] indexes = new Integer[ITEMS];
+    for(int i = 0; i < ITEMS; i++)
+      indexes[i] = i;
+    Arrays.sort(indexes, order);
+    return indexes;
+  }
+
+  private static double pairMinkowski(double[] a, double[] b, double power) {
+    double sum = 0;
+    for(int i = 0; i < a.length; i++) {
+      sum += Math.pow(Math.abs(a[i] - b[i]), power);
+    }
+    return sum;
+  }
+
+  // also the PointStoreTest points
+  static List<double[]> randomPoints(Random rnd, int n, int dimensions) {
+    List<double[]> points = new ArrayList<double[]>();
+    for(int i = 0; i < n; i++) {
+      double[] values = new double[dimensions];
+      for(int d = 0; d < dimensions; d++)
+        values[d] = rnd.nextDouble();
+      points.add(values);
+    }
+    return points;
+  }
+
+  private static String toLine(int id, double[] values, String payload) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(id);
+    for(double v: values) {
+      sb.append(',');
+      sb.append(v);
+    }
+    sb.append('*');
+    sb.append(payload);
+    return sb.toString();
+  }
+
+}
@@ -17,7 +17,10 @@
 
 package lsh.mahout.recommender;
 
+import lsh.mahout.recommnder.LSHDataModel;
+
 import org.apache.mahout.cf.taste.impl.TasteTestCase;
+import org.apache.mahout.cf.taste.impl.common.LongPrimitiveIterator;
 import org.apache.mahout.cf.taste.impl.model.VectorDataModel;
 import org.apache.mahout.cf.taste.impl.neighborhood.NearestNUserNeighborhood;
 import org.apache.mahout.cf.taste.impl.recommender.GenericUserBasedRecommender;
@@ -32,6 +35,13 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /** <p>Tests {@link VectorDataModel}.</p> */
 public final class LSHDataModelTest extends TasteTestCase {
@@ -81,4 +91,65 @@ public final class LSHDataModelTest extends TasteTestCase {
     model.refresh(null);
   }
 
+  @Test
+  public void testSortedIDs() throws Exception {
+    LSHDataModel lsh = new LSHDataModel(testFile, measure);
+    LongPrimitiveIterator users = lsh.getUserIDs();
+    assertEquals(1L, users.peek());
+    assertEquals(1L, users.nextLong());
+    assertEquals(10L, users.nextLong());
+    users.skip(1);
+    assertEquals(101L, users.peek());
+    assertEquals(101L, users.nextLong());
+    assertFalse(users.hasNext());
+
+    long[] expected = {1, 10, 100, 1005, 1007, 1009};
+    LongPrimitiveIterator items = lsh.getItemIDs();
+    for (long itemID : expected) {
+      assertTrue(items.hasNext());
+      assertEquals(itemID, items.nextLong());
+    }
+    assertFalse(items.hasNext());
+    assertEquals(expected.length, lsh.getItemIDsFromUser(1).size());
+  }
+
+  @Test
+  public void testConcurrentPreferences() throws Exception {
+    final LSHDataModel lsh = new LSHDataModel(testFile, measure);
+    final long[] users = {1, 10, 100, 101};
+    final long[] items = {1, 10, 100, 1005, 1007, 1009};
+    final float[] single = preferences(lsh, users, items);
+    int threads = 8;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<float[]>> results = new ArrayList<Future<float[]>>();
+      for(int t = 0; t < threads; t++) {
+        results.add(executor.submit(new Callable<float[]>() {
+          public float[] call() throws Exception {
+            for(int round = 0; round < 200; round++) {
+              float[] prefs = preferences(lsh, users, items);
+              if (!Arrays.equals(single, prefs))
+                return prefs;
+            }
+            return single;
+          }
+        }));
+      }
+      for(Future<float[]> result: results)
+        assertTrue(Arrays.equals(single, result.get()));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static float[] preferences(LSHDataModel lsh, long[] users, long[] items) throws Exception {
+    float[] prefs = new float[users.length * items.length];
+    int i = 0;
+    for(long user: users) {
+      for(long item: items)
+        prefs[i++] = lsh.getPreferenceValue(user, item);
+    }
+    return prefs;
+  }
+
 }
@@ -0,0 +1,72 @@
+package lsh.mahout.recommender;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Random;
+
+import lsh.mahout.recommnder.PointStore;
+import lsh.mahout.recommnder.PointStore.Precision;
+
+/*
+ * Heap and L1 scan time of each PointStore precision.
+ * Run with enough heap for the DOUBLE store: POINTS * DIMENSIONS * 8 bytes.
+ */
+
+public class PointStoreBenchmark {
+  static int POINTS = 10000000;
+  static int DIMENSIONS = 10;
+  static double sink = 0;
+
+  public static void main(String[] args) {
+    if (args.length > 0)
+      POINTS = Integer.parseInt(args[0]);
+    for(Precision precision: new Precision[]{Precision.FIXED16, Precision.FLOAT, Precision.DOUBLE}) {
+      run(precision);
+    }
+  }
+
+  static void run(Precision precision) {
+    long before = usedHeap();
+    PointStore store = PointStore.newStore(generated(), DIMENSIONS, precision);
+    long heap = usedHeap() - before;
+    double[] query = new double[DIMENSIONS];
+    double[] out = new double[POINTS];
+    long start = System.currentTimeMillis();
+    for(int i = 0; i < 5; i++) {
+      store.manhattan(query, DIMENSIONS, out);
+      sink += out[i];
+    }
+    long time = System.currentTimeMillis() - start;
+    System.out.println(precision + ": heap=" + (heap >> 20) + "MB, arrays=" + (store.getHeapBytes() >> 20) + "MB, 5 scans=" + time + "ms");
+  }
+
+  // points made on demand, so the input does not count against the store
+  static List<double[]> generated() {
+    return new AbstractList<double[]>() {
+      final double[] values = new double[DIMENSIONS];
+      final Random rnd = new Random(0);
+
+      @Override
+      public double[] get(int index) {
+        // same values on every pass over the list
+        rnd.setSeed(index);
+        for(int d = 0; d < DIMENSIONS; d++)
+          values[d] = rnd.nextDouble();
+        return values;
+      }
+
+      @Override
+      public int size() {
+        return POINTS;
+      }
+    };
+  }
+
+  static long usedHeap() {
+    Runtime rt = Runtime.getRuntime();
+    for(int i = 0; i < 3; i++)
+      System.gc();
+    return rt.totalMemory() - rt.freeMemory();
+  }
+
+}
@@ -0,0 +1,105 @@
+package lsh.mahout.recommender;
+
+import java.util.List;
+import java.util.Random;
+
+import lsh.mahout.recommnder.PointStore;
+import lsh.mahout.recommnder.PointStore.Precision;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/*
+ * Compact point stores: distances stay within the stored rounding error
+ * of the full double distances.
+ */
+public final class PointStoreTest extends Assert {
+  static final int DIMENSIONS = 37;
+  static final int POINTS = 500;
+  static final double EPSILON = 0.000000001;
+
+  @Test
+  public void testFloat() {
+    checkStore(Precision.FLOAT);
+  }
+
+  @Test
+  public void testFixed() {
+    checkStore(Precision.FIXED16);
+  }
+
+  @Test
+  public void testDouble() {
+    List<double[]> points = BatchDistanceTest.randomPoints(new Random(0), POINTS, DIMENSIONS);
+    PointStore store = PointStore.newStore(points, DIMENSIONS, Precision.DOUBLE);
+    double[] values = new double[DIMENSIONS];
+    for(int p = 0; p < POINTS; p++) {
+      store.get(p, values);
+      assertArrayEquals(points.get(p), values, 0.0);
+    }
+  }
+
+  @Test
+  public void testHeap() {
+    List<double[]> points = BatchDistanceTest.randomPoints(new Random(1), POINTS, DIMENSIONS);
+    long full = PointStore.newStore(points, DIMENSIONS, Precision.DOUBLE).getHeapBytes();
+    assertTrue(PointStore.newStore(points, DIMENSIONS, Precision.FLOAT).getHeapBytes() * 2 <= full);
+    assertTrue(PointStore.newStore(points, DIMENSIONS, Precision.FIXED16).getHeapBytes() * 3 <= full);
+  }
+
+  @Test
+  public void testConstantDimension() {
+    // a dimension with one value has no range- stored exactly
+    List<double[]> points = BatchDistanceTest.randomPoints(new Random(2), 10, DIMENSIONS);
+    for(double[] p: points)
+      p[3] = 0.25;
+    PointStore store = PointStore.newStore(points, DIMENSIONS, Precision.FIXED16);
+    double[] values = new double[DIMENSIONS];
+    store.get(5, values);
+    assertEquals(0.25, values[3], 0.0);
+  }
+
+  private void checkStore(Precision precision) {
+    Random rnd = new Random(3);
+    List<double[]> points = BatchDistanceTest.randomPoints(rnd, POINTS, DIMENSIONS);
+    PointStore exact = PointStore.newStore(points, DIMENSIONS, Precision.DOUBLE);
+    PointStore compact = PointStore.newStore(points, DIMENSIONS, precision);
+
+    double l1Bound = 0;
+    double l2Bound = 0;
+    for(int d = 0; d < DIMENSIONS; d++) {
+      double e = compact.getMaxError(d);
+      assertTrue(e > 0);
+      l1Bound += e;
+      l2Bound += e * e;
+    }
+    l2Bound = Math.sqrt(l2Bound);
+
+    double[] values = new double[DIMENSIONS];
+    for(int p = 0; p < POINTS; p++) {
+      compact.get(p, values);
+      for(int d = 0; d < DIMENSIONS; d++)
+        assertEquals(points.get(p)[d], values[d], compact.getMaxError(d) + EPSILON);
+    }
+
+    double[] expected = new double[POINTS];
+    double[] actual = new double[POINTS];
+    for(int q = 0; q < 20; q++) {
+      // queries are not stored, and can be outside the stored range
+      double[] query = BatchDistanceTest.randomPoints(rnd, 1, DIMENSIONS).get(0);
+      query[0] *= 2;
+      exact.manhattan(query, DIMENSIONS, expected);
+      compact.manhattan(query, DIMENSIONS, actual);
+      for(int p = 0; p < POINTS; p++) {
+        assertEquals(expected[p], actual[p], l1Bound + EPSILON);
+        assertEquals(actual[p], compact.manhattan(p, query, DIMENSIONS), EPSILON);
+        assertEquals(expected[p], exact.manhattan(p, query, DIMENSIONS), EPSILON);
+      }
+      exact.euclidSquared(query, DIMENSIONS, expected);
+      compact.euclidSquared(query, DIMENSIONS, actual);
+      for(int p = 0; p < POINTS; p++)
+        assertEquals(Math.sqrt(expected[p]), Math.sqrt(actual[p]), l2Bound + EPSILON);
+    }
+  }
+
+}
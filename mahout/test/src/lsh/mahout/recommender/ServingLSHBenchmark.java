@@ -0,0 +1,61 @@
+package lsh.mahout.recommender;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import lsh.mahout.recommnder.LSHSnapshot;
+import lsh.mahout.recommnder.ServingLSHRecommender;
+
+/*
+ * Load test for ServingLSHRecommender: requests per second at 1, 2, 4 ... threads.
+ * Users are drawn at random, so the cache hit rate depends on the cache size.
+ */
+
+public class ServingLSHBenchmark {
+  static int REQUESTS = 200000;
+  static int CACHE = 128;
+  static long sink = 0;
+
+  public static void main(String[] args) throws Exception {
+    LSHSnapshot snapshot = ServingLSHRecommenderTest.randomSnapshot(new Random(0));
+    int cores = Runtime.getRuntime().availableProcessors();
+    // warm up
+    run(snapshot, 1);
+    for(int threads = 1; threads <= cores * 2; threads *= 2) {
+      long time = run(snapshot, threads);
+      System.out.println("threads=" + threads + ": " + time + "ms, " + (REQUESTS * 1000L / Math.max(1, time)) + " requests/sec");
+    }
+  }
+
+  static long run(LSHSnapshot snapshot, int threads) throws Exception {
+    final ServingLSHRecommender recommender = new ServingLSHRecommender(null, snapshot, CACHE);
+    final int perThread = REQUESTS / threads;
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    List<Callable<Long>> tasks = new ArrayList<Callable<Long>>();
+    for(int t = 0; t < threads; t++) {
+      final long seed = t;
+      tasks.add(new Callable<Long>() {
+        @Override
+        public Long call() throws Exception {
+          Random rnd = new Random(seed);
+          long count = 0;
+          for(int i = 0; i < perThread; i++)
+            count += recommender.recommend(rnd.nextInt(ServingLSHRecommenderTest.USERS), 10).size();
+          return count;
+        }
+      });
+    }
+    long start = System.currentTimeMillis();
+    for(Future<Long> result: pool.invokeAll(tasks))
+      sink += result.get();
+    long time = System.currentTimeMillis() - start;
+    pool.shutdown();
+    return time;
+  }
+
+}
@@ -0,0 +1,169 @@
+package lsh.mahout.recommender;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import lsh.core.Corner;
+import lsh.core.CornerGen;
+import lsh.core.OrthonormalHasher;
+import lsh.mahout.recommnder.LSHSnapshot;
+import lsh.mahout.recommnder.LSHTextDataModel;
+import lsh.mahout.recommnder.ServingLSHRecommender;
+
+import org.apache.mahout.cf.taste.impl.TasteTestCase;
+import org.apache.mahout.cf.taste.impl.common.FastByIDMap;
+import org.apache.mahout.cf.taste.recommender.RecommendedItem;
+import org.junit.Test;
+
+/*
+ * Serving path: concurrent results match single-threaded ones,
+ * and cached candidates are dropped when a user moves.
+ */
+public final class ServingLSHRecommenderTest extends TasteTestCase {
+  static final int DIMENSIONS = 3;
+  static final int USERS = 200;
+  static final int ITEMS = 500;
+  static final int RANGE = 4;
+
+  @Test
+  public void testAverageCornerDistance() {
+    // same mean as walking the Set from CornerGen
+    CornerGen cg = new CornerGen(new OrthonormalHasher(DIMENSIONS, 1.0), new double[DIMENSIONS]);
+    Random rnd = new Random(0);
+    double variance = 1.0 / DIMENSIONS;
+    for(int trial = 0; trial < 100; trial++) {
+      int[] user = randomCorner(rnd);
+      int[] item = randomCorner(rnd);
+      Set<Corner> all = cg.getHashSet(item.clone());
+      double sum = 0;
+      for(Corner c: all) {
+        int d = 0;
+        for(int i = 0; i < DIMENSIONS; i++)
+          d += Math.abs(user[i] - c.hashes[i]);
+        sum += d * variance;
+      }
+      assertEquals(sum / all.size(), LSHTextDataModel.averageCornerDistance(user, item, variance), EPSILON);
+    }
+  }
+
+  @Test
+  public void testConcurrent() throws Exception {
+    LSHSnapshot snapshot = randomSnapshot(new Random(1));
+    final ServingLSHRecommender single = new ServingLSHRecommender(null, snapshot, 1024);
+    final Map<Long,List<RecommendedItem>> expected = new HashMap<Long,List<RecommendedItem>>();
+    for(long user = 0; user < USERS; user++)
+      expected.put(user, single.recommend(user, 10));
+
+    // small cache so threads keep evicting each other
+    final ServingLSHRecommender shared = new ServingLSHRecommender(null, snapshot, 16);
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+    for(int t = 0; t < 4; t++) {
+      final long seed = t;
+      results.add(pool.submit(new Callable<Boolean>() {
+        @Override
+        public Boolean call() throws Exception {
+          Random rnd = new Random(seed);
+          for(int i = 0; i < 5000; i++) {
+            long user = rnd.nextInt(USERS);
+            if (! sameItems(expected.get(user), shared.recommend(user, 10)))
+              return false;
+          }
+          return true;
+        }
+      }));
+    }
+    for(Future<Boolean> result: results)
+      assertTrue(result.get());
+    pool.shutdown();
+  }
+
+  @Test
+  public void testMoveUser() throws Exception {
+    LSHSnapshot snapshot = randomSnapshot(new Random(2));
+    ServingLSHRecommender recommender = new ServingLSHRecommender(null, snapshot, 64);
+    long user = 7;
+    int[] corner = snapshot.getUserCorner(user);
+    List<RecommendedItem> before = recommender.recommend(user, 1000);
+    // cached: same answer
+    assertTrue(sameItems(before, recommender.recommend(user, 1000)));
+
+    int[] moved = corner.clone();
+    moved[0] += RANGE * 10;
+    recommender.moveUser(user, moved);
+    // no items out there
+    assertEquals(0, recommender.recommend(user, 1000).size());
+    // other users did not move
+    assertTrue(Float.isNaN(recommender.estimatePreference(-1, 0)));
+    assertEquals(snapshot.getItemVersion(), recommender.getSnapshot().getItemVersion());
+
+    recommender.moveUser(user, corner);
+    assertTrue(sameItems(before, recommender.recommend(user, 1000)));
+  }
+
+  @Test
+  public void testRanking() throws Exception {
+    LSHSnapshot snapshot = randomSnapshot(new Random(3));
+    ServingLSHRecommender recommender = new ServingLSHRecommender(null, snapshot, 64);
+    for(long user = 0; user < USERS; user++) {
+      List<RecommendedItem> recs = recommender.recommend(user, 1000);
+      for(int i = 0; i < recs.size(); i++) {
+        if (i > 0)
+          assertTrue(recs.get(i - 1).getValue() >= recs.get(i).getValue());
+      }
+    }
+  }
+
+  static boolean sameItems(List<RecommendedItem> a, List<RecommendedItem> b) {
+    if (a.size() != b.size())
+      return false;
+    for(int i = 0; i < a.size(); i++) {
+      if (a.get(i).getItemID() != b.get(i).getItemID() || a.get(i).getValue() != b.get(i).getValue())
+        return false;
+    }
+    return true;
+  }
+
+  static LSHSnapshot randomSnapshot(Random rnd) {
+    FastByIDMap<int[]> users = new FastByIDMap<int[]>();
+    for(long i = 0; i < USERS; i++)
+      users.put(i, randomCorner(rnd));
+    FastByIDMap<int[]> items = new FastByIDMap<int[]>();
+    Map<Corner,List<Long>> lists = new HashMap<Corner,List<Long>>();
+    for(long i = 0; i < ITEMS; i++) {
+      int[] corner = randomCorner(rnd);
+      items.put(i, corner);
+      Corner key = new Corner(corner);
+      List<Long> list = lists.get(key);
+      if (null == list) {
+        list = new ArrayList<Long>();
+        lists.put(key, list);
+      }
+      list.add(i);
+    }
+    Map<Corner,long[]> cornerItems = new HashMap<Corner,long[]>();
+    for(Map.Entry<Corner,List<Long>> entry: lists.entrySet()) {
+      long[] ids = new long[entry.getValue().size()];
+      for(int i = 0; i < ids.length; i++)
+        ids[i] = entry.getValue().get(i);
+      cornerItems.put(entry.getKey(), ids);
+    }
+    return new LSHSnapshot(users, items, cornerItems, 1.0 / DIMENSIONS, 4.0, 1.0);
+  }
+
+  static int[] randomCorner(Random rnd) {
+    int[] corner = new int[DIMENSIONS];
+    for(int i = 0; i < DIMENSIONS; i++)
+      corner[i] = rnd.nextInt(RANGE);
+    return corner;
+  }
+
+}
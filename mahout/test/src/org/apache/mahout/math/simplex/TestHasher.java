@@ -1,6 +1,8 @@
 package org.apache.mahout.math.simplex;
 
 import org.apache.mahout.math.MahoutTestCase;
+import org.apache.mahout.math.RandomAccessSparseVector;
+import org.apache.mahout.math.Vector;
 import org.junit.Test;
 
 public class TestHasher extends MahoutTestCase {
@@ -44,4 +46,32 @@ public class TestHasher extends MahoutTestCase {
     assertEquals(-1, hashed[3]);
   }
 
+  @Test
+  public void testSparse() {
+    int dim = 1000;
+    Vector v = new RandomAccessSparseVector(dim);
+    v.set(3, 0.1);
+    v.set(500, 1.1);
+    v.set(17, 2.1);
+    v.set(999, -0.9);
+    double[] values = new double[dim];
+    for(int i = 0; i < dim; i++)
+      values[i] = v.get(i);
+    
+    Hasher[] hashers = {new OrthonormalHasher(dim, 0.5), new VertexTransitiveHasher(dim, 0.5)};
+    for(Hasher hasher: hashers) {
+      int[] dense = new int[dim];
+      double factor = hasher.getFactor(values);
+      hasher.hashDense(values, dense, factor);
+      Simplex<String> sparse = hasher.hashSparse(v, "v");
+      assertTrue(sparse.isSparse());
+      // only the nonzero values are stored
+      assertTrue(sparse.base.length <= 4);
+      assertEquals(factor, sparse.getFactor(), 0.0);
+      assertArrayEquals(dense, sparse.getValues());
+      for(int i = 0; i < dim; i++)
+        assertEquals(dense[i], sparse.getValue(i));
+    }
+  }
+
 }
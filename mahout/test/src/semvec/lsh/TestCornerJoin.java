@@ -0,0 +1,140 @@
+package semvec.lsh;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import lsh.core.Corner;
+import lsh.core.CornerGen;
+import lsh.core.Point;
+import lsh.hadoop.LSHDriver;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.junit.Assert;
+import org.junit.Test;
+
+/*
+ * Run the user/item corner join with Hadoop's local runner and check it
+ * against a brute-force join over the same corners.
+ */
+public final class TestCornerJoin extends Assert {
+  static final int USERS = 40;
+  static final int ITEMS = 150;
+  static final int TOPN = 5;
+
+  @Test
+  public void testKeys() {
+    UserItemKey a = new UserItemKey(1, 9);
+    UserItemKey b = new UserItemKey(2, 3);
+    UserItemKey c = new UserItemKey(2, 4);
+    assertTrue(a.compareTo(b) < 0);
+    assertTrue(b.compareTo(c) < 0);
+    assertEquals(0, c.compareTo(new UserItemKey(2, 4)));
+    UserItemKey.UserComparator users = new UserItemKey.UserComparator();
+    assertEquals(0, users.compare(b, c));
+    assertTrue(users.compare(a, b) < 0);
+
+    CornerJoinMapper.CornerComparator corners = new CornerJoinMapper.CornerComparator();
+    assertEquals(0, corners.compare(new Text(",1,2\t0"), new Text(",1,2\t1")));
+    assertTrue(corners.compare(new Text(",1,2\t1"), new Text(",1,20\t0")) < 0);
+    assertEquals("(,1,2)", "(" + CornerJoinMapper.getCorner(new Text(",1,2\t1")) + ")");
+  }
+
+  @Test
+  public void testLocalRunner() throws Exception {
+    File dir = File.createTempFile("cornerjoin", "");
+    dir.delete();
+    dir.mkdirs();
+    File input = new File(dir, "points.txt");
+    Random rnd = new Random(0);
+    List<Point> users = new ArrayList<Point>();
+    List<Point> items = new ArrayList<Point>();
+    PrintWriter pw = new PrintWriter(new FileWriter(input));
+    for(int i = 0; i < USERS; i++) {
+      Point p = new Point("" + i, new double[]{rnd.nextDouble(), rnd.nextDouble()}, "U");
+      users.add(p);
+      pw.println(p.toString());
+    }
+    for(int i = 0; i < ITEMS; i++) {
+      Point p = new Point("" + (1000 + i), new double[]{rnd.nextDouble(), rnd.nextDouble()}, "I");
+      items.add(p);
+      pw.println(p.toString());
+    }
+    pw.close();
+
+    Configuration conf = new Configuration();
+    conf.set("mapred.job.tracker", "local");
+    conf.set("fs.default.name", "file:///");
+    conf.set(LSHDriver.HASHER, "lsh.core.OrthonormalHasher");
+    conf.set(LSHDriver.GRIDSIZE, "0.2");
+    conf.setInt(LSHDriver.DIMENSION, 2);
+    conf.setInt(CornerJoinDriver.TOPN, TOPN);
+    Path result = CornerJoinDriver.run(conf, new Path(input.getAbsolutePath()), new Path(new File(dir, "out").getAbsolutePath()));
+
+    Map<String,String> found = new HashMap<String,String>();
+    BufferedReader reader = new BufferedReader(new FileReader(new File(result.toUri().getPath(), "part-r-00000")));
+    String line;
+    while ((line = reader.readLine()) != null) {
+      String[] parts = line.split("\t", -1);
+      found.put(parts[0], parts[1]);
+    }
+    reader.close();
+
+    CornerGen cg = CornerJoinDriver.getCornerGen(conf);
+    int withItems = 0;
+    for(Point user: users) {
+      Set<Corner> userCorners = cg.getHashSet(user);
+      List<Scored> scored = new ArrayList<Scored>();
+      for(Point item: items) {
+        Set<Corner> itemCorners = cg.getHashSet(item);
+        itemCorners.retainAll(userCorners);
+        if (! itemCorners.isEmpty())
+          scored.add(new Scored(Long.parseLong(item.id), (float) CornerJoinReducer.score(user.values, item.values)));
+      }
+      Collections.sort(scored);
+      StringBuilder sb = new StringBuilder();
+      for(int i = 0; i < scored.size() && i < TOPN; i++) {
+        if (sb.length() > 0)
+          sb.append(',');
+        sb.append(scored.get(i).itemID + ":" + scored.get(i).score);
+      }
+      if (scored.isEmpty()) {
+        assertNull(found.get(user.id));
+      } else {
+        withItems++;
+        assertEquals("user " + user.id, sb.toString(), found.get(user.id));
+      }
+    }
+    assertEquals(withItems, found.size());
+    assertTrue(withItems > USERS / 2);
+  }
+
+  static final class Scored implements Comparable<Scored> {
+    final long itemID;
+    final float score;
+
+    Scored(long itemID, float score) {
+      this.itemID = itemID;
+      this.score = score;
+    }
+
+    // best score first, then lower item ID
+    public int compareTo(Scored other) {
+      if (score != other.score)
+        return score > other.score ? -1 : 1;
+      return itemID < other.itemID ? -1 : (itemID == other.itemID ? 0 : 1);
+    }
+  }
+
+}
@@ -0,0 +1,132 @@
+package semvec.lsh;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import lsh.core.Point;
+import lsh.hadoop.LSHDriver;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.junit.Assert;
+import org.junit.Test;
+
+/*
+ * Ratings through all three stages with Hadoop's local runner,
+ * then again to check that complete stages are skipped.
+ */
+public final class TestPipelineDriver extends Assert {
+  static final int USERS = 20;
+  static final int ITEMS = 30;
+
+  @Test
+  public void testLocalRunner() throws Exception {
+    File dir = File.createTempFile("pipeline", "");
+    dir.delete();
+    dir.mkdirs();
+    File ratings = new File(dir, "ratings.dat");
+    Set<String> users = new HashSet<String>();
+    Set<String> items = new HashSet<String>();
+    Random rnd = new Random(0);
+    PrintWriter pw = new PrintWriter(new FileWriter(ratings));
+    for(int u = 0; u < USERS; u++) {
+      for(int r = 0; r < 5; r++) {
+        int item = 100 + rnd.nextInt(ITEMS);
+        pw.println(u + "::" + item + "::" + (1 + rnd.nextInt(5)));
+        users.add("" + u);
+        items.add("" + item);
+      }
+    }
+    pw.close();
+
+    Configuration conf = new Configuration();
+    conf.set("mapred.job.tracker", "local");
+    conf.set("fs.default.name", "file:///");
+    conf.setInt(LSHDriver.DIMENSION, 2);
+    conf.set(LSHDriver.RANDOMSEED, "1");
+    conf.set(LSHDriver.SCALE, "4.0");
+    conf.set(LSHDriver.BIAS, "1");
+    conf.set(LSHDriver.HASHER, "lsh.core.OrthonormalHasher");
+    conf.set(LSHDriver.GRIDSIZE, "0.2");
+    conf.set(LSHDriver.MINVALUE, "-10");
+    conf.set(LSHDriver.MAXVALUE, "10");
+    Path out = new Path(new File(dir, "out").getAbsolutePath());
+    PipelineDriver driver = new PipelineDriver(conf, new Path(ratings.getAbsolutePath()), out);
+
+    List<PipelineDriver.Stage> stages = driver.run(false);
+    assertEquals(3, stages.size());
+    for(PipelineDriver.Stage stage: stages) {
+      assertFalse(stage.name, stage.skipped);
+      assertFalse(stage.name, stage.failed);
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    PipelineDriver.report(stages, new PrintStream(bytes));
+    assertTrue(bytes.toString().contains("corners: done"));
+
+    // points between stages are a SequenceFile of (NullWritable, point)
+    FileSystem fs = FileSystem.getLocal(conf);
+    SequenceFile.Reader reader = new SequenceFile.Reader(fs, new Path(driver.getOutput("points"), "part-r-00000"), conf);
+    assertEquals(NullWritable.class, reader.getKeyClass());
+    Text value = new Text();
+    int points = 0;
+    while (reader.next(NullWritable.get(), value)) {
+      Point.newPoint(value.toString());
+      points++;
+    }
+    reader.close();
+    assertEquals(users.size() + items.size(), points);
+
+    // every point lands in exactly one corner
+    List<String> corners = readCorners(driver);
+    Set<String> foundUsers = new HashSet<String>();
+    Set<String> foundItems = new HashSet<String>();
+    for(String line: corners) {
+      for(String text: line.substring(line.indexOf('\t') + 1).split("\\|")) {
+        Point p = Point.newPoint(text);
+        assertTrue(text, ("U".equals(p.payload) ? foundUsers : foundItems).add(p.id));
+      }
+    }
+    assertEquals(users, foundUsers);
+    assertEquals(items, foundItems);
+
+    // complete: nothing runs
+    stages = driver.run(false);
+    for(PipelineDriver.Stage stage: stages)
+      assertTrue(stage.name, stage.skipped);
+
+    // only the unfinished last stage runs
+    fs.delete(new Path(driver.getOutput("corners"), PipelineDriver.SUCCESS), false);
+    stages = driver.run(false);
+    assertTrue(stages.get(0).skipped);
+    assertTrue(stages.get(1).skipped);
+    assertFalse(stages.get(2).skipped);
+    assertFalse(stages.get(2).failed);
+    assertEquals(corners, readCorners(driver));
+  }
+
+  private static List<String> readCorners(PipelineDriver driver) throws Exception {
+    List<String> lines = new ArrayList<String>();
+    File file = new File(driver.getOutput("corners").toUri().getPath(), "part-r-00000");
+    BufferedReader reader = new BufferedReader(new FileReader(file));
+    String line;
+    while ((line = reader.readLine()) != null)
+      lines.add(line);
+    reader.close();
+    return lines;
+  }
+
+}
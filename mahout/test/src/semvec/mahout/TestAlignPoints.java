@@ -0,0 +1,140 @@
+package semvec.mahout;
+
+import java.io.BufferedReader;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import lsh.core.OrthonormalHasher;
+import lsh.core.Point;
+
+import org.apache.mahout.math.KabschRotation;
+import org.junit.Assert;
+import org.junit.Test;
+
+/*
+ * Simulate a retrain: the new model is the old one turned and shifted,
+ * with some items moved for real and a little noise on the rest.
+ * After alignment the unmoved items should keep their corners.
+ */
+public final class TestAlignPoints extends Assert {
+  static final int DIMENSIONS = 4;
+  static final int ITEMS = 2000;
+  static final int USERS = 100;
+  static final double GRID = 0.2;
+  static final double CHANGED = 0.1;
+
+  @Test
+  public void testRetrain() throws Exception {
+    Random rnd = new Random(0);
+    double[][] turn = randomRotation(rnd);
+    StringBuilder older = new StringBuilder();
+    StringBuilder newer = new StringBuilder();
+    Map<String,double[]> oldItems = new HashMap<String,double[]>();
+    Map<String,Boolean> changed = new HashMap<String,Boolean>();
+    for(int i = 0; i < ITEMS + USERS; i++) {
+      String payload = i < ITEMS ? "I" : "U";
+      String id = Integer.toString(i < ITEMS ? i : i - ITEMS);
+      double[] old = random(rnd);
+      double[] source = old;
+      boolean moved = rnd.nextDouble() < CHANGED;
+      if (moved)
+        source = random(rnd);
+      double[] values = new double[DIMENSIONS];
+      for(int r = 0; r < DIMENSIONS; r++) {
+        double sum = 3 + r;
+        for(int c = 0; c < DIMENSIONS; c++)
+          sum += turn[r][c] * source[c];
+        values[r] = sum + rnd.nextGaussian() * 1.0e-4;
+      }
+      older.append(new Point(id, old, payload).toString()).append('\n');
+      newer.append(new Point(id, values, payload).toString()).append('\n');
+      if (i < ITEMS) {
+        oldItems.put(id, old);
+        changed.put(id, moved);
+      }
+    }
+
+    Map<String,double[]> anchors = AlignPoints.loadAnchors(reader(older), "I", 1.0);
+    assertEquals(ITEMS, anchors.size());
+    KabschRotation rotation = AlignPoints.fit(anchors, reader(newer), "I");
+    assertEquals(ITEMS, rotation.getNumVectors());
+    StringWriter sw = new StringWriter();
+    PrintWriter out = new PrintWriter(sw);
+    assertEquals(ITEMS + USERS, AlignPoints.rotate(rotation, reader(newer), out));
+    out.close();
+
+    OrthonormalHasher hasher = new OrthonormalHasher(DIMENSIONS, GRID);
+    BufferedReader aligned = reader(new StringBuilder(sw.toString()));
+    BufferedReader unaligned = reader(newer);
+    int same = 0;
+    int sameUnaligned = 0;
+    int unchanged = 0;
+    String line;
+    while ((line = aligned.readLine()) != null) {
+      Point p = Point.newPoint(line);
+      Point q = Point.newPoint(unaligned.readLine());
+      assertEquals(q.id, p.id);
+      assertEquals(q.payload, p.payload);
+      if (!"I".equals(p.payload) || changed.get(p.id))
+        continue;
+      int[] before = hasher.hash(oldItems.get(p.id));
+      unchanged++;
+      if (Arrays.equals(before, hasher.hash(p.values)))
+        same++;
+      if (Arrays.equals(before, hasher.hash(q.values)))
+        sameUnaligned++;
+    }
+    assertTrue("aligned: " + same + " of " + unchanged, same > 0.8 * unchanged);
+    assertTrue("unaligned: " + sameUnaligned + " of " + unchanged, sameUnaligned < 0.1 * unchanged);
+  }
+
+  @Test
+  public void testAnchorFraction() throws Exception {
+    StringBuilder sb = new StringBuilder();
+    for(int i = 0; i < 1000; i++)
+      sb.append(i + ",0.5,0.5*I\n" + i + ",0.5,0.5*U\n");
+    Map<String,double[]> half = AlignPoints.loadAnchors(reader(sb), "I", 0.5);
+    assertTrue(half.size() > 400 && half.size() < 600);
+    // the same ids every time
+    assertEquals(half.keySet(), AlignPoints.loadAnchors(reader(sb), "I", 0.5).keySet());
+    assertEquals(1000, AlignPoints.loadAnchors(reader(sb), null, 1.0).size());
+  }
+
+  // product of plane rotations at random angles
+  static double[][] randomRotation(Random rnd) {
+    double[][] m = new double[DIMENSIONS][DIMENSIONS];
+    for(int i = 0; i < DIMENSIONS; i++)
+      m[i][i] = 1;
+    for(int i = 0; i < DIMENSIONS; i++) {
+      for(int j = i + 1; j < DIMENSIONS; j++) {
+        double angle = rnd.nextDouble() * 2 * Math.PI;
+        double cos = Math.cos(angle);
+        double sin = Math.sin(angle);
+        for(int k = 0; k < DIMENSIONS; k++) {
+          double x = m[k][i];
+          double y = m[k][j];
+          m[k][i] = cos * x - sin * y;
+          m[k][j] = sin * x + cos * y;
+        }
+      }
+    }
+    return m;
+  }
+
+  static double[] random(Random rnd) {
+    double[] values = new double[DIMENSIONS];
+    for(int d = 0; d < DIMENSIONS; d++)
+      values[d] = rnd.nextDouble();
+    return values;
+  }
+
+  static BufferedReader reader(StringBuilder sb) {
+    return new BufferedReader(new StringReader(sb.toString()));
+  }
+
+}
@@ -0,0 +1,108 @@
+package semvec.mahout.matrix;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import lsh.hadoop.LSHDriver;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.mahout.cf.taste.impl.common.FastByIDMap;
+import org.apache.mahout.cf.taste.impl.common.SemanticVectorFactory;
+import org.apache.mahout.cf.taste.impl.model.GenericDataModel;
+import org.apache.mahout.cf.taste.impl.model.GenericPreference;
+import org.apache.mahout.cf.taste.impl.model.GenericUserPreferenceArray;
+import org.apache.mahout.cf.taste.model.DataModel;
+import org.apache.mahout.cf.taste.model.Preference;
+import org.apache.mahout.cf.taste.model.PreferenceArray;
+import org.apache.mahout.math.Vector;
+import org.apache.mahout.math.VectorWritable;
+import org.junit.Assert;
+import org.junit.Test;
+
+/*
+ * Run GLMapper/GLReducer on a small GroupLens-format sample with the local runner.
+ * User vectors must match SemanticVectorFactory.projectUserDense().
+ */
+public final class TestGLReducer extends Assert {
+  static final int USERS = 30;
+  static final int ITEMS = 40;
+  static final int DIMENSIONS = 10;
+  static final double EPSILON = 0.0000001;
+
+  @Test
+  public void testUserVectors() throws Exception {
+    File dir = File.createTempFile("glreducer", "");
+    dir.delete();
+    dir.mkdirs();
+    File ratings = new File(dir, "ratings.dat");
+    FastByIDMap<PreferenceArray> userData = new FastByIDMap<PreferenceArray>();
+    Random rnd = new Random(0);
+    PrintWriter pw = new PrintWriter(new FileWriter(ratings));
+    for(int user = 1; user <= USERS; user++) {
+      List<Preference> prefs = new ArrayList<Preference>();
+      for(int item = 1; item <= ITEMS; item++) {
+        // user 1 rates items 1 and 5 as 1 and 5, so min/max is 1/5
+        boolean fixed = user == 1 && (item == 1 || item == 5);
+        if (! fixed && rnd.nextInt(3) != 0)
+          continue;
+        int rating = fixed ? item : rnd.nextInt(5) + 1;
+        pw.println(user + "::" + item + "::" + rating + "::978300760");
+        prefs.add(new GenericPreference(user, item, rating));
+      }
+      userData.put(user, new GenericUserPreferenceArray(prefs));
+    }
+    pw.close();
+    DataModel model = new GenericDataModel(userData);
+    assertEquals(1.0f, model.getMinPreference(), EPSILON);
+    assertEquals(5.0f, model.getMaxPreference(), EPSILON);
+
+    Configuration conf = new Configuration();
+    conf.set("mapred.job.tracker", "local");
+    conf.set("fs.default.name", "file:///");
+    conf.setInt(LSHDriver.DIMENSION, DIMENSIONS);
+    conf.set(LSHDriver.BIAS, "1");
+    conf.set(LSHDriver.SCALE, "4");
+    Job job = new Job(conf, "GL user vectors");
+    job.setMapperClass(GLMapper.class);
+    job.setReducerClass(GLReducer.class);
+    job.setMapOutputKeyClass(LongWritable.class);
+    job.setMapOutputValueClass(MyTupleWritable.class);
+    job.setOutputKeyClass(LongWritable.class);
+    job.setOutputValueClass(VectorWritable.class);
+    job.setOutputFormatClass(SequenceFileOutputFormat.class);
+    Path out = new Path(new File(dir, "out").getAbsolutePath());
+    FileInputFormat.addInputPath(job, new Path(ratings.getAbsolutePath()));
+    FileOutputFormat.setOutputPath(job, out);
+    assertTrue(job.waitForCompletion(false));
+
+    SemanticVectorFactory svf = new SemanticVectorFactory(model, DIMENSIONS);
+    FileSystem fs = FileSystem.getLocal(conf);
+    SequenceFile.Reader reader = new SequenceFile.Reader(fs, new Path(out, "part-r-00000"), conf);
+    LongWritable key = new LongWritable();
+    VectorWritable value = new VectorWritable();
+    int count = 0;
+    while(reader.next(key, value)) {
+      Vector expected = svf.projectUserDense(key.get());
+      Vector actual = value.get();
+      assertEquals(DIMENSIONS, actual.size());
+      for(int dim = 0; dim < DIMENSIONS; dim++)
+        assertEquals(expected.get(dim), actual.get(dim), EPSILON);
+      count++;
+    }
+    reader.close();
+    assertEquals(model.getNumUsers(), count);
+  }
+
+}
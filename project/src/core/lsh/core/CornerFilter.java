@@ -0,0 +1,84 @@
+package lsh.core;
+
+import java.util.Collection;
+
+/*
+ * Bloom filter over occupied corners, keyed by the raw int[] hashes.
+ *
+ * Neighbor walks probe D+1 corners per point, and in sparse high-dimensional
+ * data most of them are empty. Asking the filter first skips making a Corner
+ * and the HashMap lookup for nearly all of those misses. A "no" is always
+ * right; a "yes" is wrong for about 1-2% of empty corners at 10 bits per key.
+ *
+ * Blocked layout: all K bits of a key are in one long, so a probe
+ * touches one cache line.
+ */
+
+public class CornerFilter {
+  public static final int DEFAULT_BITS_PER_KEY = 10;
+  static final int K = 6;
+  final long[] words;
+  final int mask;
+  int size = 0;
+
+  public CornerFilter(int expected) {
+    this(expected, DEFAULT_BITS_PER_KEY);
+  }
+
+  public CornerFilter(int expected, int bitsPerKey) {
+    long bits = Math.max(64, (long) expected * bitsPerKey);
+    int count = 1;
+    while ((long) count * 64 < bits)
+      count <<= 1;
+    words = new long[count];
+    mask = count - 1;
+  }
+
+  public static CornerFilter build(Collection<Corner> corners) {
+    CornerFilter filter = new CornerFilter(corners.size());
+    for(Corner corner: corners)
+      filter.add(corner.hashes);
+    return filter;
+  }
+
+  public void add(int[] hashes) {
+    long h = hash(hashes);
+    words[(int) (h >>> 32) & mask] |= bits(h);
+    size++;
+  }
+
+  public boolean mightContain(int[] hashes) {
+    long h = hash(hashes);
+    long bits = bits(h);
+    return (words[(int) (h >>> 32) & mask] & bits) == bits;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int getBytes() {
+    return words.length * 8;
+  }
+
+  // K bit positions from the low 36 bits
+  private static long bits(long h) {
+    long bits = 0;
+    for(int i = 0; i < K; i++) {
+      bits |= 1L << (h & 63);
+      h >>>= 6;
+    }
+    return bits;
+  }
+
+  static long hash(int[] hashes) {
+    long h = hashes.length;
+    for(int i = 0; i < hashes.length; i++)
+      h = (h + hashes[i]) * 0x9E3779B97F4A7C15L;
+    // finalizer from SplitMix64
+    h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+    h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+    return h ^ (h >>> 31);
+  }
+
+}
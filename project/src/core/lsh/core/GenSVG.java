@@ -9,7 +9,9 @@ import java.io.Reader;
 import java.io.Writer;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 
 /*
@@ -242,17 +244,10 @@ public class GenSVG {
 	}
 
 	private void drawCounts(Writer w, Map<Corner, Set<Point>> ortho) throws IOException {
-		double maxCount = getMaxCount(ortho);
-		double avg = (getAverageDistances() * COUNT_RADIUS);
-		w.write("<!-- blue corners, sized by count -->\n");
-		w.write("<g" + thin + "stroke='red'>\n");
-		for(Corner corner: ortho.keySet()) {
-			double[] p = new double[2];
-			hasher.unhash(corner.hashes, p);
-			double size = ortho.get(corner).size();
-			w.write("<circle cx='" + p[0] + "' cy='" + p[1] + "' r='" + dotSize(maxCount, avg, size) + "'/>\n");
-		}
-		w.write("</g>\n");
+		Map<Corner, Integer> counts = new LinkedHashMap<Corner, Integer>();
+		for(Map.Entry<Corner, Set<Point>> entry: ortho.entrySet())
+			counts.put(entry.getKey(), entry.getValue().size());
+		drawCountMap(w, counts);
 	}
 
 	private double dotSize(double maxCount, double avg, double size) {
@@ -265,16 +260,6 @@ public class GenSVG {
 		return avg*(ms/mm);
 	}
 
-	private int getMaxCount(Map<Corner, Set<Point>> ortho) {
-		int max = 0;
-		for(Corner corner: ortho.keySet()) {
-			Set<Point> points = ortho.get(corner);
-			if (max < points.size())
-				max = points.size();
-		}
-		return max;
-	}
-	
 	double getAverageDistances() {
 		double sum = 0;
 		int[] g = {1,1};
@@ -367,14 +352,158 @@ public class GenSVG {
 		}
 	}
 
+	/*
+	 * Streaming mode: one pass over the corner file, no point sets.
+	 * 
+	 * The frame and scaling depend on the bounding box, which is only known
+	 * at the end. So points, corners and lines are written as they are read
+	 * into a <defs> group, styled by class, and the frame, grid and a <use>
+	 * of that group follow once the box is known.
+	 * Only corner counts are kept: the grid is drawn for occupied cells,
+	 * and counts style sizes its circles from them.
+	 * With sample > 0 a reservoir keeps that many points (and their corners
+	 * for lines); they are written at the end of the pass.
+	 */
+	void makeStreamingSVG(Reader r, Writer w, int sample, Random rnd) throws IOException {
+		LineNumberReader lnr = new LineNumberReader(r);
+		Map<Corner, Integer> counts = new HashMap<Corner, Integer>();
+		Point[] kept = sample > 0 ? new Point[sample] : null;
+		Corner[] keptCorners = sample > 0 ? new Corner[sample] : null;
+		long seen = 0;
+		boolean drawPoints = !style.equals("counts");
+		header(w, new int[2], new int[2]);
+		w.write("<style type='text/css'>\n");
+		w.write("	.p { stroke: blue; fill: none }\n");
+		w.write("	.c { stroke: red; fill: none }\n");
+		w.write("	.l { stroke: red; stroke-dasharray: 0.01%,0.03% }\n");
+		w.write("</style>\n");
+		w.write("<defs>\n<g id='data'" + thin + ">\n");
+		String line;
+		while (null != (line = lnr.readLine())) {
+			String parts[] = line.split("[ \t]");
+			String[] pipes = parts[1].split("\\|");
+			Corner corner = Corner.newCorner(parts[0]);
+			// cells are keyed by hashes only
+			Corner cell = new Corner(corner.hashes);
+			Integer count = counts.get(cell);
+			counts.put(cell, (null == count ? 0 : count) + pipes.length);
+			if (!drawPoints)
+				continue;
+			if (null == count)
+				writeCorner(w, corner);
+			for(int i = 0; i < pipes.length; i++) {
+				Point point = Point.newPoint(pipes[i]);
+				if (null == kept) {
+					writePoint(w, corner, point);
+				} else if (seen < sample) {
+					kept[(int) seen] = point;
+					keptCorners[(int) seen] = corner;
+				} else {
+					long j = (long) (rnd.nextDouble() * (seen + 1));
+					if (j < sample) {
+						kept[(int) j] = point;
+						keptCorners[(int) j] = corner;
+					}
+				}
+				seen++;
+			}
+		}
+		if (null != kept) {
+			for(int i = 0; i < kept.length && null != kept[i]; i++)
+				writePoint(w, keptCorners[i], kept[i]);
+		}
+		w.write("</g>\n</defs>\n");
+
+		int[] gmin = new int[2];
+		int[] gmax = new int[2];
+		double[] pmin = new double[2];
+		double[] pmax = new double[2];
+		getMinMaxCorners(counts.keySet(), gmin, gmax);
+		getGridSpace(gmin, gmax, pmin, pmax);
+		labelGrid(w, pmin, pmax);
+		pushPointSpace(w, pmin, pmax);
+		setMask(w, pmin, pmax);
+		frame(w, pmin, pmax);
+		drawOccupiedGrid(w, counts.keySet());
+		crossGrid(w, gmin, gmax);
+		if (drawPoints)
+			w.write("<use xlink:href='#data'/>\n");
+		else
+			drawCountMap(w, counts);
+		pop3(w);
+		tail(w);
+		w.close();
+	}
+
+	private void writeCorner(Writer w, Corner corner) throws IOException {
+		double[] p = new double[2];
+		hasher.unhash(corner.hashes, p);
+		w.write("<circle class='c' cx='" + p[0] + "' cy='" + p[1] + "' r='0.01%'/>\n");
+	}
+
+	private void writePoint(Writer w, Corner corner, Point point) throws IOException {
+		w.write("<circle class='p' cx='" + point.values[0] + "' cy='" + point.values[1] + "' r='0.01%'/>\n");
+		if (style.equals("lines")) {
+			double[] p = new double[2];
+			hasher.unhash(corner.hashes, p);
+			w.write("<line class='l' x1='" + p[0] + "' y1='" + p[1] + "' x2='" + point.values[0] + "' y2='" + point.values[1] + "'/>\n");
+		}
+	}
+
+	/*
+	 * Grid lines only around occupied cells: left, bottom and diagonal of each cell,
+	 * right and top only where the next cell is empty, so shared edges are drawn once.
+	 */
+	private void drawOccupiedGrid(Writer w, Set<Corner> cells) throws IOException {
+		w.write("<!-- thin grey grid, occupied cells -->\n");
+		w.write("<g stroke='grey'" + thin + ">\n");
+		for(Corner cell: cells) {
+			int x = cell.hashes[0];
+			int y = cell.hashes[1];
+			gridLine(w, x, y, x, y + 1);
+			gridLine(w, x, y, x + 1, y);
+			gridLine(w, x, y, x + 1, y + 1);
+			if (!cells.contains(new Corner(new int[]{x + 1, y})))
+				gridLine(w, x + 1, y, x + 1, y + 1);
+			if (!cells.contains(new Corner(new int[]{x, y + 1})))
+				gridLine(w, x, y + 1, x + 1, y + 1);
+		}
+		w.write("</g>\n");
+	}
+
+	private void gridLine(Writer w, int x1, int y1, int x2, int y2) throws IOException {
+		double[] p = new double[2];
+		hasher.unhash(new int[]{x1, y1}, p);
+		w.write("<line x1='" + p[0] + "' y1='" + p[1] + "' ");
+		hasher.unhash(new int[]{x2, y2}, p);
+		w.write("x2='" + p[0] + "' y2='" + p[1] + "' />\n");
+	}
+
+	private void drawCountMap(Writer w, Map<Corner, Integer> counts) throws IOException {
+		int maxCount = 0;
+		for(Integer count: counts.values())
+			maxCount = Math.max(maxCount, count);
+		double avg = (getAverageDistances() * COUNT_RADIUS);
+		w.write("<!-- red corners, sized by count -->\n");
+		w.write("<g" + thin + "stroke='red'>\n");
+		for(Map.Entry<Corner, Integer> entry: counts.entrySet()) {
+			double[] p = new double[2];
+			hasher.unhash(entry.getKey().hashes, p);
+			w.write("<circle cx='" + p[0] + "' cy='" + p[1] + "' r='" + dotSize(maxCount, avg, entry.getValue()) + "'/>\n");
+		}
+		w.write("</g>\n");
+	}
+
 	/**
 	 * @param args
 	 * @throws IOException 
 	 * 
-	 * Usage: input output [points/counts/lines] 
+	 * Usage: input output [points/counts/lines] [stream|sample N]
 	 * 		points - only points
 	 * 		lines - points + lines
 	 * 		counts - size corners by count, no points or lines
+	 * 		stream - one pass, grid only around occupied cells
+	 * 		sample N - stream, drawing a random N points
 	 * 
 	 * Load up output of hadoop job in /tmp/IN/pairwhatsit
 	 */
@@ -394,7 +523,12 @@ public class GenSVG {
 //		double[] stretch = {0.01, 20};	// El Nino
 //		double[] stretch = {1.5, 1.5};	// Census
 		gsvg.hasher = new OrthonormalHasher(stretch);
-		gsvg.makeSVG(r, w);
+		if (args.length > 4 && args[3].equals("sample"))
+			gsvg.makeStreamingSVG(r, w, Integer.parseInt(args[4]), new Random(0));
+		else if (args.length > 3 && args[3].equals("stream"))
+			gsvg.makeStreamingSVG(r, w, 0, null);
+		else
+			gsvg.makeSVG(r, w);
 	}
 
 }
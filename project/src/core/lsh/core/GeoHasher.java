@@ -2,6 +2,8 @@ package lsh.core;
 
 /*
  * 2D spherical projection for Spatial work
+ * Cells are plain degree rectangles; GeoIndex has geohash cells
+ * and radius queries that hold up near the poles.
  */
 
 public class GeoHasher implements Hasher {
@@ -0,0 +1,268 @@
+package lsh.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * Geohash cells for lat/lon points, with haversine radius queries.
+ *
+ * GeoHasher cuts plain lat/lon rectangles, which become long slivers
+ * near the poles. Here cells are standard base-32 geohash strings, so
+ * they line up with other geohash tools; a radius query walks out from
+ * the query's cell and keeps every cell whose nearest point on the
+ * sphere is within the radius. That walk wraps at the antimeridian and
+ * runs along the rows next to a pole, so no cell is missed there.
+ *
+ * Points are [id],lat,lon - latitude first, in degrees.
+ */
+
+public class GeoIndex {
+  static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+  // mean Earth radius in meters
+  public static final double EARTH_RADIUS = 6371008.8;
+  public static final int MAX_PRECISION = 12;
+  // refuse radius queries that would walk more cells than this
+  public static final int MAX_CELLS = 100000;
+
+  final int precision;
+  final Map<String,List<Point>> cells = new HashMap<String,List<Point>>();
+  int size = 0;
+
+  public GeoIndex(int precision) {
+    if (precision < 1 || precision > MAX_PRECISION)
+      throw new IllegalArgumentException("Geohash precision must be between 1 and " + MAX_PRECISION);
+    this.precision = precision;
+  }
+
+  public int getPrecision() {
+    return precision;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public void add(Point point) {
+    String cell = encode(point.values[0], point.values[1], precision);
+    List<Point> list = cells.get(cell);
+    if (null == list) {
+      list = new ArrayList<Point>();
+      cells.put(cell, list);
+    }
+    list.add(point);
+    size++;
+  }
+
+  public List<Point> getCell(String cell) {
+    return cells.get(cell);
+  }
+
+  // all points within 'radius' meters
+  public List<Point> query(double lat, double lon, double radius) {
+    List<Point> found = new ArrayList<Point>();
+    for(String cell: cover(lat, lon, radius, precision)) {
+      List<Point> list = cells.get(cell);
+      if (null == list)
+        continue;
+      for(Point p: list) {
+        if (haversine(lat, lon, p.values[0], p.values[1]) <= radius)
+          found.add(p);
+      }
+    }
+    return found;
+  }
+
+  public static String encode(double lat, double lon, int precision) {
+    lat = Math.max(-90, Math.min(90, lat));
+    lon = wrap(lon);
+    double latMin = -90, latMax = 90;
+    double lonMin = -180, lonMax = 180;
+    StringBuilder sb = new StringBuilder(precision);
+    boolean even = true;
+    int bits = 0;
+    int ch = 0;
+    while (sb.length() < precision) {
+      if (even) {
+        double mid = (lonMin + lonMax) / 2;
+        if (lon >= mid) {
+          ch = (ch << 1) | 1;
+          lonMin = mid;
+        } else {
+          ch = ch << 1;
+          lonMax = mid;
+        }
+      } else {
+        double mid = (latMin + latMax) / 2;
+        if (lat >= mid) {
+          ch = (ch << 1) | 1;
+          latMin = mid;
+        } else {
+          ch = ch << 1;
+          latMax = mid;
+        }
+      }
+      even = !even;
+      if (++bits == 5) {
+        sb.append(BASE32.charAt(ch));
+        bits = 0;
+        ch = 0;
+      }
+    }
+    return sb.toString();
+  }
+
+  // cell bounds: {minLat, maxLat, minLon, maxLon}
+  public static double[] decode(String hash) {
+    double latMin = -90, latMax = 90;
+    double lonMin = -180, lonMax = 180;
+    boolean even = true;
+    for(int i = 0; i < hash.length(); i++) {
+      int ch = BASE32.indexOf(hash.charAt(i));
+      if (ch < 0)
+        throw new IllegalArgumentException("Not a geohash: " + hash);
+      for(int bit = 4; bit >= 0; bit--) {
+        boolean set = ((ch >> bit) & 1) == 1;
+        if (even) {
+          double mid = (lonMin + lonMax) / 2;
+          if (set)
+            lonMin = mid;
+          else
+            lonMax = mid;
+        } else {
+          double mid = (latMin + latMax) / 2;
+          if (set)
+            latMin = mid;
+          else
+            latMax = mid;
+        }
+        even = !even;
+      }
+    }
+    return new double[]{latMin, latMax, lonMin, lonMax};
+  }
+
+  /*
+   * The cell dLat rows up and dLon columns over, or null past a pole.
+   * Columns wrap at the antimeridian.
+   */
+  public static String neighbor(String hash, int dLat, int dLon) {
+    double[] box = decode(hash);
+    double lat = (box[0] + box[1]) / 2 + dLat * (box[1] - box[0]);
+    if (lat > 90 || lat < -90)
+      return null;
+    double lon = (box[2] + box[3]) / 2 + dLon * (box[3] - box[2]);
+    return encode(lat, lon, hash.length());
+  }
+
+  // the up to 8 cells around this one
+  public static List<String> neighbors(String hash) {
+    List<String> list = new ArrayList<String>(8);
+    for(int dLat = -1; dLat <= 1; dLat++) {
+      for(int dLon = -1; dLon <= 1; dLon++) {
+        if (dLat == 0 && dLon == 0)
+          continue;
+        String n = neighbor(hash, dLat, dLon);
+        if (null != n && !n.equals(hash) && !list.contains(n))
+          list.add(n);
+      }
+    }
+    return list;
+  }
+
+  /*
+   * Cells at 'precision' that hold any point within 'radius' meters.
+   * Breadth-first from the query's cell: the cells that touch the
+   * circle are connected, so the walk stops at the first ring of
+   * cells that are all too far away.
+   */
+  public static Set<String> cover(double lat, double lon, double radius, int precision) {
+    Set<String> covered = new HashSet<String>();
+    Set<String> seen = new HashSet<String>();
+    LinkedList<String> queue = new LinkedList<String>();
+    String start = encode(lat, lon, precision);
+    queue.add(start);
+    seen.add(start);
+    while (!queue.isEmpty()) {
+      String cell = queue.removeFirst();
+      if (distance(lat, lon, decode(cell)) > radius)
+        continue;
+      covered.add(cell);
+      if (seen.size() > MAX_CELLS)
+        throw new IllegalArgumentException("Radius " + radius + " covers too many cells at precision " + precision);
+      for(String n: neighbors(cell)) {
+        if (seen.add(n))
+          queue.add(n);
+      }
+    }
+    return covered;
+  }
+
+  // covering cells at the finest precision whose cells are at least 'radius' tall
+  public static Set<String> cover(double lat, double lon, double radius) {
+    return cover(lat, lon, radius, precisionFor(radius));
+  }
+
+  public static int precisionFor(double radius) {
+    int precision = 1;
+    while (precision < MAX_PRECISION && cellHeight(precision + 1) >= radius)
+      precision++;
+    return precision;
+  }
+
+  // north-south size of a cell in meters
+  public static double cellHeight(int precision) {
+    int latBits = (5 * precision) / 2;
+    return Math.toRadians(180.0 / (1L << latBits)) * EARTH_RADIUS;
+  }
+
+  // great-circle distance in meters
+  public static double haversine(double lat1, double lon1, double lat2, double lon2) {
+    double dLat = Math.toRadians(lat2 - lat1);
+    double dLon = Math.toRadians(lon2 - lon1);
+    double sinLat = Math.sin(dLat / 2);
+    double sinLon = Math.sin(dLon / 2);
+    double a = sinLat * sinLat + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * sinLon * sinLon;
+    return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+  }
+
+  /*
+   * Distance from a point to the nearest point of a cell.
+   * Inside the cell's longitudes the nearest point is straight north or south.
+   * Outside them it is on the nearer edge meridian, at the latitude where
+   * the great circle through the point meets that meridian at a right angle.
+   */
+  static double distance(double lat, double lon, double[] box) {
+    lon = wrap(lon);
+    if (lon >= box[2] && lon <= box[3]) {
+      double clamped = Math.max(box[0], Math.min(box[1], lat));
+      return haversine(lat, lon, clamped, lon);
+    }
+    return Math.min(toMeridian(lat, lon, box[0], box[1], box[2]), toMeridian(lat, lon, box[0], box[1], box[3]));
+  }
+
+  private static double toMeridian(double lat, double lon, double minLat, double maxLat, double meridian) {
+    double dLon = Math.toRadians(wrap(meridian - lon));
+    double nearest;
+    if (Math.cos(dLon) > 0)
+      nearest = Math.toDegrees(Math.atan(Math.tan(Math.toRadians(lat)) / Math.cos(dLon)));
+    else
+      nearest = lat >= 0 ? 90 : -90;
+    nearest = Math.max(minLat, Math.min(maxLat, nearest));
+    return haversine(lat, lon, nearest, meridian);
+  }
+
+  // longitude into [-180, 180)
+  static double wrap(double lon) {
+    while (lon >= 180)
+      lon -= 360;
+    while (lon < -180)
+      lon += 360;
+    return lon;
+  }
+
+}
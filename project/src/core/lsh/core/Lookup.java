@@ -29,6 +29,8 @@ public class Lookup {
 	final public Map<Corner,Set<String>> corner2ids;
 	final public Map<Corner, Set<Point>> corner2points;
 	final public HashMap<Point, Set<Corner>> point2corners;
+	// occupied corners, built after loading corner2ids or corner2points
+	public CornerFilter filter = null;
 	
 	public Lookup(Hasher hasher, boolean doPoints, boolean doCorners, boolean doIds, boolean doId2point, 
 			boolean doId2corner, boolean doCorner2Ids, boolean doCorner2points, boolean doPoint2corners) {
@@ -49,10 +51,12 @@ public class Lookup {
 
 	public void loadCP(Reader r, String payload) throws IOException {
 		dimensions = Utils.load_corner_points_format(r, payload, this, null, null);
+		buildFilter();
 	}
 
 	public void loadPC(Reader r, String payload) throws IOException {
 		dimensions = Utils.load_point_corners_format(r, payload, this, null, null);
+		buildFilter();
 	}
 
 	public void loadPoints(Reader r, String payload) throws IOException {
@@ -64,6 +68,18 @@ public class Lookup {
 		dimensions= Utils.load_corner(r, corners, ids, id2corner, payload);
 	}
 
+	public void buildFilter() {
+		if (null != corner2ids)
+			filter = CornerFilter.build(corner2ids.keySet());
+		else if (null != corner2points)
+			filter = CornerFilter.build(corner2points.keySet());
+	}
+
+	// false: no points at this corner. Check before making a Corner to look up.
+	public boolean mayHaveCorner(int[] hashes) {
+		return null == filter || filter.mightContain(hashes);
+	}
+
 	private Collection<Corner> getMatchingCorners(String id) {
 		Set<Corner> found = new HashSet<Corner>();
 		for(Corner corner: corners) {